@@ -0,0 +1,112 @@
+package com.llmagent.benchmark;
+
+import com.llmagent.vector.store.EmbeddingMatch;
+import com.llmagent.vector.store.EmbeddingSearchRequest;
+import com.llmagent.vector.store.VectorData;
+import com.llmagent.vector.store.inmemory.HnswEmbeddingStore;
+import com.llmagent.vector.store.inmemory.InMemoryEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recall versus latency trade-off of {@link HnswEmbeddingStore} searches, driven by {@code efSearch}.
+ * <p>
+ * The latency is the score of the benchmark. The recall, the fraction of the exact top {@code maxResults} found
+ * by the graph, is measured once per trial against an {@link InMemoryEmbeddingStore} holding the same vectors, and
+ * logged when the trial starts. It is not an {@code AuxCounters} result, as JMH sums these over the iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HnswEmbeddingStoreBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(HnswEmbeddingStoreBenchmark.class);
+
+    private static final int QUERIES = 200;
+
+    @Param({"20000"})
+    public int size;
+
+    @Param({"64"})
+    public int dimension;
+
+    @Param({"10"})
+    public int maxResults;
+
+    @Param({"64", "128", "160", "200"})
+    public int efSearch;
+
+    private HnswEmbeddingStore store;
+    private List<EmbeddingSearchRequest> requests;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> ids = new ArrayList<>(size);
+        List<VectorData> embeddings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add("id-" + i);
+            embeddings.add(VectorData.from(randomVector(random, dimension)));
+        }
+        store = HnswEmbeddingStore.builder().efSearch(efSearch).build();
+        store.addAll(ids, embeddings, null);
+        InMemoryEmbeddingStore exact = new InMemoryEmbeddingStore();
+        exact.addAll(ids, embeddings, null);
+
+        requests = new ArrayList<>(QUERIES);
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(VectorData.from(randomVector(random, dimension)))
+                    .maxResults(maxResults)
+                    .build();
+            requests.add(request);
+            Set<String> expected = new HashSet<>();
+            for (EmbeddingMatch<?> match : exact.search(request).matches()) {
+                expected.add(match.embeddingId());
+            }
+            for (EmbeddingMatch<?> match : store.search(request).matches()) {
+                if (expected.contains(match.embeddingId())) {
+                    found++;
+                }
+            }
+        }
+        log.info("efSearch {}: recall {}", efSearch, String.format("%.3f", (double) found / (QUERIES * maxResults)));
+    }
+
+    @Benchmark
+    public Object search() {
+        EmbeddingSearchRequest request = requests.get(next);
+        next = (next + 1) % QUERIES;
+        return store.search(request);
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
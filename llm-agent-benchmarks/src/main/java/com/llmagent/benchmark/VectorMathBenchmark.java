@@ -0,0 +1,72 @@
+package com.llmagent.benchmark;
+
+import com.llmagent.vector.math.VectorMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The dot products of {@link VectorMath} with the scalar kernels, the JVM being started without the
+ * {@code jdk.incubator.vector} module. {@link VectorMathSimdBenchmark} runs the same benchmarks with it.
+ * <p>
+ * {@code scan} scores a query against the rows of a row-major matrix, as the exact in-memory search does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorMathBenchmark {
+
+    private static final int ROWS = 1024;
+
+    @Param({"384", "768", "1024", "1536"})
+    public int dimension;
+
+    private float[] query;
+    private float[] vector;
+    private float[] matrix;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        query = randomVector(random, dimension);
+        vector = randomVector(random, dimension);
+        matrix = randomVector(random, ROWS * dimension);
+    }
+
+    @Benchmark
+    public float dot() {
+        return VectorMath.dot(query, vector);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public float scan() {
+        float best = Float.NEGATIVE_INFINITY;
+        for (int row = 0; row < ROWS; row++) {
+            best = Math.max(best, VectorMath.dot(query, 0, matrix, row * dimension, dimension));
+        }
+        return best;
+    }
+
+    static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}
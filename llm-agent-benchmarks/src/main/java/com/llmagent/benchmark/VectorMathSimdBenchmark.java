@@ -0,0 +1,10 @@
+package com.llmagent.benchmark;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The benchmarks of {@link VectorMathBenchmark} with the Vector API kernels.
+ */
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorMathSimdBenchmark extends VectorMathBenchmark {
+}
@@ -0,0 +1,197 @@
+package com.llmagent.data.message;
+
+import com.llmagent.data.image.Image;
+import com.llmagent.llm.tool.ToolRequest;
+import com.llmagent.util.JsonUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+
+/**
+ * Converts {@link ChatMessage}s to and from JSON with {@link JsonUtil}, e.g. to persist them in a
+ * {@link com.llmagent.llm.memory.ChatMemoryStore}.
+ * <p>
+ * Every message is written as an object with a {@code type} property holding its {@link ChatMessageType},
+ * and every user message content with a {@code type} property holding its {@link ContentType}.
+ */
+public class ChatMessageSerializer {
+    private ChatMessageSerializer() {}
+
+    /**
+     * Serializes the given messages to a JSON array.
+     *
+     * @param messages the messages.
+     * @return the JSON string.
+     */
+    public static String messagesToJson(List<ChatMessage> messages) {
+        List<Map<String, Object>> array = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            array.add(toJsonObject(message));
+        }
+        return JsonUtil.toJson(array);
+    }
+
+    /**
+     * Deserializes messages from a JSON array produced by {@link #messagesToJson(List)}.
+     *
+     * @param json the JSON string, may be null or blank.
+     * @return the messages, or an empty list if the JSON is null or blank.
+     */
+    public static List<ChatMessage> messagesFromJson(String json) {
+        if (json == null || json.isBlank()) {
+            return new ArrayList<>();
+        }
+        List<?> array = JsonUtil.fromJson(json, List.class);
+        List<ChatMessage> messages = new ArrayList<>(array.size());
+        for (Object element : array) {
+            messages.add(fromJsonObject(object(element)));
+        }
+        return messages;
+    }
+
+    private static Map<String, Object> toJsonObject(ChatMessage message) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("type", message.type().name());
+        switch (message.type()) {
+            case SYSTEM -> object.put("content", ((SystemMessage) message).content());
+            case USER -> {
+                UserMessage userMessage = (UserMessage) message;
+                object.put("name", userMessage.name());
+                List<Map<String, Object>> contents = new ArrayList<>(userMessage.contents().size());
+                for (Content content : userMessage.contents()) {
+                    contents.add(toJsonObject(content));
+                }
+                object.put("contents", contents);
+            }
+            case AI -> {
+                AiMessage aiMessage = (AiMessage) message;
+                object.put("content", aiMessage.content());
+                object.put("conversationId", aiMessage.getConversationId());
+                if (aiMessage.hasToolRequests()) {
+                    List<Map<String, Object>> toolRequests = new ArrayList<>(aiMessage.toolRequests().size());
+                    for (ToolRequest toolRequest : aiMessage.toolRequests()) {
+                        Map<String, Object> request = new LinkedHashMap<>();
+                        request.put("id", toolRequest.id());
+                        request.put("name", toolRequest.name());
+                        request.put("arguments", toolRequest.arguments());
+                        toolRequests.add(request);
+                    }
+                    object.put("toolRequests", toolRequests);
+                }
+            }
+            case TOOL -> {
+                ToolMessage toolMessage = (ToolMessage) message;
+                object.put("id", toolMessage.id());
+                object.put("toolName", toolMessage.toolName());
+                object.put("content", toolMessage.content());
+            }
+        }
+        return object;
+    }
+
+    private static Map<String, Object> toJsonObject(Content content) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("type", content.type().name());
+        switch (content.type()) {
+            case TEXT -> object.put("text", ((TextContent) content).text());
+            case IMAGE -> {
+                ImageContent imageContent = (ImageContent) content;
+                Image image = imageContent.image();
+                object.put("url", image.url() == null ? null : image.url().toString());
+                object.put("base64Data", image.base64Data());
+                object.put("mimeType", image.mimeType());
+                object.put("detailLevel", imageContent.detailLevel().name());
+            }
+        }
+        return object;
+    }
+
+    private static ChatMessage fromJsonObject(Map<?, ?> object) {
+        ChatMessageType type = ChatMessageType.valueOf(string(object, "type"));
+        return switch (type) {
+            case SYSTEM -> SystemMessage.from(string(object, "content"));
+            case USER -> {
+                List<Content> contents = new ArrayList<>();
+                for (Object element : array(object, "contents")) {
+                    contents.add(contentFromJsonObject(object(element)));
+                }
+                String name = string(object, "name");
+                yield name == null ? UserMessage.from(contents) : UserMessage.from(name, contents);
+            }
+            case AI -> {
+                List<?> array = array(object, "toolRequests");
+                AiMessage aiMessage;
+                if (array.isEmpty()) {
+                    aiMessage = new AiMessage(string(object, "content"));
+                } else {
+                    List<ToolRequest> toolRequests = new ArrayList<>(array.size());
+                    for (Object element : array) {
+                        Map<?, ?> request = object(element);
+                        toolRequests.add(ToolRequest.builder()
+                                .id(string(request, "id"))
+                                .name(string(request, "name"))
+                                .arguments(string(request, "arguments"))
+                                .build());
+                    }
+                    aiMessage = new AiMessage(string(object, "content"), toolRequests);
+                }
+                aiMessage.setConversationId(string(object, "conversationId"));
+                yield aiMessage;
+            }
+            case TOOL -> new ToolMessage(string(object, "id"), string(object, "toolName"), string(object, "content"));
+        };
+    }
+
+    private static Content contentFromJsonObject(Map<?, ?> object) {
+        ContentType type = ContentType.valueOf(string(object, "type"));
+        return switch (type) {
+            case TEXT -> TextContent.from(string(object, "text"));
+            case IMAGE -> {
+                Image.Builder image = Image.builder()
+                        .base64Data(string(object, "base64Data"))
+                        .mimeType(string(object, "mimeType"));
+                String url = string(object, "url");
+                if (url != null) {
+                    image.url(url);
+                }
+                String detailLevel = string(object, "detailLevel");
+                yield new ImageContent(image.build(), detailLevel == null
+                        ? ImageContent.DetailLevel.LOW
+                        : ImageContent.DetailLevel.valueOf(detailLevel));
+            }
+        };
+    }
+
+    private static Map<?, ?> object(Object element) {
+        if (!(element instanceof Map<?, ?> object)) {
+            throw illegalArgument("A serialized chat message must be a JSON object: %s", element);
+        }
+        return object;
+    }
+
+    private static List<?> array(Map<?, ?> object, String name) {
+        Object value = object.get(name);
+        if (value == null) {
+            return List.of();
+        }
+        if (!(value instanceof List<?> array)) {
+            throw illegalArgument("Property '%s' of a serialized chat message must be an array: %s", name, value);
+        }
+        return array;
+    }
+
+    private static String string(Map<?, ?> object, String name) {
+        Object value = object.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof String string)) {
+            throw illegalArgument("Property '%s' of a serialized chat message must be a string: %s", name, value);
+        }
+        return string;
+    }
+}
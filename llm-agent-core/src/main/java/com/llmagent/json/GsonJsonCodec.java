@@ -9,6 +9,9 @@ import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
@@ -64,6 +67,28 @@ public class GsonJsonCodec implements JsonUtil.JsonCodec {
         return GSON.fromJson(json, type);
     }
 
+    @Override
+    public Map<String, Object> fromJsonObject(String json, Type mapType, Map<String, Type> propertyTypes) {
+        JsonElement element = JsonParser.parseString(json);
+        if (!element.isJsonObject()) {
+            return GSON.fromJson(element, mapType);
+        }
+        Set<Map.Entry<String, JsonElement>> entries = element.getAsJsonObject().entrySet();
+        Map<String, Object> properties = new LinkedHashMap<>((int) (entries.size() / 0.75f) + 1);
+        for (Map.Entry<String, JsonElement> entry : entries) {
+            JsonElement value = entry.getValue();
+            Type type = propertyTypes.get(entry.getKey());
+            if (type == null) {
+                properties.put(entry.getKey(), GSON.fromJson(value, Object.class));
+            } else if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+                properties.put(entry.getKey(), GSON.fromJson(value.getAsString(), type));
+            } else {
+                properties.put(entry.getKey(), GSON.fromJson(value, type));
+            }
+        }
+        return properties;
+    }
+
     @Override
     public InputStream toInputStream(Object o, Class<?> type) throws IOException {
         try (
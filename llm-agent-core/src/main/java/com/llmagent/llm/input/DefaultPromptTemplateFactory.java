@@ -2,7 +2,9 @@ package com.llmagent.llm.input;
 
 import com.llmagent.llm.prompt.PromptTemplateFactory;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -10,6 +12,7 @@ import java.util.regex.Pattern;
 
 import static com.llmagent.exception.Exceptions.illegalArgument;
 import static com.llmagent.util.ValidationUtil.ensureNotBlank;
+import static java.util.Collections.unmodifiableSet;
 
 public class DefaultPromptTemplateFactory implements PromptTemplateFactory {
 
@@ -18,6 +21,10 @@ public class DefaultPromptTemplateFactory implements PromptTemplateFactory {
         return new DefaultTemplate(input.getTemplate());
     }
 
+    /**
+     * A template that is tokenized once into literal and variable segments,
+     * so that rendering is a single pass over the segments regardless of the number of variables.
+     */
     public static class DefaultTemplate implements Template {
 
         @SuppressWarnings("RegExpRedundantEscape")
@@ -26,29 +33,62 @@ public class DefaultPromptTemplateFactory implements PromptTemplateFactory {
         private final String template;
         private final Set<String> allVariables;
 
+        /**
+         * {@code literals[i]} precedes {@code variables[i]}; the last literal has no variable after it,
+         * hence {@code literals.length == variables.length + 1}.
+         */
+        private final String[] literals;
+        private final String[] variables;
+        private final int literalsLength;
+
         public DefaultTemplate(String template) {
             this.template = ensureNotBlank(template, "template");
-            this.allVariables = extractVariables(template);
-        }
 
-        private static Set<String> extractVariables(String template) {
-            Set<String> variables = new HashSet<>();
+            List<String> literals = new ArrayList<>();
+            List<String> variables = new ArrayList<>();
             Matcher matcher = VARIABLE_PATTERN.matcher(template);
+            int position = 0;
             while (matcher.find()) {
+                literals.add(template.substring(position, matcher.start()));
                 variables.add(matcher.group(1));
+                position = matcher.end();
+            }
+            literals.add(template.substring(position));
+
+            this.literals = literals.toArray(new String[0]);
+            this.variables = variables.toArray(new String[0]);
+            this.allVariables = unmodifiableSet(new LinkedHashSet<>(variables));
+
+            int literalsLength = 0;
+            for (String literal : this.literals) {
+                literalsLength += literal.length();
             }
-            return variables;
+            this.literalsLength = literalsLength;
+        }
+
+        /**
+         * @return the names of all variables referenced by this template.
+         */
+        @Override
+        public Set<String> variables() {
+            return allVariables;
         }
 
         public String render(Map<String, Object> variables) {
             ensureAllVariablesProvided(variables);
 
-            String result = template;
-            for (Map.Entry<String, Object> entry : variables.entrySet()) {
-                result = replaceAll(result, entry.getKey(), entry.getValue());
+            String[] values = new String[this.variables.length];
+            int length = literalsLength;
+            for (int i = 0; i < values.length; i++) {
+                values[i] = valueOf(this.variables[i], variables.get(this.variables[i]));
+                length += values[i].length();
             }
 
-            return result;
+            StringBuilder result = new StringBuilder(length);
+            for (int i = 0; i < values.length; i++) {
+                result.append(literals[i]).append(values[i]);
+            }
+            return result.append(literals[values.length]).toString();
         }
 
         private void ensureAllVariablesProvided(Map<String, Object> providedVariables) {
@@ -59,15 +99,12 @@ public class DefaultPromptTemplateFactory implements PromptTemplateFactory {
             }
         }
 
-        private static String replaceAll(String template, String variable, Object value) {
-            if (value == null || value.toString() == null) {
+        private static String valueOf(String variable, Object value) {
+            String string = value == null ? null : value.toString();
+            if (string == null) {
                 throw illegalArgument("Value for the variable '%s' is null", variable);
             }
-            return template.replace(inDoubleCurlyBrackets(variable), value.toString());
-        }
-
-        private static String inDoubleCurlyBrackets(String variable) {
-            return "{{" + variable + "}}";
+            return string;
         }
     }
 }
@@ -8,6 +8,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static com.llmagent.util.ServiceHelper.loadFactories;
 import static com.llmagent.util.ValidationUtil.ensureNotBlank;
@@ -32,6 +33,10 @@ public class PromptTemplate {
     private final PromptTemplateFactory.Template template;
     private final Clock clock;
 
+    private final boolean usesCurrentDate;
+    private final boolean usesCurrentTime;
+    private final boolean usesCurrentDateTime;
+
     /**
      * Create a new PromptTemplate.
      *
@@ -64,6 +69,11 @@ public class PromptTemplate {
             }
         });
         this.clock = ensureNotNull(clock, "clock");
+        // asks the template rather than matching the raw string, as factories may use another syntax
+        Set<String> variables = this.template.variables();
+        this.usesCurrentDate = variables == null || variables.contains(CURRENT_DATE);
+        this.usesCurrentTime = variables == null || variables.contains(CURRENT_TIME);
+        this.usesCurrentDateTime = variables == null || variables.contains(CURRENT_DATE_TIME);
     }
 
     /**
@@ -95,16 +105,27 @@ public class PromptTemplate {
     }
 
     /**
-     * Injects the special variables {{current_date}}, {{current_time}}, and {{current_date_time}} into the given map.
+     * Injects the special variables {{current_date}}, {{current_time}}, and {{current_date_time}} into the given map,
+     * but only those the template references, or all of them if its factory cannot tell.
      *
      * @param variables the map to inject the variables into.
-     * @return a copy of the map with the variables injected.
+     * @return the given map if the template references none of the special variables,
+     * otherwise a copy of the map with the referenced variables injected.
      */
     private Map<String, Object> injectDateTimeVariables(Map<String, Object> variables) {
+        if (!usesCurrentDate && !usesCurrentTime && !usesCurrentDateTime) {
+            return variables;
+        }
         Map<String, Object> variablesCopy = new HashMap<>(variables);
-        variablesCopy.put(CURRENT_DATE, LocalDate.now(clock));
-        variablesCopy.put(CURRENT_TIME, LocalTime.now(clock));
-        variablesCopy.put(CURRENT_DATE_TIME, LocalDateTime.now(clock));
+        if (usesCurrentDate) {
+            variablesCopy.put(CURRENT_DATE, LocalDate.now(clock));
+        }
+        if (usesCurrentTime) {
+            variablesCopy.put(CURRENT_TIME, LocalTime.now(clock));
+        }
+        if (usesCurrentDateTime) {
+            variablesCopy.put(CURRENT_DATE_TIME, LocalDateTime.now(clock));
+        }
         return variablesCopy;
     }
 
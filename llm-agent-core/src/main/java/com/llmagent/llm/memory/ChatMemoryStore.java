@@ -0,0 +1,41 @@
+package com.llmagent.llm.memory;
+
+import com.llmagent.data.message.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Persists the messages of {@link ChatMemory} instances, so that conversations survive restarts
+ * and can be shared between nodes.
+ * <p>
+ * Implementations must be thread-safe. They are not expected to cache: {@link WriteBehindChatMemory}
+ * reads a conversation once and then only writes it, coalescing consecutive changes into a single update.
+ *
+ * @see WriteBehindChatMemory
+ * @see FileChatMemoryStore
+ */
+public interface ChatMemoryStore {
+
+    /**
+     * Retrieves the messages of the chat memory with the given id.
+     *
+     * @param memoryId the id of the chat memory.
+     * @return the stored messages, or an empty list if there are none.
+     */
+    List<ChatMessage> getMessages(Object memoryId);
+
+    /**
+     * Replaces all stored messages of the chat memory with the given id.
+     *
+     * @param memoryId the id of the chat memory.
+     * @param messages the current messages of the chat memory.
+     */
+    void updateMessages(Object memoryId, List<ChatMessage> messages);
+
+    /**
+     * Deletes all stored messages of the chat memory with the given id.
+     *
+     * @param memoryId the id of the chat memory.
+     */
+    void deleteMessages(Object memoryId);
+}
@@ -0,0 +1,95 @@
+package com.llmagent.llm.memory;
+
+import com.llmagent.data.message.ChatMessage;
+import com.llmagent.data.message.ChatMessageSerializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * A {@link ChatMemoryStore} keeping each chat memory in a JSON file of a local directory.
+ * <p>
+ * The file name is derived from {@code memoryId.toString()}, so ids must have a stable string representation.
+ * Every update writes a temporary file that is then atomically moved over the previous one,
+ * so a crash never leaves a partially written conversation behind.
+ * <p>
+ * This store is meant for local development, tests and single-node deployments.
+ */
+public class FileChatMemoryStore implements ChatMemoryStore {
+
+    private static final String EXTENSION = ".json";
+
+    private final Path directory;
+
+    public FileChatMemoryStore(Path directory) {
+        this.directory = ensureNotNull(directory, "directory");
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create chat memory directory " + directory, e);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        try {
+            return ChatMessageSerializer.messagesFromJson(Files.readString(file(memoryId), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read chat memory " + memoryId, e);
+        }
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        Path file = file(memoryId);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.writeString(temp, ChatMessageSerializer.messagesToJson(messages), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write chat memory " + memoryId, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // the temporary file is left behind, it does not affect the stored messages
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        try {
+            Files.deleteIfExists(file(memoryId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete chat memory " + memoryId, e);
+        }
+    }
+
+    private Path file(Object memoryId) {
+        ensureNotNull(memoryId, "memoryId");
+        String name = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(memoryId.toString().getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(name + EXTENSION);
+    }
+}
@@ -0,0 +1,205 @@
+package com.llmagent.llm.memory;
+
+import com.llmagent.data.message.AiMessage;
+import com.llmagent.data.message.ChatMessage;
+import com.llmagent.data.message.SystemMessage;
+import com.llmagent.data.message.ToolMessage;
+import com.llmagent.llm.chat.TokenCountEstimator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * A {@link ChatMemory} that retains as many of the most recent messages as fit into a token budget.
+ * <p>
+ * The token count of every message is estimated once, when the message is added, and kept alongside it,
+ * so neither {@link #add(ChatMessage)} nor {@link #messages()} re-tokenizes the history.
+ * When the budget is exceeded, the oldest messages are evicted, each message being evicted at most once,
+ * which makes {@link #add(ChatMessage)} O(1) amortized.
+ * <p>
+ * Eviction keeps the conversation well-formed:
+ * <ul>
+ * <li>The {@link SystemMessage}, if any, is always retained and always returned first.
+ * There can be only one: adding a different system message replaces it, adding an equal one is a no-op.</li>
+ * <li>An {@link AiMessage} with tool requests and the {@link ToolMessage}s answering it are evicted together,
+ * since most LLM providers reject a tool result without its tool call, and vice versa.</li>
+ * <li>The most recent message (or tool call with its results) is never evicted, even if it alone
+ * exceeds the budget.</li>
+ * </ul>
+ * This class is thread-safe.
+ */
+public class TokenWindowChatMemory implements ChatMemory {
+
+    private final Object id;
+    private final int maxTokens;
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private SystemMessage systemMessage;
+    private int systemMessageTokens;
+    private final ArrayDeque<Group> groups = new ArrayDeque<>();
+    private int totalTokens;
+    private List<ChatMessage> messages;
+
+    private TokenWindowChatMemory(Builder builder) {
+        this.id = getOrDefault(builder.id, "default");
+        this.maxTokens = ensureGreaterThanZero(builder.maxTokens, "maxTokens");
+        this.tokenCountEstimator = ensureNotNull(builder.tokenCountEstimator, "tokenCountEstimator");
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        if (message instanceof SystemMessage newSystemMessage) {
+            if (newSystemMessage.equals(systemMessage)) {
+                return;
+            }
+            totalTokens -= systemMessageTokens;
+            systemMessage = newSystemMessage;
+            systemMessageTokens = tokenCountEstimator.estimateTokenCountInMessage(newSystemMessage);
+            totalTokens += systemMessageTokens;
+        } else {
+            int tokens = tokenCountEstimator.estimateTokenCountInMessage(message);
+            Group last = groups.peekLast();
+            if (message instanceof ToolMessage && last != null && last.isToolCall()) {
+                last.add(message, tokens);
+            } else {
+                groups.addLast(new Group(message, tokens));
+            }
+            totalTokens += tokens;
+        }
+        evict();
+        messages = null;
+    }
+
+    private void evict() {
+        while (totalTokens > maxTokens && groups.size() > 1) {
+            totalTokens -= groups.removeFirst().tokens;
+        }
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        if (messages == null) {
+            List<ChatMessage> result = new ArrayList<>(groups.size() + 1);
+            if (systemMessage != null) {
+                result.add(systemMessage);
+            }
+            for (Group group : groups) {
+                group.addTo(result);
+            }
+            messages = Collections.unmodifiableList(result);
+        }
+        return messages;
+    }
+
+    /**
+     * @return the estimated count of tokens in {@link #messages()}, as cached when the messages were added.
+     */
+    public synchronized int tokenCount() {
+        return totalTokens;
+    }
+
+    @Override
+    public synchronized void clear() {
+        systemMessage = null;
+        systemMessageTokens = 0;
+        groups.clear();
+        totalTokens = 0;
+        messages = null;
+    }
+
+    /**
+     * A message, or a tool call followed by its results, evicted as a unit.
+     */
+    private static final class Group {
+
+        private final ChatMessage first;
+        private List<ChatMessage> toolResults;
+        private int tokens;
+
+        private Group(ChatMessage first, int tokens) {
+            this.first = first;
+            this.tokens = tokens;
+        }
+
+        private boolean isToolCall() {
+            return first instanceof AiMessage aiMessage && aiMessage.hasToolRequests();
+        }
+
+        private void add(ChatMessage toolResult, int tokens) {
+            if (toolResults == null) {
+                toolResults = new ArrayList<>(2);
+            }
+            toolResults.add(toolResult);
+            this.tokens += tokens;
+        }
+
+        private void addTo(List<ChatMessage> messages) {
+            messages.add(first);
+            if (toolResults != null) {
+                messages.addAll(toolResults);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a {@link TokenWindowChatMemory} with the default id.
+     *
+     * @param maxTokens           the maximum count of tokens to retain.
+     * @param tokenCountEstimator the estimator used to count the tokens of each message once.
+     * @return the chat memory.
+     */
+    public static TokenWindowChatMemory withMaxTokens(int maxTokens, TokenCountEstimator tokenCountEstimator) {
+        return builder().maxTokens(maxTokens).tokenCountEstimator(tokenCountEstimator).build();
+    }
+
+    public static class Builder {
+
+        private Object id;
+        private Integer maxTokens;
+        private TokenCountEstimator tokenCountEstimator;
+
+        /**
+         * The id of the chat memory, typically the memory id passed to a {@link ChatMemoryProvider}.
+         * Defaults to "default".
+         */
+        public Builder id(Object id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * The maximum count of tokens to retain, including the system message.
+         */
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        /**
+         * The estimator used to count the tokens of each message, once, when it is added.
+         */
+        public Builder tokenCountEstimator(TokenCountEstimator tokenCountEstimator) {
+            this.tokenCountEstimator = tokenCountEstimator;
+            return this;
+        }
+
+        public TokenWindowChatMemory build() {
+            return new TokenWindowChatMemory(this);
+        }
+    }
+}
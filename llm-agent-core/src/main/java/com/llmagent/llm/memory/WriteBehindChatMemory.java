@@ -0,0 +1,287 @@
+package com.llmagent.llm.memory;
+
+import com.llmagent.data.message.AiMessage;
+import com.llmagent.data.message.ChatMessage;
+import com.llmagent.data.message.SystemMessage;
+import com.llmagent.util.ExecutorUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * A {@link ChatMemory} persisted in a {@link ChatMemoryStore} with write-behind semantics.
+ * <p>
+ * The messages are read from the store once, on first access, and then served from an in-process delegate
+ * (e.g. a {@link TokenWindowChatMemory}, which decides which messages are retained). Changes are not written
+ * through: they mark the memory dirty, and the current messages are written in a single
+ * {@link ChatMemoryStore#updateMessages(Object, List)} call, asynchronously, when the turn completes,
+ * i.e. when an {@link AiMessage} without tool requests is added. A turn with a user message, several tool calls
+ * and their results thus costs one store write instead of one per message. Changes that do not end with a final
+ * answer (e.g. a turn that failed) are written at the latest after {@link Builder#maxFlushDelay(Duration)}.
+ * <p>
+ * Writes of the same memory never overlap and are applied in order. A failed write is logged and retried
+ * with the next one. Call {@link #flush()} to write pending changes synchronously, e.g. on shutdown or from a
+ * {@code ChatMemoryEvictionListener}.
+ */
+public class WriteBehindChatMemory implements ChatMemory {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindChatMemory.class);
+
+    private static final Duration DEFAULT_MAX_FLUSH_DELAY = Duration.ofSeconds(5);
+
+    private final Object id;
+    private final ChatMemoryStore store;
+    private final ChatMemory delegate;
+    private final Executor executor;
+    private final long maxFlushDelayMillis;
+
+    /**
+     * Held while writing to the store, so that writes are serialized.
+     */
+    private final Object flushLock = new Object();
+
+    // guarded by this
+    private boolean loaded;
+    private boolean dirty;
+    private boolean flushPending;
+    private boolean flushScheduled;
+
+    private WriteBehindChatMemory(Builder builder) {
+        this.id = getOrDefault(builder.id, "default");
+        this.store = ensureNotNull(builder.store, "store");
+        this.delegate = builder.delegate != null ? builder.delegate : new ListChatMemory(id);
+        this.executor = builder.executor != null ? builder.executor : ExecutorUtil.defaultExecutor();
+        this.maxFlushDelayMillis = getOrDefault(builder.maxFlushDelay, DEFAULT_MAX_FLUSH_DELAY).toMillis();
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        boolean endOfTurn = message instanceof AiMessage aiMessage && !aiMessage.hasToolRequests();
+        synchronized (this) {
+            ensureLoaded();
+            delegate.add(message);
+            dirty = true;
+            if (endOfTurn) {
+                flushAsync();
+            } else {
+                scheduleFlush();
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        ensureLoaded();
+        return delegate.messages();
+    }
+
+    @Override
+    public synchronized void clear() {
+        loaded = true;
+        delegate.clear();
+        dirty = true;
+        flushAsync();
+    }
+
+    /**
+     * Writes the pending changes, if any, to the store on the calling thread.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<ChatMessage> messages;
+            synchronized (this) {
+                flushPending = false;
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                messages = List.copyOf(delegate.messages());
+            }
+            try {
+                if (messages.isEmpty()) {
+                    store.deleteMessages(id);
+                } else {
+                    store.updateMessages(id, messages);
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            List<ChatMessage> messages = store.getMessages(id);
+            if (messages != null) {
+                messages.forEach(delegate::add);
+            }
+            loaded = true;
+        }
+    }
+
+    private void flushAsync() {
+        if (flushPending) {
+            return;
+        }
+        flushPending = true;
+        try {
+            executor.execute(this::flushQuietly);
+        } catch (RejectedExecutionException e) {
+            flushPending = false;
+            log.warn("Could not schedule the write of chat memory '{}', it will be retried with the next change", id, e);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        ExecutorUtil.scheduler().schedule(() -> {
+            synchronized (this) {
+                flushScheduled = false;
+                if (dirty) {
+                    flushAsync();
+                }
+            }
+        }, maxFlushDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Failed to write chat memory '{}' to the store, it will be retried with the next change", id, e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Object id;
+        private ChatMemoryStore store;
+        private ChatMemory delegate;
+        private Executor executor;
+        private Duration maxFlushDelay;
+
+        /**
+         * The id of the chat memory, under which it is stored. Defaults to "default".
+         */
+        public Builder id(Object id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * The store the messages are read from and written to.
+         */
+        public Builder store(ChatMemoryStore store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * The in-process chat memory holding the messages between writes, and deciding which are retained.
+         * It must be empty and have the same id. By default, all messages are retained.
+         */
+        public Builder delegate(ChatMemory delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * The executor performing the writes. Defaults to {@link ExecutorUtil#defaultExecutor()}.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * The maximum time changes stay unwritten when no turn completes. Defaults to 5 seconds.
+         */
+        public Builder maxFlushDelay(Duration maxFlushDelay) {
+            this.maxFlushDelay = maxFlushDelay;
+            return this;
+        }
+
+        public WriteBehindChatMemory build() {
+            return new WriteBehindChatMemory(this);
+        }
+    }
+
+    /**
+     * Retains all messages. Only accessed while holding the monitor of the enclosing memory.
+     * The immutable copy returned by {@link #messages()} is kept until the next change, as the messages are
+     * usually read several times per turn, e.g. for each model call, and once more when they are written.
+     */
+    private static final class ListChatMemory implements ChatMemory {
+
+        private final Object id;
+        private final List<ChatMessage> messages = new ArrayList<>();
+        private List<ChatMessage> snapshot;
+
+        private ListChatMemory(Object id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object id() {
+            return id;
+        }
+
+        /**
+         * Keeps a single system message, always first: a new system message replaces the previous one.
+         */
+        @Override
+        public void add(ChatMessage message) {
+            if (message instanceof SystemMessage) {
+                boolean hasSystemMessage = !messages.isEmpty() && messages.get(0) instanceof SystemMessage;
+                if (hasSystemMessage && message.equals(messages.get(0))) {
+                    return;
+                }
+                if (hasSystemMessage) {
+                    messages.set(0, message);
+                } else {
+                    messages.add(0, message);
+                }
+            } else {
+                messages.add(message);
+            }
+            snapshot = null;
+        }
+
+        @Override
+        public List<ChatMessage> messages() {
+            if (snapshot == null) {
+                snapshot = List.copyOf(messages);
+            }
+            return snapshot;
+        }
+
+        @Override
+        public void clear() {
+            messages.clear();
+            snapshot = null;
+        }
+    }
+}
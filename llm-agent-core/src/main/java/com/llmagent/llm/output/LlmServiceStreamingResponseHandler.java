@@ -17,6 +17,8 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
 import static com.llmagent.util.ObjectUtil.copy;
@@ -78,20 +80,41 @@ public class LlmServiceStreamingResponseHandler implements StreamingChatResponse
         addToMemory(aiMessage);
 
         if (aiMessage.hasToolRequests()) {
-            for (ToolRequest toolExecutionRequest : aiMessage.toolRequests()) {
-                String toolName = toolExecutionRequest.name();
-                ToolExecutor toolExecutor = toolExecutors.get(toolName);
-                String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
-                ToolMessage toolExecutionResultMessage = ToolMessage.from(
-                        toolExecutionRequest,
-                        toolExecutionResult
-                );
+            // tools are user code and may be slow, never run them on the model provider's I/O thread
+            Executor executor = context.toolService.streamingToolExecutor();
+            try {
+                executor.execute(() -> executeToolsAndContinue(aiMessage, completeResponse));
+            } catch (RejectedExecutionException e) {
+                onError(e);
+            }
+        } else {
+            if (completeResponseHandler != null) {
+                ChatResponse finalChatResponse = ChatResponse.builder()
+                        .aiMessage(aiMessage)
+                        .metadata(completeResponse.metadata().toBuilder()
+                                .tokenUsage(tokenUsage.add(completeResponse.metadata().tokenUsage()))
+                                .build())
+                        .build();
+                completeResponseHandler.accept(finalChatResponse);
+            }
+        }
+    }
+
+    private void executeToolsAndContinue(AiMessage aiMessage, ChatResponse completeResponse) {
+        try {
+            List<ToolRequest> toolRequests = aiMessage.toolRequests();
+            // never fan out to a user-provided executor running this task, it may be a bounded pool
+            List<ToolMessage> toolMessages = context.toolService.executeTools(
+                    toolRequests, toolExecutors, memoryId, context.toolService.streamingConcurrentToolExecutor());
+
+            for (int i = 0; i < toolRequests.size(); i++) {
+                ToolMessage toolExecutionResultMessage = toolMessages.get(i);
                 addToMemory(toolExecutionResultMessage);
 
                 if (toolExecutionHandler != null) {
                     ToolExecution toolExecution = ToolExecution.builder()
-                            .request(toolExecutionRequest)
-                            .result(toolExecutionResult)
+                            .request(toolRequests.get(i))
+                            .result(toolExecutionResultMessage.content())
                             .build();
                     toolExecutionHandler.accept(toolExecution);
                 }
@@ -116,16 +139,8 @@ public class LlmServiceStreamingResponseHandler implements StreamingChatResponse
             );
 
             context.streamingChatModel.chat(chatRequest, handler);
-        } else {
-            if (completeResponseHandler != null) {
-                ChatResponse finalChatResponse = ChatResponse.builder()
-                        .aiMessage(aiMessage)
-                        .metadata(completeResponse.metadata().toBuilder()
-                                .tokenUsage(tokenUsage.add(completeResponse.metadata().tokenUsage()))
-                                .build())
-                        .build();
-                completeResponseHandler.accept(finalChatResponse);
-            }
+        } catch (Exception e) {
+            onError(e);
         }
     }
 
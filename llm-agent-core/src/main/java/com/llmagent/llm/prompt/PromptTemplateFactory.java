@@ -1,6 +1,7 @@
 package com.llmagent.llm.prompt;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A factory for creating prompt templates.
@@ -35,6 +36,15 @@ public interface PromptTemplateFactory {
          * @return the rendered template.
          */
         String render(Map<String, Object> variables);
+
+        /**
+         * Get the names of the variables referenced by the template, in the syntax of the factory.
+         * @return the variable names, or {@code null} if the template cannot tell, in which case every special
+         * variable (e.g. {@code current_date}) is provided when rendering.
+         */
+        default Set<String> variables() {
+            return null;
+        }
     }
 
     /**
@@ -0,0 +1,367 @@
+package com.llmagent.llm.rag;
+
+import com.llmagent.data.message.ChatMessage;
+import com.llmagent.data.message.UserMessage;
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.llm.embedding.EmbeddingModel;
+import com.llmagent.llm.input.PromptTemplate;
+import com.llmagent.llm.rag.aggregator.ContentAggregator;
+import com.llmagent.llm.rag.aggregator.DefaultContentAggregator;
+import com.llmagent.llm.rag.aggregator.ReRankingContentAggregator;
+import com.llmagent.llm.rag.aggregator.ReciprocalRankFusionContentAggregator;
+import com.llmagent.llm.rag.content.Content;
+import com.llmagent.llm.rag.content.ContentMetadata;
+import com.llmagent.util.ExecutorUtil;
+import com.llmagent.vector.store.EmbeddingMatch;
+import com.llmagent.vector.store.EmbeddingSearchRequest;
+import com.llmagent.vector.store.EmbeddingStore;
+import com.llmagent.vector.store.VectorData;
+import com.llmagent.vector.store.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.StringUtil.isNotNullOrBlank;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * The default {@link RetrievalAugmentor}: embeds the text of the {@link UserMessage} with an {@link EmbeddingModel},
+ * searches all configured {@link EmbeddingStore}s concurrently, merges their matches and injects the most relevant
+ * ones into the user message.
+ * <p>
+ * Each stage is bounded by its own timeout, so that a slow embedding model or store degrades the answer instead of
+ * stalling the request: when the query cannot be embedded in time the message is not augmented, and a store that
+ * does not answer in time (or fails) is left out of the results. Both cases are logged.
+ * <p>
+ * The matches of all stores are merged by a {@link ContentAggregator}. By default they are deduplicated by the text
+ * of their {@link TextSegment}, keeping the highest score, sorted by descending score and limited to
+ * {@link Builder#maxResults(Integer)}.
+ */
+public class DefaultRetrievalAugmentor implements RetrievalAugmentor {
+    private static final Logger log = LoggerFactory.getLogger(DefaultRetrievalAugmentor.class);
+
+    public static final PromptTemplate DEFAULT_PROMPT_TEMPLATE = PromptTemplate.from(
+            "{{userMessage}}\n\nAnswer using the following information:\n{{contents}}");
+
+    private final EmbeddingModel embeddingModel;
+    private final List<EmbeddingStore<TextSegment>> embeddingStores;
+    private final int maxResults;
+    private final double minScore;
+    private final Filter filter;
+    private final ContentAggregator contentAggregator;
+    private final PromptTemplate promptTemplate;
+    private final Executor executor;
+    private final Duration embeddingTimeout;
+    private final Duration searchTimeout;
+
+    private DefaultRetrievalAugmentor(Builder builder) {
+        this.embeddingModel = ensureNotNull(builder.embeddingModel, "embeddingModel");
+        this.embeddingStores = List.copyOf(ensureNotEmpty(builder.embeddingStores, "embeddingStores"));
+        this.maxResults = ensureGreaterThanZero(getOrDefault(builder.maxResults, 3), "maxResults");
+        this.minScore = getOrDefault(builder.minScore, 0.0);
+        this.filter = builder.filter;
+        this.contentAggregator = builder.contentAggregator != null
+                ? builder.contentAggregator
+                : new DefaultContentAggregator(maxResults);
+        this.promptTemplate = getOrDefault(builder.promptTemplate, DEFAULT_PROMPT_TEMPLATE);
+        this.executor = builder.executor != null ? builder.executor : ExecutorUtil.defaultExecutor();
+        this.embeddingTimeout = builder.embeddingTimeout;
+        this.searchTimeout = builder.searchTimeout;
+    }
+
+    @Override
+    public AugmentationResult augment(AugmentationRequest augmentationRequest) {
+        try {
+            return augmentAsync(augmentationRequest, executor).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Embeds the query and searches the stores on the configured executor, composing the stages so that no task
+     * waits for another one. The given executor is not used. Cancelling the returned future interrupts the
+     * embedding and the searches still running.
+     */
+    @Override
+    public CompletableFuture<AugmentationResult> augmentAsync(AugmentationRequest augmentationRequest,
+                                                              Executor executor) {
+        ChatMessage chatMessage = augmentationRequest.chatMessage();
+        if (!(chatMessage instanceof UserMessage userMessage) || !userMessage.hasSingleText()) {
+            return CompletableFuture.completedFuture(new AugmentationResult(chatMessage, Collections.emptyList()));
+        }
+
+        String query = userMessage.singleText();
+        CompletableFuture<AugmentationResult> result = new CompletableFuture<>();
+        embed(query, result)
+                .thenCompose(queryEmbedding -> {
+                    if (queryEmbedding == null) {
+                        return CompletableFuture.completedFuture(
+                                new AugmentationResult(chatMessage, Collections.emptyList()));
+                    }
+                    return search(queryEmbedding, result).thenApply(contentsBySources -> {
+                        List<Content> contents = contentAggregator.aggregate(query, contentsBySources);
+                        return contents.isEmpty()
+                                ? new AugmentationResult(chatMessage, contents)
+                                : new AugmentationResult(inject(userMessage, contents), contents);
+                    });
+                })
+                .whenComplete((augmentationResult, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(augmentationResult);
+                    }
+                });
+        return result;
+    }
+
+    private CompletableFuture<VectorData> embed(String query, CompletableFuture<?> result) {
+        return submit(() -> embeddingModel.embed(query).content(), embeddingTimeout, result)
+                .handle((embedding, error) -> {
+                    if (error != null) {
+                        log.warn("Failed to embed the query, the user message is not augmented", error);
+                        return null;
+                    }
+                    if (embedding == null) {
+                        log.warn("The query was not embedded within {}, the user message is not augmented", embeddingTimeout);
+                    }
+                    return embedding;
+                });
+    }
+
+    private CompletableFuture<List<List<Content>>> search(VectorData queryEmbedding, CompletableFuture<?> result) {
+        EmbeddingSearchRequest searchRequest = EmbeddingSearchRequest.builder()
+                .queryEmbedding(queryEmbedding)
+                .maxResults(maxResults)
+                .minScore(minScore)
+                .filter(filter)
+                .build();
+
+        List<CompletableFuture<List<EmbeddingMatch<TextSegment>>>> futures = new ArrayList<>(embeddingStores.size());
+        for (EmbeddingStore<TextSegment> embeddingStore : embeddingStores) {
+            futures.add(submit(() -> embeddingStore.search(searchRequest).matches(), searchTimeout, result)
+                    .handle((matches, error) -> {
+                        if (error != null) {
+                            log.warn("Failed to search embedding store {}", embeddingStore, error);
+                            return null;
+                        }
+                        if (matches == null) {
+                            log.warn("Embedding store {} did not answer within {}", embeddingStore, searchTimeout);
+                        }
+                        return matches;
+                    }));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<List<Content>> contentsBySources = new ArrayList<>(futures.size());
+            for (CompletableFuture<List<EmbeddingMatch<TextSegment>>> future : futures) {
+                List<EmbeddingMatch<TextSegment>> matches = future.join();
+                if (matches == null) {
+                    continue;
+                }
+                List<Content> contents = new ArrayList<>(matches.size());
+                for (EmbeddingMatch<TextSegment> match : matches) {
+                    if (match.embedded() == null || match.embedded().text() == null) {
+                        continue;
+                    }
+                    Map<ContentMetadata, Object> metadata = new HashMap<>(4);
+                    if (match.score() != null) {
+                        metadata.put(ContentMetadata.SCORE, match.score());
+                    }
+                    if (match.embeddingId() != null) {
+                        metadata.put(ContentMetadata.EMBEDDING_ID, match.embeddingId());
+                    }
+                    contents.add(Content.from(match.embedded(), metadata));
+                }
+                contentsBySources.add(contents);
+            }
+            return contentsBySources;
+        });
+    }
+
+    private UserMessage inject(UserMessage userMessage, List<Content> contents) {
+        StringBuilder sb = new StringBuilder();
+        for (Content content : contents) {
+            if (!sb.isEmpty()) {
+                sb.append("\n\n");
+            }
+            sb.append(content.textSegment().text());
+        }
+        Map<String, Object> variables = new HashMap<>(4);
+        variables.put("userMessage", userMessage.singleText());
+        variables.put("contents", sb.toString());
+        String text = promptTemplate.apply(variables).text();
+        return isNotNullOrBlank(userMessage.name()) ? UserMessage.from(userMessage.name(), text) : UserMessage.from(text);
+    }
+
+    /**
+     * Runs the task on the executor. When the timeout elapses first, the returned future completes with
+     * {@code null} and the task is interrupted; it is interrupted as well when {@code result} is cancelled.
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> callable, Duration timeout, CompletableFuture<?> result) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // a FutureTask rather than supplyAsync, as cancelling a CompletableFuture does not interrupt its task
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, null);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (timeout != null) {
+            CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                // only a timeout that wins the race against the task interrupts it
+                if (future.complete(null)) {
+                    task.cancel(true);
+                }
+            });
+        }
+        result.whenComplete((ignored, error) -> {
+            if (result.isCancelled()) {
+                future.cancel(false);
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private EmbeddingModel embeddingModel;
+        private List<EmbeddingStore<TextSegment>> embeddingStores;
+        private Integer maxResults;
+        private Double minScore;
+        private Filter filter;
+        private ContentAggregator contentAggregator;
+        private PromptTemplate promptTemplate;
+        private Executor executor;
+        private Duration embeddingTimeout;
+        private Duration searchTimeout;
+
+        /**
+         * The model embedding the text of the user message.
+         */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /**
+         * The store to search. Shortcut for {@link #embeddingStores(List)} with a single store.
+         */
+        public Builder embeddingStore(EmbeddingStore<TextSegment> embeddingStore) {
+            this.embeddingStores = List.of(embeddingStore);
+            return this;
+        }
+
+        /**
+         * The stores to search, concurrently.
+         */
+        public Builder embeddingStores(List<EmbeddingStore<TextSegment>> embeddingStores) {
+            this.embeddingStores = embeddingStores;
+            return this;
+        }
+
+        /**
+         * The maximum number of contents requested from each store and, unless a
+         * {@link #contentAggregator(ContentAggregator)} is configured, injected into the user message. Default: 3.
+         */
+        public Builder maxResults(Integer maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        /**
+         * The minimum score of a match, from 0 to 1. Default: 0.
+         */
+        public Builder minScore(Double minScore) {
+            this.minScore = minScore;
+            return this;
+        }
+
+        /**
+         * The filter applied to the metadata of the segments during search. Default: no filtering.
+         */
+        public Builder filter(Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Merges the contents retrieved from all stores into the ones injected into the user message, e.g.
+         * {@link ReciprocalRankFusionContentAggregator} or {@link ReRankingContentAggregator}.
+         * Default: {@link DefaultContentAggregator}, deduplicating by text and keeping the best scores.
+         */
+        public Builder contentAggregator(ContentAggregator contentAggregator) {
+            this.contentAggregator = contentAggregator;
+            return this;
+        }
+
+        /**
+         * The template of the augmented user message, with the variables {@code {{userMessage}}} and
+         * {@code {{contents}}}. Default: {@link #DEFAULT_PROMPT_TEMPLATE}.
+         */
+        public Builder promptTemplate(PromptTemplate promptTemplate) {
+            this.promptTemplate = promptTemplate;
+            return this;
+        }
+
+        /**
+         * The executor running the embedding and the searches. Default: {@link ExecutorUtil#defaultExecutor()}.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * The maximum time to embed the query. Default: no timeout.
+         */
+        public Builder embeddingTimeout(Duration embeddingTimeout) {
+            this.embeddingTimeout = embeddingTimeout;
+            return this;
+        }
+
+        /**
+         * The maximum time to wait for each store. Default: no timeout.
+         */
+        public Builder searchTimeout(Duration searchTimeout) {
+            this.searchTimeout = searchTimeout;
+            return this;
+        }
+
+        public DefaultRetrievalAugmentor build() {
+            return new DefaultRetrievalAugmentor(this);
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.llmagent.data.message.ChatMessage;
 import com.llmagent.data.message.Content;
 import com.llmagent.llm.chat.ChatLanguageModel;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Augments the provided {@link ChatMessage} with retrieved {@link Content}s.
  * <br>
@@ -19,4 +22,21 @@ public interface RetrievalAugmentor {
      * @return The {@link AugmentationResult} containing the augmented {@code ChatMessage}.
      */
     AugmentationResult augment(AugmentationRequest augmentationRequest);
+
+    /**
+     * Augments the {@link ChatMessage} provided in the {@link AugmentationRequest} asynchronously.
+     * <p>
+     * The default implementation invokes {@link #augment(AugmentationRequest)} on the given executor.
+     * Implementations running their own stages concurrently should override it and compose these stages
+     * instead, so that no task waits for other tasks, possibly queued on the same bounded executor.
+     * Cancelling the returned future should stop the pending stages.
+     *
+     * @param augmentationRequest The {@code AugmentationRequest} containing the {@code ChatMessage} to augment.
+     * @param executor            The executor on which a blocking implementation is invoked.
+     * @return A future of the {@link AugmentationResult} containing the augmented {@code ChatMessage}.
+     */
+    default CompletableFuture<AugmentationResult> augmentAsync(AugmentationRequest augmentationRequest,
+                                                               Executor executor) {
+        return CompletableFuture.supplyAsync(() -> augment(augmentationRequest), executor);
+    }
 }
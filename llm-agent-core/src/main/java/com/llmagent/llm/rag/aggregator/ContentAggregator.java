@@ -0,0 +1,23 @@
+package com.llmagent.llm.rag.aggregator;
+
+import com.llmagent.llm.rag.content.Content;
+
+import java.util.List;
+
+/**
+ * Aggregates the {@link Content}s retrieved from one or more sources into a single ranked list.
+ *
+ * @see ReciprocalRankFusionContentAggregator
+ * @see ReRankingContentAggregator
+ */
+public interface ContentAggregator {
+
+    /**
+     * Aggregates the retrieved contents.
+     *
+     * @param query             the query the contents were retrieved for.
+     * @param contentsBySources the contents retrieved from each source, each list ordered from the most relevant.
+     * @return the aggregated contents, ordered from the most relevant.
+     */
+    List<Content> aggregate(String query, List<List<Content>> contentsBySources);
+}
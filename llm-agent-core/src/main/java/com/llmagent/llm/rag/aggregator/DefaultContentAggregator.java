@@ -0,0 +1,46 @@
+package com.llmagent.llm.rag.aggregator;
+
+import com.llmagent.llm.rag.content.Content;
+import com.llmagent.llm.rag.content.ContentMetadata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+
+/**
+ * The default {@link ContentAggregator}: deduplicates contents by the text of their segment, keeping the one with the
+ * highest {@link ContentMetadata#SCORE}, sorts them by descending score and keeps the best {@code maxResults}.
+ * <p>
+ * This assumes that all sources score on the same scale, e.g. cosine similarity computed with the same embedding
+ * model. Use {@link ReciprocalRankFusionContentAggregator} otherwise.
+ */
+public class DefaultContentAggregator implements ContentAggregator {
+
+    private final int maxResults;
+
+    public DefaultContentAggregator(int maxResults) {
+        this.maxResults = ensureGreaterThanZero(maxResults, "maxResults");
+    }
+
+    @Override
+    public List<Content> aggregate(String query, List<List<Content>> contentsBySources) {
+        Map<String, Content> bestContents = new LinkedHashMap<>();
+        for (List<Content> contents : contentsBySources) {
+            for (Content content : contents) {
+                bestContents.merge(content.textSegment().text(), content,
+                        (existing, candidate) -> score(candidate) > score(existing) ? candidate : existing);
+            }
+        }
+
+        List<Content> sorted = new ArrayList<>(bestContents.values());
+        sorted.sort((a, b) -> Double.compare(score(b), score(a)));
+        return sorted.size() > maxResults ? sorted.subList(0, maxResults) : sorted;
+    }
+
+    private static double score(Content content) {
+        return content.metadata().get(ContentMetadata.SCORE) instanceof Number score ? score.doubleValue() : 0.0;
+    }
+}
@@ -0,0 +1,127 @@
+package com.llmagent.llm.rag.aggregator;
+
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.llm.rag.content.Content;
+import com.llmagent.llm.rag.content.ContentMetadata;
+import com.llmagent.llm.scoring.ScoringModel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * A {@link ContentAggregator} fusing the contents of all sources with {@link ReciprocalRankFuser}, then re-ranking
+ * the best {@code maxCandidates} of them with a {@link ScoringModel} (typically a cross-encoder), in a single
+ * {@link ScoringModel#scoreAll(List, String)} call.
+ * <p>
+ * Contents scored below {@code minScore} are dropped, and at most {@code maxResults} are returned, so that fewer
+ * but more relevant passages are sent to the LLM. The score is recorded as {@link ContentMetadata#RERANKED_SCORE}.
+ */
+public class ReRankingContentAggregator implements ContentAggregator {
+
+    private final ScoringModel scoringModel;
+    private final int maxCandidates;
+    private final int maxResults;
+    private final Double minScore;
+
+    private ReRankingContentAggregator(Builder builder) {
+        this.scoringModel = ensureNotNull(builder.scoringModel, "scoringModel");
+        this.maxResults = ensureGreaterThanZero(getOrDefault(builder.maxResults, 3), "maxResults");
+        this.maxCandidates = ensureGreaterThanZero(getOrDefault(builder.maxCandidates, 20), "maxCandidates");
+        this.minScore = builder.minScore;
+    }
+
+    @Override
+    public List<Content> aggregate(String query, List<List<Content>> contentsBySources) {
+        List<Content> candidates = ReciprocalRankFuser.fuse(contentsBySources);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        if (candidates.size() > maxCandidates) {
+            candidates = candidates.subList(0, maxCandidates);
+        }
+
+        List<TextSegment> segments = new ArrayList<>(candidates.size());
+        for (Content candidate : candidates) {
+            segments.add(candidate.textSegment());
+        }
+        List<Double> scores = scoringModel.scoreAll(segments, query).content();
+        if (scores == null || scores.size() != segments.size()) {
+            throw illegalArgument("The scoring model returned %s scores for %s segments",
+                    scores == null ? null : scores.size(), segments.size());
+        }
+
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            if (minScore == null || scores.get(i) >= minScore) {
+                order.add(i);
+            }
+        }
+        order.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+
+        int size = Math.min(maxResults, order.size());
+        List<Content> reRanked = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int index = order.get(i);
+            Content candidate = candidates.get(index);
+            Map<ContentMetadata, Object> metadata = new HashMap<>(candidate.metadata());
+            metadata.put(ContentMetadata.RERANKED_SCORE, scores.get(index));
+            reRanked.add(Content.from(candidate.textSegment(), metadata));
+        }
+        return reRanked;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private ScoringModel scoringModel;
+        private Integer maxCandidates;
+        private Integer maxResults;
+        private Double minScore;
+
+        /**
+         * The model scoring every (query, passage) pair.
+         */
+        public Builder scoringModel(ScoringModel scoringModel) {
+            this.scoringModel = scoringModel;
+            return this;
+        }
+
+        /**
+         * The maximum number of fused contents sent to the scoring model. Default: 20.
+         */
+        public Builder maxCandidates(Integer maxCandidates) {
+            this.maxCandidates = maxCandidates;
+            return this;
+        }
+
+        /**
+         * The maximum number of contents returned. Default: 3.
+         */
+        public Builder maxResults(Integer maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        /**
+         * The minimum score of a returned content, on the scale of the scoring model. Default: no minimum.
+         */
+        public Builder minScore(Double minScore) {
+            this.minScore = minScore;
+            return this;
+        }
+
+        public ReRankingContentAggregator build() {
+            return new ReRankingContentAggregator(this);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.llmagent.llm.rag.aggregator;
+
+import com.llmagent.llm.rag.content.Content;
+import com.llmagent.llm.rag.content.ContentMetadata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+
+/**
+ * Implements <a href="https://plg.uwaterloo.ca/~gvcormac/cormacksigir09-rrf.pdf">Reciprocal Rank Fusion</a>:
+ * the fused score of a content is the sum of {@code 1 / (k + rank)} over every list it appears in,
+ * rank starting at 1. Only ranks are used, so lists scored on incomparable scales can be fused.
+ * <p>
+ * Contents are identified by the text of their segment.
+ */
+public class ReciprocalRankFuser {
+    private ReciprocalRankFuser() {}
+
+    /**
+     * The default {@code k}, as recommended by the paper.
+     */
+    public static final int DEFAULT_K = 60;
+
+    /**
+     * Fuses the given lists with {@link #DEFAULT_K}.
+     *
+     * @param listsToFuse the ranked lists to fuse.
+     * @return the fused list, ordered by descending fused score.
+     */
+    public static List<Content> fuse(List<List<Content>> listsToFuse) {
+        return fuse(listsToFuse, DEFAULT_K);
+    }
+
+    /**
+     * Fuses the given ranked lists.
+     * The fused score of every content is recorded as {@link ContentMetadata#FUSED_SCORE}.
+     *
+     * @param listsToFuse the ranked lists to fuse.
+     * @param k           the constant dampening the weight of the top ranks, must be greater than zero.
+     * @return the fused list, ordered by descending fused score.
+     */
+    public static List<Content> fuse(List<List<Content>> listsToFuse, int k) {
+        ensureGreaterThanZero(k, "k");
+        Map<String, Content> contents = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<Content> list : listsToFuse) {
+            for (int i = 0; i < list.size(); i++) {
+                Content content = list.get(i);
+                String key = content.textSegment().text();
+                contents.putIfAbsent(key, content);
+                scores.merge(key, 1.0 / (k + i + 1), Double::sum);
+            }
+        }
+
+        List<Map.Entry<String, Content>> entries = new ArrayList<>(contents.entrySet());
+        // stable sort: ties keep the order of first appearance
+        entries.sort((a, b) -> Double.compare(scores.get(b.getKey()), scores.get(a.getKey())));
+        List<Content> fused = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Content> entry : entries) {
+            Content content = entry.getValue();
+            Map<ContentMetadata, Object> metadata = new HashMap<>(content.metadata());
+            metadata.put(ContentMetadata.FUSED_SCORE, scores.get(entry.getKey()));
+            fused.add(Content.from(content.textSegment(), metadata));
+        }
+        return fused;
+    }
+}
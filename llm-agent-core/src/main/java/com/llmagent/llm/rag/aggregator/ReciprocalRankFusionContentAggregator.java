@@ -0,0 +1,32 @@
+package com.llmagent.llm.rag.aggregator;
+
+import com.llmagent.llm.rag.content.Content;
+
+import java.util.List;
+
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+
+/**
+ * A {@link ContentAggregator} fusing the contents of all sources with {@link ReciprocalRankFuser}
+ * and keeping the best {@code maxResults}.
+ */
+public class ReciprocalRankFusionContentAggregator implements ContentAggregator {
+
+    private final int k;
+    private final int maxResults;
+
+    public ReciprocalRankFusionContentAggregator(int maxResults) {
+        this(ReciprocalRankFuser.DEFAULT_K, maxResults);
+    }
+
+    public ReciprocalRankFusionContentAggregator(int k, int maxResults) {
+        this.k = ensureGreaterThanZero(k, "k");
+        this.maxResults = ensureGreaterThanZero(maxResults, "maxResults");
+    }
+
+    @Override
+    public List<Content> aggregate(String query, List<List<Content>> contentsBySources) {
+        List<Content> fused = ReciprocalRankFuser.fuse(contentsBySources, k);
+        return fused.size() > maxResults ? fused.subList(0, maxResults) : fused;
+    }
+}
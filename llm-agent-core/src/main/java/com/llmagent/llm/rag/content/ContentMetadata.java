@@ -3,5 +3,6 @@ package com.llmagent.llm.rag.content;
 public enum ContentMetadata {
     SCORE,
     RERANKED_SCORE,
-    EMBEDDING_ID
+    EMBEDDING_ID,
+    FUSED_SCORE
 }
@@ -0,0 +1,46 @@
+package com.llmagent.llm.scoring;
+
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.llm.output.LlmResponse;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a model that scores the relevance of text segments to a query, e.g. a cross-encoder used for re-ranking.
+ */
+public interface ScoringModel {
+
+    /**
+     * Scores the given text against the query.
+     *
+     * @param text  the text to score.
+     * @param query the query.
+     * @return the score, the higher the more relevant.
+     */
+    default LlmResponse<Double> score(String text, String query) {
+        return score(TextSegment.from(text), query);
+    }
+
+    /**
+     * Scores the given segment against the query.
+     *
+     * @param segment the segment to score.
+     * @param query   the query.
+     * @return the score, the higher the more relevant.
+     */
+    default LlmResponse<Double> score(TextSegment segment, String query) {
+        LlmResponse<List<Double>> response = scoreAll(Collections.singletonList(segment), query);
+        return LlmResponse.from(response.content().get(0), response.tokenUsage(), response.finishReason());
+    }
+
+    /**
+     * Scores all the given segments against the query.
+     * Implementations should score them in as few model invocations as possible.
+     *
+     * @param segments the segments to score.
+     * @param query    the query.
+     * @return the scores, in the order of the segments.
+     */
+    LlmResponse<List<Double>> scoreAll(List<TextSegment> segments, String query);
+}
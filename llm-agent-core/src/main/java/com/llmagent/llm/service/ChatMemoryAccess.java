@@ -18,4 +18,12 @@ public interface ChatMemoryAccess {
      * @return true if {@link ChatMemory} with the given id existed, and it was successfully evicted, false otherwise.
      */
     boolean evictChatMemory(Object memoryId);
+
+    /**
+     * Returns the statistics of the chat memories of this AI service: lookup hits and misses, evictions
+     * and the number of resident chat memories.
+     *
+     * @return the statistics, or null if no chat memory is configured.
+     */
+    ChatMemoryStats getChatMemoryStats();
 }
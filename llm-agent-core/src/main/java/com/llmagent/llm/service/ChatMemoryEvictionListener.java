@@ -0,0 +1,41 @@
+package com.llmagent.llm.service;
+
+import com.llmagent.llm.memory.ChatMemory;
+
+/**
+ * Notified when a {@link ChatMemory} is removed from a bounded {@link ChatMemoryService},
+ * for example to flush it to a persistent store.
+ * <p>
+ * The listener is invoked on the thread that caused the eviction, after the memory has been removed,
+ * so it must not call back into the same {@link ChatMemoryService} expecting the evicted memory to be present.
+ *
+ * @see ChatMemoryEvictionPolicy
+ */
+@FunctionalInterface
+public interface ChatMemoryEvictionListener {
+
+    /**
+     * Called after a chat memory has been evicted.
+     *
+     * @param memoryId   the id of the evicted chat memory.
+     * @param chatMemory the evicted chat memory.
+     * @param cause      why the chat memory was evicted.
+     */
+    void onEviction(Object memoryId, ChatMemory chatMemory, Cause cause);
+
+    enum Cause {
+        /**
+         * The maximum number of resident chat memories was exceeded and this one was the least recently used.
+         */
+        SIZE,
+        /**
+         * The chat memory was not accessed for longer than the idle timeout.
+         */
+        EXPIRED,
+        /**
+         * The chat memory was evicted explicitly, through {@link ChatMemoryAccess#evictChatMemory(Object)}
+         * or {@link ChatMemoryService#clearAll()}. In the latter case the memory is cleared after the listener returns.
+         */
+        EXPLICIT
+    }
+}
@@ -0,0 +1,96 @@
+package com.llmagent.llm.service;
+
+import com.llmagent.llm.memory.ChatMemory;
+import com.llmagent.llm.memory.ChatMemoryProvider;
+
+import java.time.Duration;
+
+import static com.llmagent.exception.IllegalConfigurationException.illegalConfiguration;
+
+/**
+ * Bounds the number of {@link ChatMemory} instances a {@link ChatMemoryService} keeps for a {@link ChatMemoryProvider}.
+ * <p>
+ * Without a policy, every chat memory is retained until it is evicted explicitly. With a policy, the least recently
+ * used chat memory is evicted once more than {@link Builder#maxChatMemories(int)} are resident, and chat memories
+ * that were not accessed for longer than {@link Builder#idleTimeout(Duration)} are evicted lazily, on the next access
+ * to the service or on {@link ChatMemoryService#cleanUp()}. No background thread is used.
+ * <p>
+ * An evicted chat memory is handed to the {@link ChatMemoryEvictionListener}, if any, and a new one is obtained from
+ * the {@link ChatMemoryProvider} the next time its memory id is used.
+ */
+public class ChatMemoryEvictionPolicy {
+
+    private final int maxChatMemories;
+    private final Duration idleTimeout;
+    private final ChatMemoryEvictionListener evictionListener;
+
+    private ChatMemoryEvictionPolicy(Builder builder) {
+        if (builder.maxChatMemories == null && builder.idleTimeout == null) {
+            throw illegalConfiguration("Either maxChatMemories or idleTimeout must be configured");
+        }
+        if (builder.maxChatMemories != null && builder.maxChatMemories <= 0) {
+            throw illegalConfiguration("maxChatMemories must be greater than zero, but is: %s", builder.maxChatMemories);
+        }
+        if (builder.idleTimeout != null && (builder.idleTimeout.isNegative() || builder.idleTimeout.isZero())) {
+            throw illegalConfiguration("idleTimeout must be positive, but is: %s", builder.idleTimeout);
+        }
+        this.maxChatMemories = builder.maxChatMemories == null ? Integer.MAX_VALUE : builder.maxChatMemories;
+        this.idleTimeout = builder.idleTimeout;
+        this.evictionListener = builder.evictionListener;
+    }
+
+    public int maxChatMemories() {
+        return maxChatMemories;
+    }
+
+    public Duration idleTimeout() {
+        return idleTimeout;
+    }
+
+    public ChatMemoryEvictionListener evictionListener() {
+        return evictionListener;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Integer maxChatMemories;
+        private Duration idleTimeout;
+        private ChatMemoryEvictionListener evictionListener;
+
+        /**
+         * The maximum number of resident chat memories. When exceeded, the least recently used one is evicted.
+         * <p>
+         * Limits of 32 and more are split between up to 16 segments of the memory ids, each bounded by its share,
+         * so that concurrent requests rarely contend: the least recently used chat memory of the segment
+         * the new one belongs to is then evicted, possibly before the limit is reached overall.
+         */
+        public Builder maxChatMemories(int maxChatMemories) {
+            this.maxChatMemories = maxChatMemories;
+            return this;
+        }
+
+        /**
+         * The time after which a chat memory that was not accessed is evicted.
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * The listener notified of every evicted chat memory.
+         */
+        public Builder evictionListener(ChatMemoryEvictionListener evictionListener) {
+            this.evictionListener = evictionListener;
+            return this;
+        }
+
+        public ChatMemoryEvictionPolicy build() {
+            return new ChatMemoryEvictionPolicy(this);
+        }
+    }
+}
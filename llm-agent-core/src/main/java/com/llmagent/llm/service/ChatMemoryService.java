@@ -2,25 +2,50 @@ package com.llmagent.llm.service;
 
 import com.llmagent.llm.memory.ChatMemory;
 import com.llmagent.llm.memory.ChatMemoryProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.llmagent.util.ValidationUtil.ensureNotNull;
 
 public class ChatMemoryService {
+    private static final Logger log = LoggerFactory.getLogger(ChatMemoryService.class);
+
     public static final String DEFAULT = "default";
 
     private ChatMemory defaultChatMemory;
     private Map<Object, ChatMemory> chatMemories;
+    private BoundedChatMemories boundedChatMemories;
     private ChatMemoryProvider chatMemoryProvider;
 
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
     public ChatMemoryService(ChatMemoryProvider chatMemoryProvider) {
         this.chatMemories = new ConcurrentHashMap<>();
         this.chatMemoryProvider = ensureNotNull(chatMemoryProvider, "chatMemoryProvider");
     }
 
+    /**
+     * Creates a service that keeps the chat memories obtained from the provider within the bounds of the policy.
+     *
+     * @param chatMemoryProvider the provider of a chat memory for each new memory id.
+     * @param evictionPolicy     the policy bounding the resident chat memories.
+     */
+    public ChatMemoryService(ChatMemoryProvider chatMemoryProvider, ChatMemoryEvictionPolicy evictionPolicy) {
+        this.chatMemoryProvider = ensureNotNull(chatMemoryProvider, "chatMemoryProvider");
+        this.boundedChatMemories = new BoundedChatMemories(ensureNotNull(evictionPolicy, "evictionPolicy"));
+    }
+
     public ChatMemoryService(ChatMemory chatMemory) {
         defaultChatMemory = ensureNotNull(chatMemory, "chatMemory");
     }
@@ -32,27 +57,302 @@ public class ChatMemoryService {
             }
             return defaultChatMemory;
         }
+        if (boundedChatMemories != null) {
+            return boundedChatMemories.getOrCreate(memoryId);
+        }
+        ChatMemory chatMemory = chatMemories.get(memoryId);
+        if (chatMemory != null) {
+            hits.increment();
+            return chatMemory;
+        }
+        misses.increment();
         return chatMemories.computeIfAbsent(memoryId, chatMemoryProvider::get);
     }
 
     public ChatMemory getChatMemory(Object memoryId) {
-        return memoryId == DEFAULT ? defaultChatMemory : chatMemories.get(memoryId);
+        if (memoryId == DEFAULT) {
+            return defaultChatMemory;
+        }
+        return boundedChatMemories != null ? boundedChatMemories.get(memoryId) : chatMemories.get(memoryId);
     }
 
     public ChatMemory evictChatMemory(Object memoryId) {
-        return chatMemories.remove(memoryId);
+        return boundedChatMemories != null ? boundedChatMemories.remove(memoryId) : chatMemories.remove(memoryId);
     }
 
     public void clearAll() {
+        if (boundedChatMemories != null) {
+            boundedChatMemories.clear();
+            return;
+        }
         chatMemories.values().forEach(ChatMemory::clear);
         chatMemories.clear();
     }
 
+    /**
+     * Evicts the chat memories that exceeded the idle timeout of the {@link ChatMemoryEvictionPolicy}.
+     * Expired chat memories are also evicted lazily on access, so calling this method is only needed
+     * to release them when the service is otherwise idle.
+     */
+    public void cleanUp() {
+        if (boundedChatMemories != null) {
+            boundedChatMemories.cleanUp();
+        }
+    }
+
     public Collection<Object> getChatMemoryIDs() {
-        return chatMemories.keySet();
+        return boundedChatMemories != null ? boundedChatMemories.ids() : chatMemories.keySet();
     }
 
     public Collection<ChatMemory> getChatMemories() {
-        return chatMemories.values();
+        return boundedChatMemories != null ? boundedChatMemories.values() : chatMemories.values();
+    }
+
+    public ChatMemoryStats stats() {
+        long residentCount = boundedChatMemories != null
+                ? boundedChatMemories.size()
+                : chatMemories != null ? chatMemories.size() : 0;
+        return new ChatMemoryStats(hits.sum(), misses.sum(), evictions.sum(), residentCount);
+    }
+
+    private void notifyEvicted(List<Evicted> evicted, ChatMemoryEvictionListener listener) {
+        if (evicted == null) {
+            return;
+        }
+        evictions.add(evicted.size());
+        if (listener == null) {
+            return;
+        }
+        for (Evicted e : evicted) {
+            try {
+                listener.onEviction(e.memoryId, e.chatMemory, e.cause);
+            } catch (Exception ex) {
+                log.warn("Chat memory eviction listener failed for memory id '{}'", e.memoryId, ex);
+            }
+        }
+    }
+
+    private record Evicted(Object memoryId, ChatMemory chatMemory, ChatMemoryEvictionListener.Cause cause) {
+    }
+
+    private static final class Entry {
+        private final ChatMemory chatMemory;
+        private long lastAccessNanos;
+
+        private Entry(ChatMemory chatMemory, long lastAccessNanos) {
+            this.chatMemory = chatMemory;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+
+    /**
+     * The resident chat memories, split by memory id hash into segments with a monitor each, so that
+     * requests for different memory ids rarely contend. Each segment is an access-ordered map bounded
+     * by its share of {@link ChatMemoryEvictionPolicy#maxChatMemories()}: its head is always the least recently
+     * used entry, which is also the one with the oldest access time, so both size and idle eviction only look
+     * at the head. The least recently used order is therefore kept per segment, and only limits of at least
+     * {@value #MIN_SEGMENT_CAPACITY} chat memories per segment are split at all.
+     * Eviction listeners are notified after the monitor is released.
+     */
+    private final class BoundedChatMemories {
+
+        private static final int MAX_SEGMENTS = 16;
+        private static final int MIN_SEGMENT_CAPACITY = 16;
+
+        private final ChatMemoryEvictionPolicy policy;
+        private final long idleTimeoutNanos;
+        private final Segment[] segments;
+
+        private BoundedChatMemories(ChatMemoryEvictionPolicy policy) {
+            this.policy = policy;
+            this.idleTimeoutNanos = policy.idleTimeout() == null ? Long.MAX_VALUE : policy.idleTimeout().toNanos();
+            int maxChatMemories = policy.maxChatMemories();
+            int segmentCount = Integer.highestOneBit(
+                    Math.max(1, Math.min(MAX_SEGMENTS, maxChatMemories / MIN_SEGMENT_CAPACITY)));
+            this.segments = new Segment[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                int capacity = maxChatMemories / segmentCount + (i < maxChatMemories % segmentCount ? 1 : 0);
+                segments[i] = new Segment(capacity);
+            }
+        }
+
+        private Segment segmentFor(Object memoryId) {
+            int hash = memoryId.hashCode();
+            return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+        }
+
+        ChatMemory getOrCreate(Object memoryId) {
+            Segment segment = segmentFor(memoryId);
+            List<Evicted> evicted = null;
+            synchronized (segment) {
+                long now = System.nanoTime();
+                Entry entry = segment.entries.get(memoryId);
+                if (entry != null && now - entry.lastAccessNanos <= idleTimeoutNanos) {
+                    hits.increment();
+                    entry.lastAccessNanos = now;
+                    return entry.chatMemory;
+                }
+                misses.increment();
+                if (entry != null) {
+                    segment.entries.remove(memoryId);
+                    evicted = add(null, memoryId, entry, ChatMemoryEvictionListener.Cause.EXPIRED);
+                }
+            }
+            notifyEvicted(evicted, policy.evictionListener());
+
+            // the provider may load the memory from a store, so it is called without holding the monitor;
+            // when two callers race for the same id, the memory inserted first wins
+            ChatMemory created = chatMemoryProvider.get(memoryId);
+            ChatMemory chatMemory;
+            synchronized (segment) {
+                long now = System.nanoTime();
+                Entry entry = segment.entries.get(memoryId);
+                evicted = null;
+                if (entry != null && now - entry.lastAccessNanos <= idleTimeoutNanos) {
+                    entry.lastAccessNanos = now;
+                    chatMemory = entry.chatMemory;
+                } else {
+                    if (entry != null) {
+                        evicted = add(null, memoryId, entry, ChatMemoryEvictionListener.Cause.EXPIRED);
+                    }
+                    segment.entries.put(memoryId, new Entry(created, now));
+                    chatMemory = created;
+                }
+                evicted = evictFromHead(segment, now, evicted);
+            }
+            notifyEvicted(evicted, policy.evictionListener());
+            return chatMemory;
+        }
+
+        ChatMemory get(Object memoryId) {
+            Segment segment = segmentFor(memoryId);
+            List<Evicted> evicted = null;
+            ChatMemory chatMemory = null;
+            synchronized (segment) {
+                long now = System.nanoTime();
+                Entry entry = segment.entries.get(memoryId);
+                if (entry != null && now - entry.lastAccessNanos <= idleTimeoutNanos) {
+                    entry.lastAccessNanos = now;
+                    chatMemory = entry.chatMemory;
+                } else if (entry != null) {
+                    segment.entries.remove(memoryId);
+                    evicted = add(null, memoryId, entry, ChatMemoryEvictionListener.Cause.EXPIRED);
+                }
+                evicted = evictFromHead(segment, now, evicted);
+            }
+            notifyEvicted(evicted, policy.evictionListener());
+            return chatMemory;
+        }
+
+        ChatMemory remove(Object memoryId) {
+            Segment segment = segmentFor(memoryId);
+            Entry entry;
+            synchronized (segment) {
+                entry = segment.entries.remove(memoryId);
+            }
+            if (entry == null) {
+                return null;
+            }
+            notifyEvicted(add(null, memoryId, entry, ChatMemoryEvictionListener.Cause.EXPLICIT), policy.evictionListener());
+            return entry.chatMemory;
+        }
+
+        void clear() {
+            List<Evicted> evicted = null;
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    for (Map.Entry<Object, Entry> entry : segment.entries.entrySet()) {
+                        evicted = add(evicted, entry.getKey(), entry.getValue(), ChatMemoryEvictionListener.Cause.EXPLICIT);
+                    }
+                    segment.entries.clear();
+                }
+            }
+            notifyEvicted(evicted, policy.evictionListener());
+            if (evicted != null) {
+                evicted.forEach(e -> e.chatMemory.clear());
+            }
+        }
+
+        void cleanUp() {
+            long now = System.nanoTime();
+            List<Evicted> evicted = null;
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    evicted = evictFromHead(segment, now, evicted);
+                }
+            }
+            notifyEvicted(evicted, policy.evictionListener());
+        }
+
+        List<Object> ids() {
+            List<Object> ids = new ArrayList<>();
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    ids.addAll(segment.entries.keySet());
+                }
+            }
+            return List.copyOf(ids);
+        }
+
+        List<ChatMemory> values() {
+            List<ChatMemory> values = new ArrayList<>();
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    for (Entry entry : segment.entries.values()) {
+                        values.add(entry.chatMemory);
+                    }
+                }
+            }
+            return values;
+        }
+
+        int size() {
+            int size = 0;
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    size += segment.entries.size();
+                }
+            }
+            return size;
+        }
+
+        private List<Evicted> evictFromHead(Segment segment, long now, List<Evicted> evicted) {
+            Iterator<Map.Entry<Object, Entry>> iterator = segment.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Object, Entry> head = iterator.next();
+                ChatMemoryEvictionListener.Cause cause;
+                if (segment.entries.size() > segment.capacity) {
+                    cause = ChatMemoryEvictionListener.Cause.SIZE;
+                } else if (now - head.getValue().lastAccessNanos > idleTimeoutNanos) {
+                    cause = ChatMemoryEvictionListener.Cause.EXPIRED;
+                } else {
+                    break;
+                }
+                iterator.remove();
+                evicted = add(evicted, head.getKey(), head.getValue(), cause);
+            }
+            return evicted;
+        }
+
+        private List<Evicted> add(List<Evicted> evicted, Object memoryId, Entry entry,
+                                  ChatMemoryEvictionListener.Cause cause) {
+            if (evicted == null) {
+                evicted = new ArrayList<>(1);
+            }
+            evicted.add(new Evicted(memoryId, entry.chatMemory, cause));
+            return evicted;
+        }
+    }
+
+    /**
+     * A share of the resident chat memories, guarded by its own monitor.
+     */
+    private static final class Segment {
+        private final int capacity;
+        private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+        }
     }
 }
@@ -0,0 +1,20 @@
+package com.llmagent.llm.service;
+
+/**
+ * A snapshot of the statistics of a {@link ChatMemoryService}.
+ *
+ * @param hits          the number of lookups that found a resident chat memory.
+ * @param misses        the number of lookups that had to obtain a new chat memory from the provider.
+ * @param evictions     the number of chat memories evicted, for any {@link ChatMemoryEvictionListener.Cause}.
+ * @param residentCount the number of chat memories currently held.
+ */
+public record ChatMemoryStats(long hits, long misses, long evictions, long residentCount) {
+
+    /**
+     * @return the ratio of hits to lookups, or {@code 1.0} when there was no lookup yet.
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 1.0 : (double) hits / lookups;
+    }
+}
@@ -1,5 +1,6 @@
 package com.llmagent.llm.service;
 
+import com.llmagent.data.Metadata;
 import com.llmagent.data.message.ChatMessage;
 import com.llmagent.data.message.SystemMessage;
 import com.llmagent.data.message.UserMessage;
@@ -8,31 +9,30 @@ import com.llmagent.llm.chat.request.ChatRequestParameters;
 import com.llmagent.llm.chat.request.json.JsonSchema;
 import com.llmagent.llm.chat.response.ChatResponse;
 import com.llmagent.llm.chat.response.ResponseFormat;
-import com.llmagent.llm.input.Prompt;
 import com.llmagent.llm.input.PromptTemplate;
-import com.llmagent.llm.input.StructuredPrompt;
-import com.llmagent.llm.input.StructuredPromptProcessor;
 import com.llmagent.llm.memory.ChatMemory;
 import com.llmagent.llm.memory.MemoryId;
 import com.llmagent.llm.output.LlmServiceTokenStream;
 import com.llmagent.llm.output.LlmServiceTokenStreamParameters;
 import com.llmagent.llm.output.TokenStream;
+import com.llmagent.llm.rag.AugmentationRequest;
 import com.llmagent.llm.rag.AugmentationResult;
 import com.llmagent.llm.service.output.ServiceOutputParser;
+import com.llmagent.util.ExecutorUtil;
 import com.llmagent.util.TypeUtils;
 
 import java.io.InputStream;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import static com.llmagent.exception.Exceptions.illegalArgument;
 import static com.llmagent.exception.IllegalConfigurationException.illegalConfiguration;
 import static com.llmagent.llm.chat.Capability.RESPONSE_FORMAT_JSON_SCHEMA;
 import static com.llmagent.llm.chat.response.ResponseFormatType.JSON;
 import static com.llmagent.util.ServiceHelper.loadFactories;
-import static com.llmagent.util.StringUtil.isNotNullOrBlank;
 import static com.llmagent.util.TypeUtils.typeHasRawClass;
 
 public class DefaultLlmService<T> extends LlmService<T> {
@@ -69,6 +69,8 @@ public class DefaultLlmService<T> extends LlmService<T> {
                     context.llmServiceClass.getName());
         }
 
+        boolean supportsJsonSchema = supportsJsonSchema();
+        Map<Method, LlmServiceMethodPlan> plans = new HashMap<>();
         for (Method method : context.llmServiceClass.getMethods()) {
 
             Class<?> returnType = method.getReturnType();
@@ -88,7 +90,17 @@ public class DefaultLlmService<T> extends LlmService<T> {
                     }
                 }
             }
+
+            if (method.getDeclaringClass() != ChatMemoryAccess.class && !Modifier.isStatic(method.getModifiers())) {
+                try {
+                    plans.put(method, plan(method, supportsJsonSchema));
+                } catch (RuntimeException e) {
+                    // a misconfigured method only fails when it is invoked,
+                    // so that a service whose broken methods are never called keeps working
+                }
+            }
         }
+        final Map<Method, LlmServiceMethodPlan> methodPlans = Map.copyOf(plans);
 
         Object proxyInstance = Proxy.newProxyInstance(
                 context.llmServiceClass.getClassLoader(),
@@ -109,37 +121,65 @@ public class DefaultLlmService<T> extends LlmService<T> {
                             return switch (method.getName()) {
                                 case "getChatMemory" -> context.chatMemoryService.getChatMemory(args[0]);
                                 case "evictChatMemory" -> context.chatMemoryService.evictChatMemory(args[0]) != null;
+                                case "getChatMemoryStats" -> context.hasChatMemory() ? context.chatMemoryService.stats() : null;
                                 default -> throw new UnsupportedOperationException(
                                         "Unknown method on ChatMemoryAccess class : " + method.getName());
                             };
                         }
 
-                        validateParameters(method);
-
-                        final Object memoryId = findMemoryId(method, args).orElse(ChatMemoryService.DEFAULT);
-                        final ChatMemory chatMemory = context.hasChatMemory()
-                                ? context.chatMemoryService.getOrCreateChatMemory(memoryId)
-                                : null;
+                        LlmServiceMethodPlan plan = methodPlans.get(method);
+                        if (plan == null) {
+                            // rethrows the configuration error of the method
+                            plan = plan(method, supportsJsonSchema);
+                        }
 
-                        Optional<SystemMessage> systemMessage = prepareSystemMessage(memoryId, method, args);
-                        UserMessage userMessage = prepareUserMessage(method, args);
-                        AugmentationResult augmentationResult = null;
-                        // TODO retrieval
+                        final Object memoryId = plan.memoryId(args);
+                        Optional<SystemMessage> systemMessage =
+                                plan.systemMessage(memoryId, args, context.systemMessageProvider);
+                        UserMessage userMessage = plan.userMessage(args);
+
+                        // retrieval, tool context creation and chat memory loading are independent I/O:
+                        // retrieval is started first and runs in the background while the other two run
+                        // on the calling thread
+                        CompletableFuture<AugmentationResult> augmentation = null;
+                        if (context.retrievalAugmentor != null) {
+                            AugmentationRequest augmentationRequest = new AugmentationRequest(
+                                    userMessage, new Metadata().put("memoryId", String.valueOf(memoryId)));
+                            augmentation = context.retrievalAugmentor.augmentAsync(augmentationRequest,
+                                    context.retrievalExecutor != null
+                                            ? context.retrievalExecutor
+                                            : ExecutorUtil.defaultExecutor());
+                        }
 
-                        Type returnType = method.getGenericReturnType();
-                        boolean streaming = returnType == TokenStream.class || canAdaptTokenStreamTo(returnType);
-                        boolean supportsJsonSchema = supportsJsonSchema();
-                        Optional<JsonSchema> jsonSchema = Optional.empty();
-                        if (supportsJsonSchema && !streaming) {
-                            jsonSchema = serviceOutputParser.jsonSchema(returnType);
+                        final ChatMemory chatMemory;
+                        ToolServiceContext toolServiceContext;
+                        try {
+                            chatMemory = context.hasChatMemory()
+                                    ? context.chatMemoryService.getOrCreateChatMemory(memoryId)
+                                    : null;
+                            toolServiceContext = context.toolService.createContext(memoryId, userMessage);
+                            if (chatMemory != null) {
+                                systemMessage.ifPresent(chatMemory::add);
+                            }
+                        } catch (RuntimeException e) {
+                            if (augmentation != null) {
+                                augmentation.cancel(true);
+                            }
+                            throw e;
                         }
-                        if ((!supportsJsonSchema || jsonSchema.isEmpty()) && !streaming) {
-                            userMessage = appendOutputFormatInstructions(returnType, userMessage);
+
+                        AugmentationResult augmentationResult = augmentation != null ? join(augmentation) : null;
+                        if (augmentationResult != null) {
+                            userMessage = (UserMessage) augmentationResult.chatMessage();
                         }
 
+                        Type returnType = plan.returnType();
+                        boolean streaming = plan.streaming();
+                        Optional<JsonSchema> jsonSchema = plan.jsonSchema();
+                        userMessage = plan.appendOutputFormatInstructions(userMessage);
+
                         List<ChatMessage> messages;
                         if (chatMemory != null) {
-                            systemMessage.ifPresent(chatMemory::add);
                             chatMemory.add(userMessage);
                             messages = chatMemory.messages();
                         } else {
@@ -147,8 +187,6 @@ public class DefaultLlmService<T> extends LlmService<T> {
                             systemMessage.ifPresent(messages::add);
                             messages.add(userMessage);
                         }
-                        ToolServiceContext toolServiceContext =
-                                context.toolService.createContext(memoryId, userMessage);
 
                         if (streaming) {
                             TokenStream tokenStream = new LlmServiceTokenStream(LlmServiceTokenStreamParameters.builder()
@@ -169,7 +207,7 @@ public class DefaultLlmService<T> extends LlmService<T> {
                         }
 
                         ResponseFormat responseFormat = null;
-                        if (supportsJsonSchema && jsonSchema.isPresent()) {
+                        if (jsonSchema.isPresent()) {
                             responseFormat = ResponseFormat.builder()
                                     .type(JSON)
                                     .jsonSchema(jsonSchema.get())
@@ -213,15 +251,6 @@ public class DefaultLlmService<T> extends LlmService<T> {
                         }
                     }
 
-                    private boolean canAdaptTokenStreamTo(Type returnType) {
-                        for (TokenStreamAdapter tokenStreamAdapter : tokenStreamAdapters) {
-                            if (tokenStreamAdapter.canAdaptTokenStreamTo(returnType)) {
-                                return true;
-                            }
-                        }
-                        return false;
-                    }
-
                     private Object adapt(TokenStream tokenStream, Type returnType) {
                         for (TokenStreamAdapter tokenStreamAdapter : tokenStreamAdapters) {
                             if (tokenStreamAdapter.canAdaptTokenStreamTo(returnType)) {
@@ -230,61 +259,111 @@ public class DefaultLlmService<T> extends LlmService<T> {
                         }
                         throw new IllegalStateException("Can't find suitable TokenStreamAdapter");
                     }
-
-                    private boolean supportsJsonSchema() {
-                        return context.chatModel != null
-                                && context.chatModel.supportedCapabilities().contains(RESPONSE_FORMAT_JSON_SCHEMA);
-                    }
-
-                    private UserMessage appendOutputFormatInstructions(Type returnType, UserMessage userMessage) {
-                        String outputFormatInstructions = serviceOutputParser.outputFormatInstructions(returnType);
-                        String text = userMessage.singleText() + outputFormatInstructions;
-                        if (isNotNullOrBlank(userMessage.name())) {
-                            userMessage = UserMessage.from(userMessage.name(), text);
-                        } else {
-                            userMessage = UserMessage.from(text);
-                        }
-                        return userMessage;
-                    }
                 });
 
         return (T) proxyInstance;
     }
 
-    private Optional<SystemMessage> prepareSystemMessage(Object memoryId, Method method, Object[] args) {
-        return findSystemMessageTemplate(memoryId, method)
-                .map(systemMessageTemplate -> PromptTemplate.from(systemMessageTemplate)
-                        .apply(findTemplateVariables(systemMessageTemplate, method, args))
-                        .toSystemMessage());
-    }
+    /**
+     * Resolves everything about the method that does not depend on the arguments of a particular call.
+     */
+    private LlmServiceMethodPlan plan(Method method, boolean supportsJsonSchema) {
+        validateParameters(method);
 
-    private Optional<String> findSystemMessageTemplate(Object memoryId, Method method) {
-        ISystemMessage annotation =
-                method.getAnnotation(ISystemMessage.class);
-        if (annotation != null) {
-            return Optional.of(getTemplate(
-                    method, "System", annotation.fromResource(), annotation.value(), annotation.delimiter()));
+        Parameter[] parameters = method.getParameters();
+        String[] parameterNames = new String[parameters.length];
+        String[] variableNames = new String[parameters.length];
+        int memoryIdIndex = -1;
+        int userMessageIndex = -1;
+        for (int i = 0; i < parameters.length; i++) {
+            parameterNames[i] = parameters[i].getName();
+            variableNames[i] = getVariableName(parameters[i]);
+            if (memoryIdIndex < 0 && parameters[i].isAnnotationPresent(MemoryId.class)) {
+                memoryIdIndex = i;
+            }
+            if (userMessageIndex < 0 && parameters[i].isAnnotationPresent(IUserMessage.class)) {
+                userMessageIndex = i;
+            }
         }
 
-        return context.systemMessageProvider.apply(memoryId);
-    }
+        PromptTemplate userMessageTemplate = findUserMessageTemplateFromMethodAnnotation(method)
+                .map(PromptTemplate::from)
+                .orElse(null);
+        if (userMessageTemplate != null && userMessageIndex >= 0) {
+            throw illegalConfiguration(
+                    "Error: The method '%s' has multiple @UserMessage annotations. Please use only one.",
+                    method.getName());
+        }
+        if (userMessageTemplate == null && userMessageIndex < 0) {
+            if (parameters.length == 1 && parameters[0].getAnnotations().length == 0) {
+                userMessageIndex = 0;
+            } else {
+                throw illegalConfiguration(
+                        "Error: The method '%s' does not have a user message defined.", method.getName());
+            }
+        }
 
-    private static Map<String, Object> findTemplateVariables(String template, Method method, Object[] args) {
-        Parameter[] parameters = method.getParameters();
+        PromptTemplate systemMessageTemplate = Optional.ofNullable(method.getAnnotation(ISystemMessage.class))
+                .map(a -> getTemplate(method, "System", a.fromResource(), a.value(), a.delimiter()))
+                .map(PromptTemplate::from)
+                .orElse(null);
 
-        Map<String, Object> variables = new HashMap<>();
-        for (int i = 0; i < parameters.length; i++) {
-            String variableName = getVariableName(parameters[i]);
-            Object variableValue = args[i];
-            variables.put(variableName, variableValue);
+        Type returnType = method.getGenericReturnType();
+        boolean streaming = returnType == TokenStream.class || canAdaptTokenStreamTo(returnType);
+        Optional<JsonSchema> jsonSchema = Optional.empty();
+        if (supportsJsonSchema && !streaming) {
+            jsonSchema = serviceOutputParser.jsonSchema(returnType);
         }
+        String outputFormatInstructions = null;
+        if ((!supportsJsonSchema || jsonSchema.isEmpty()) && !streaming) {
+            outputFormatInstructions = serviceOutputParser.outputFormatInstructions(returnType);
+        }
+
+        return LlmServiceMethodPlan.builder()
+                .method(method)
+                .parameterNames(parameterNames)
+                .variableNames(variableNames)
+                .memoryIdIndex(memoryIdIndex)
+                .userMessageIndex(userMessageIndex)
+                .itIndex(findIndexOfVariableIt(parameters))
+                .systemMessageTemplate(systemMessageTemplate)
+                .userMessageTemplate(userMessageTemplate)
+                .returnType(returnType)
+                .streaming(streaming)
+                .jsonSchema(jsonSchema.orElse(null))
+                .outputFormatInstructions(outputFormatInstructions)
+                .build();
+    }
 
-        if (template.contains("{{it}}") && !variables.containsKey("it")) {
-            String itValue = getValueOfVariableIt(parameters, args);
-            variables.put("it", itValue);
+    private boolean canAdaptTokenStreamTo(Type returnType) {
+        for (TokenStreamAdapter tokenStreamAdapter : tokenStreamAdapters) {
+            if (tokenStreamAdapter.canAdaptTokenStreamTo(returnType)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        return variables;
+    private boolean supportsJsonSchema() {
+        return context.chatModel != null
+                && context.chatModel.supportedCapabilities().contains(RESPONSE_FORMAT_JSON_SCHEMA);
+    }
+
+    /**
+     * Waits for a pipeline stage, rethrowing its failure as is rather than wrapped in a {@link CompletionException}.
+     */
+    private static <T> T join(CompletableFuture<T> stage) {
+        try {
+            return stage.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
     }
 
     private static String getVariableName(Parameter parameter) {
@@ -296,24 +375,24 @@ public class DefaultLlmService<T> extends LlmService<T> {
         }
     }
 
-    private static String getValueOfVariableIt(Parameter[] parameters, Object[] args) {
+    private static int findIndexOfVariableIt(Parameter[] parameters) {
         if (parameters.length == 1) {
             Parameter parameter = parameters[0];
             if (!parameter.isAnnotationPresent(MemoryId.class)
                     && !parameter.isAnnotationPresent(IUserMessage.class)
 //                    && !parameter.isAnnotationPresent(UserName.class)
                     && (!parameter.isAnnotationPresent(PromptVariable.class) || isAnnotatedWithIt(parameter))) {
-                return toString(args[0]);
+                return 0;
             }
         }
 
         for (int i = 0; i < parameters.length; i++) {
             if (isAnnotatedWithIt(parameters[i])) {
-                return toString(args[i]);
+                return i;
             }
         }
 
-        throw illegalConfiguration("Error: cannot find the value of the prompt template variable \"{{it}}\".");
+        return -1;
     }
 
     private static boolean isAnnotatedWithIt(Parameter parameter) {
@@ -321,79 +400,11 @@ public class DefaultLlmService<T> extends LlmService<T> {
         return annotation != null && "it".equals(annotation.value());
     }
 
-    private static UserMessage prepareUserMessage(Method method, Object[] args) {
-
-        String template = getUserMessageTemplate(method, args);
-        Map<String, Object> variables = findTemplateVariables(template, method, args);
-
-        Prompt prompt = PromptTemplate.from(template).apply(variables);
-
-//        Optional<String> maybeUserName = findUserName(method.getParameters(), args);
-//        return maybeUserName
-//                .map(userName -> UserMessage.from(userName, prompt.text()))
-//                .orElseGet(prompt::toUserMessage);
-        return prompt.toUserMessage();
-    }
-
-    private static String getUserMessageTemplate(Method method, Object[] args) {
-
-        Optional<String> templateFromMethodAnnotation = findUserMessageTemplateFromMethodAnnotation(method);
-        Optional<String> templateFromParameterAnnotation =
-                findUserMessageTemplateFromAnnotatedParameter(method.getParameters(), args);
-
-        if (templateFromMethodAnnotation.isPresent() && templateFromParameterAnnotation.isPresent()) {
-            throw illegalConfiguration(
-                    "Error: The method '%s' has multiple @UserMessage annotations. Please use only one.",
-                    method.getName());
-        }
-
-        if (templateFromMethodAnnotation.isPresent()) {
-            return templateFromMethodAnnotation.get();
-        }
-        if (templateFromParameterAnnotation.isPresent()) {
-            return templateFromParameterAnnotation.get();
-        }
-
-        Optional<String> templateFromTheOnlyArgument =
-                findUserMessageTemplateFromTheOnlyArgument(method.getParameters(), args);
-        if (templateFromTheOnlyArgument.isPresent()) {
-            return templateFromTheOnlyArgument.get();
-        }
-
-        throw illegalConfiguration("Error: The method '%s' does not have a user message defined.", method.getName());
-    }
-
     private static Optional<String> findUserMessageTemplateFromMethodAnnotation(Method method) {
         return Optional.ofNullable(method.getAnnotation(IUserMessage.class))
                 .map(a -> getTemplate(method, "User", a.fromResource(), a.value(), a.delimiter()));
     }
 
-    private static Optional<String> findUserMessageTemplateFromAnnotatedParameter(
-            Parameter[] parameters, Object[] args) {
-        for (int i = 0; i < parameters.length; i++) {
-            if (parameters[i].isAnnotationPresent(IUserMessage.class)) {
-                return Optional.of(toString(args[i]));
-            }
-        }
-        return Optional.empty();
-    }
-
-    private static Optional<String> findUserMessageTemplateFromTheOnlyArgument(Parameter[] parameters, Object[] args) {
-        if (parameters != null && parameters.length == 1 && parameters[0].getAnnotations().length == 0) {
-            return Optional.of(toString(args[0]));
-        }
-        return Optional.empty();
-    }
-
-//    private static Optional<String> findUserName(Parameter[] parameters, Object[] args) {
-//        for (int i = 0; i < parameters.length; i++) {
-//            if (parameters[i].isAnnotationPresent(UserName.class)) {
-//                return Optional.of(args[i].toString());
-//            }
-//        }
-//        return Optional.empty();
-//    }
-
     private static String getTemplate(Method method, String type, String resource, String[] value, String delimiter) {
         String messageTemplate;
         if (!resource.trim().isEmpty()) {
@@ -427,43 +438,4 @@ public class DefaultLlmService<T> extends LlmService<T> {
             return s.hasNext() ? s.next() : "";
         }
     }
-
-    private static Optional<Object> findMemoryId(Method method, Object[] args) {
-        Parameter[] parameters = method.getParameters();
-        for (int i = 0; i < parameters.length; i++) {
-            if (parameters[i].isAnnotationPresent(MemoryId.class)) {
-                Object memoryId = args[i];
-                if (memoryId == null) {
-                    throw illegalArgument(
-                            "The value of parameter '%s' annotated with @MemoryId in method '%s' must not be null",
-                            parameters[i].getName(), method.getName());
-                }
-                return Optional.of(memoryId);
-            }
-        }
-        return Optional.empty();
-    }
-
-    private static String toString(Object arg) {
-        if (arg.getClass().isArray()) {
-            return arrayToString(arg);
-        } else if (arg.getClass().isAnnotationPresent(StructuredPrompt.class)) {
-            return StructuredPromptProcessor.toPrompt(arg).text();
-        } else {
-            return arg.toString();
-        }
-    }
-
-    private static String arrayToString(Object arg) {
-        StringBuilder sb = new StringBuilder("[");
-        int length = Array.getLength(arg);
-        for (int i = 0; i < length; i++) {
-            sb.append(toString(Array.get(arg, i)));
-            if (i < length - 1) {
-                sb.append(", ");
-            }
-        }
-        sb.append("]");
-        return sb.toString();
-    }
 }
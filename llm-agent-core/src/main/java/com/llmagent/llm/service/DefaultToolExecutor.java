@@ -7,13 +7,16 @@ import com.llmagent.util.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -24,24 +27,24 @@ public class DefaultToolExecutor implements ToolExecutor {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultToolExecutor.class);
 
-    private final Object object;
-    private final Method originalMethod;
-    private final Method methodToInvoke;
+    /**
+     * {@code methodToInvoke} bound to {@code object}, taking the arguments as an {@code Object[]}
+     * and returning the (boxed) result as an {@code Object}.
+     */
+    private final MethodHandle invoker;
+    private final ArgumentBinder[] argumentBinders;
+    private final Map<String, Type> jsonArgumentTypes;
+    private final ResultType resultType;
 
     public DefaultToolExecutor(Object object, Method method) {
-        this.object = Objects.requireNonNull(object, "object");
-        this.originalMethod = Objects.requireNonNull(method, "method");
-        this.methodToInvoke = this.originalMethod;
+        this(object, method, method);
     }
 
     public DefaultToolExecutor(Object object, ToolRequest toolRequest) {
-        this.object = Objects.requireNonNull(object, "object");
-        Objects.requireNonNull(toolRequest, "toolRequest");
-        this.originalMethod = findMethod(object, toolRequest);
-        this.methodToInvoke = this.originalMethod;
+        this(Objects.requireNonNull(object, "object"), findMethod(object, Objects.requireNonNull(toolRequest, "toolRequest")));
     }
 
-    private Method findMethod(Object object, ToolRequest toolRequest) {
+    private static Method findMethod(Object object, ToolRequest toolRequest) {
         String requestedMethodName = toolRequest.name();
 
         for (Method method : object.getClass().getDeclaredMethods()) {
@@ -65,76 +68,132 @@ public class DefaultToolExecutor implements ToolExecutor {
      * @param methodToInvoke the method that should actually be invoked
      */
     public DefaultToolExecutor(Object object, Method originalMethod, Method methodToInvoke) {
-        this.object = Objects.requireNonNull(object, "object");
-        this.originalMethod = Objects.requireNonNull(originalMethod, "originalMethod");
-        this.methodToInvoke = Objects.requireNonNull(methodToInvoke, "methodToInvoke");
-    }
+        Objects.requireNonNull(object, "object");
+        Objects.requireNonNull(originalMethod, "originalMethod");
+        Objects.requireNonNull(methodToInvoke, "methodToInvoke");
 
-    public String execute(ToolRequest toolRequest, Object memoryId) {
-        log.debug("About to execute {} for memoryId {}", toolRequest, memoryId);
+        Parameter[] parameters = originalMethod.getParameters();
+        Map<String, Type> jsonArgumentTypes = new HashMap<>();
+        this.argumentBinders = new ArgumentBinder[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            this.argumentBinders[i] = argumentBinder(parameters[i], jsonArgumentTypes);
+        }
+        this.jsonArgumentTypes = Map.copyOf(jsonArgumentTypes);
 
-        Map<String, Object> argumentsMap = argumentsAsMap(toolRequest.arguments());
-        Object[] arguments = prepareArguments(originalMethod, argumentsMap, memoryId);
+        this.invoker = invoker(object, methodToInvoke);
+        Class<?> returnType = methodToInvoke.getReturnType();
+        this.resultType = returnType == void.class ? ResultType.VOID
+                : returnType == String.class ? ResultType.STRING
+                : ResultType.JSON;
+    }
+
+    private static MethodHandle invoker(Object object, Method method) {
+        MethodHandle methodHandle;
         try {
-            String result = execute(arguments);
-            log.debug("Tool execution result: {}", result);
-            return result;
+            methodHandle = MethodHandles.lookup().unreflect(method);
         } catch (IllegalAccessException e) {
             try {
-                methodToInvoke.setAccessible(true);
-                String result = execute(arguments);
-                log.debug("Tool execution result: {}", result);
-                return result;
-            } catch (IllegalAccessException e2) {
-                throw new RuntimeException(e2);
-            } catch (InvocationTargetException e2) {
-                Throwable cause = e2.getCause();
-                log.error("Error while executing tool", cause);
-                return cause.getMessage();
+                method.setAccessible(true);
+                methodHandle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException | RuntimeException e2) {
+                throw new IllegalArgumentException(String.format(
+                        "Tool method '%s' of '%s' is not accessible", method.getName(), object.getClass().getName()), e2);
             }
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            log.error("Error while executing tool", cause);
-            return cause.getMessage();
         }
+        if (!Modifier.isStatic(method.getModifiers())) {
+            methodHandle = methodHandle.bindTo(object);
+        }
+        return methodHandle
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(Object.class, Object[].class));
     }
 
-    private String execute(Object[] arguments) throws IllegalAccessException, InvocationTargetException {
-        Object result = methodToInvoke.invoke(object, arguments);
-        Class<?> returnType = methodToInvoke.getReturnType();
-        if (returnType == void.class) {
-            return "Success";
-        } else if (returnType == String.class) {
-            return (String) result;
-        } else {
-            return JsonUtil.toJson(result);
+    public String execute(ToolRequest toolRequest, Object memoryId) {
+        log.debug("About to execute {} for memoryId {}", toolRequest, memoryId);
+
+        Map<String, Object> argumentsMap = argumentsAsMap(toolRequest.arguments(), jsonArgumentTypes);
+        Object[] arguments = new Object[argumentBinders.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = argumentBinders[i].bind(argumentsMap, memoryId);
+        }
+
+        Object result;
+        try {
+            result = (Object) invoker.invokeExact(arguments);
+        } catch (Throwable cause) {
+            log.error("Error while executing tool", cause);
+            return cause.getMessage();
         }
+
+        String toolResult = switch (resultType) {
+            case VOID -> "Success";
+            case STRING -> (String) result;
+            case JSON -> JsonUtil.toJson(result);
+        };
+        log.debug("Tool execution result: {}", toolResult);
+        return toolResult;
     }
 
-    static Object[] prepareArguments(Method method, Map<String, Object> argumentsMap, Object memoryId) {
-        Parameter[] parameters = method.getParameters();
-        Object[] arguments = new Object[parameters.length];
+    private enum ResultType {
+        VOID, STRING, JSON
+    }
 
-        for (int i = 0; i < parameters.length; i++) {
+    /**
+     * Produces the value of one method parameter from the parsed tool arguments.
+     */
+    @FunctionalInterface
+    private interface ArgumentBinder {
+        Object bind(Map<String, Object> argumentsMap, Object memoryId);
+    }
 
-            Parameter parameter = parameters[i];
+    private static ArgumentBinder argumentBinder(Parameter parameter, Map<String, Type> jsonArgumentTypes) {
+        if (parameter.isAnnotationPresent(ToolMemoryId.class)) {
+            return (argumentsMap, memoryId) -> memoryId;
+        }
 
-            if (parameter.isAnnotationPresent(ToolMemoryId.class)) {
-                arguments[i] = memoryId;
-                continue;
-            }
+        String parameterName = parameter.getName();
+        Class<?> parameterClass = parameter.getType();
+        Type parameterType = parameter.getParameterizedType();
 
-            String parameterName = parameter.getName();
-            if (argumentsMap.containsKey(parameterName)) {
-                Object argument = argumentsMap.get(parameterName);
-                Class<?> parameterClass = parameter.getType();
-                Type parameterType = parameter.getParameterizedType();
+        if (!isScalar(parameterClass)) {
+            // POJOs, collections and maps are decoded straight from the tool arguments JSON by the JSON codec
+            jsonArgumentTypes.put(parameterName, parameterType);
+            return (argumentsMap, memoryId) -> ensurePresentIfPrimitive(
+                    argumentsMap.get(parameterName), parameterName, parameterClass);
+        }
 
-                arguments[i] = coerceArgument(argument, parameterName, parameterClass, parameterType);
+        return (argumentsMap, memoryId) -> {
+            if (!argumentsMap.containsKey(parameterName)) {
+                return ensurePresentIfPrimitive(null, parameterName, parameterClass);
             }
+            return coerceArgument(argumentsMap.get(parameterName), parameterName, parameterClass, parameterType);
+        };
+    }
+
+    private static Object ensurePresentIfPrimitive(Object argument, String parameterName, Class<?> parameterClass) {
+        if (argument == null && parameterClass.isPrimitive()) {
+            throw new IllegalArgumentException(String.format(
+                    "Argument \"%s\" of type %s is missing", parameterName, parameterClass.getName()));
         }
+        return argument;
+    }
 
-        return arguments;
+    /**
+     * @return whether arguments of the given class are converted by {@link #coerceArgument}.
+     */
+    private static boolean isScalar(Class<?> parameterClass) {
+        return parameterClass == String.class
+                || parameterClass.isEnum()
+                || parameterClass == Boolean.class || parameterClass == boolean.class
+                || parameterClass == Double.class || parameterClass == double.class
+                || parameterClass == Float.class || parameterClass == float.class
+                || parameterClass == BigDecimal.class
+                || parameterClass == Integer.class || parameterClass == int.class
+                || parameterClass == Long.class || parameterClass == long.class
+                || parameterClass == Short.class || parameterClass == short.class
+                || parameterClass == Byte.class || parameterClass == byte.class
+                || parameterClass == BigInteger.class
+                || parameterClass == UUID.class;
     }
 
     static Object coerceArgument(Object argument, String parameterName, Class<?> parameterClass, Type parameterType) {
@@ -210,21 +269,13 @@ public class DefaultToolExecutor implements ToolExecutor {
                     .toBigInteger();
         }
 
-        if (Collection.class.isAssignableFrom(parameterClass) || Map.class.isAssignableFrom(parameterClass)) {
-            // Conversion to JSON and back is required when parameterType is a POJO
-            return JsonUtil.fromJson(JsonUtil.toJson(argument), parameterType);
-        }
-
         if (parameterClass == UUID.class) {
             return UUID.fromString(argument.toString());
         }
 
-        if (argument instanceof String) {
-            return JsonUtil.fromJson(argument.toString(), parameterClass);
-        } else {
-            // Conversion to JSON and back is required when parameterClass is a POJO
-            return JsonUtil.fromJson(JsonUtil.toJson(argument), parameterClass);
-        }
+        // POJOs, collections and maps are decoded by the JSON codec, see argumentBinder()
+        throw new IllegalArgumentException(String.format(
+                "Argument \"%s\" is not convertable to %s: <%s>", parameterName, parameterClass.getName(), argument));
     }
 
     private static double getDoubleValue(Object argument, String parameterName, Class<?> parameterType) {
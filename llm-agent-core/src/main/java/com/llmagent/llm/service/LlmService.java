@@ -7,11 +7,17 @@ import com.llmagent.llm.memory.ChatMemory;
 import com.llmagent.llm.memory.ChatMemoryProvider;
 import com.llmagent.llm.memory.MemoryId;
 import com.llmagent.llm.output.TokenStream;
+import com.llmagent.llm.rag.AugmentationRequest;
+import com.llmagent.llm.rag.DefaultRetrievalAugmentor;
+import com.llmagent.llm.rag.RetrievalAugmentor;
 import com.llmagent.llm.tool.*;
+import com.llmagent.util.ExecutorUtil;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import static com.llmagent.exception.IllegalConfigurationException.illegalConfiguration;
@@ -205,6 +211,22 @@ public abstract class LlmService<T> {
         return this;
     }
 
+    /**
+     * Configures the chat memory provider, like {@link #chatMemoryProvider(ChatMemoryProvider)}, but bounds the number
+     * of chat memories kept by the LLM Service according to the given policy.
+     * Evicted chat memories can be persisted by the policy's {@link ChatMemoryEvictionListener}; the statistics
+     * of the chat memories are available through {@link ChatMemoryAccess#getChatMemoryStats()}.
+     *
+     * @param chatMemoryProvider The provider of a {@link ChatMemory} for each new user/conversation.
+     * @param evictionPolicy     The policy bounding the chat memories kept in memory.
+     * @return builder
+     */
+    public LlmService<T> chatMemoryProvider(ChatMemoryProvider chatMemoryProvider,
+                                            ChatMemoryEvictionPolicy evictionPolicy) {
+        context.initChatMemories(chatMemoryProvider, evictionPolicy);
+        return this;
+    }
+
     /**
      * Configures the tools that the LLM can use.
      *
@@ -262,6 +284,73 @@ public abstract class LlmService<T> {
         return this;
     }
 
+    /**
+     * Executes the tools requested by the LLM in a single response concurrently,
+     * using the shared default executor (virtual threads when the runtime supports them).
+     * <p>
+     * By default, the tools are executed one after another.
+     * Regardless of the completion order, the results are added to the {@link ChatMemory}
+     * in the order in which the LLM requested the tools.
+     *
+     * @return builder
+     * @see #executeToolsConcurrently(Executor)
+     */
+    public LlmService<T> executeToolsConcurrently() {
+        return executeToolsConcurrently(ExecutorUtil.defaultExecutor());
+    }
+
+    /**
+     * Executes the tools requested by the LLM in a single response concurrently, using the given executor.
+     * <p>
+     * Regardless of the completion order, the results are added to the {@link ChatMemory}
+     * in the order in which the LLM requested the tools.
+     *
+     * @param executor The executor on which the tools are executed.
+     * @return builder
+     */
+    public LlmService<T> executeToolsConcurrently(Executor executor) {
+        context.toolService.executeToolsConcurrently(executor);
+        return this;
+    }
+
+    /**
+     * Configures the executor on which the tools requested by a streaming model are executed.
+     * <p>
+     * When a streamed response requests tools, they are executed and the follow-up request to the
+     * {@link StreamingChatLanguageModel} is issued from this executor, so that the threads of the model provider's
+     * HTTP client are never blocked by tools. The tools run concurrently on the executor configured via
+     * {@link #executeToolsConcurrently(Executor)}, if any, otherwise on the calling task one after another.
+     * <p>
+     * A task of this executor blocks until its tools complete: when both executors are set, they must not be
+     * the same bounded pool, or its threads could all wait for tools queued behind them.
+     * <p>
+     * Defaults to the shared default executor (virtual threads when the runtime supports them). As that executor
+     * is unbounded, the tools of a streamed response then also run concurrently on it by default.
+     *
+     * @param executor The executor for streaming tool executions.
+     * @return builder
+     */
+    public LlmService<T> streamingToolExecutor(Executor executor) {
+        context.toolService.streamingToolExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Configures the maximum time a single tool execution may take when tools are executed concurrently
+     * (see {@link #executeToolsConcurrently()}), including the tools requested by a streaming model.
+     * When a tool does not complete in time, the LLM receives a message saying so as the tool result,
+     * and the thread executing the tool is interrupted.
+     * <p>
+     * Requires {@link #executeToolsConcurrently()}: building the service fails otherwise.
+     *
+     * @param toolExecutionTimeout The maximum duration of a single tool execution, must be positive.
+     * @return builder
+     */
+    public LlmService<T> toolExecutionTimeout(Duration toolExecutionTimeout) {
+        context.toolService.toolExecutionTimeout(toolExecutionTimeout);
+        return this;
+    }
+
     /**
      * Configures the strategy to be used when the LLM hallucinates a tool name (i.e., attempts to call a nonexistent tool).
      *
@@ -275,6 +364,36 @@ public abstract class LlmService<T> {
         return this;
     }
 
+    /**
+     * Configures a retrieval augmentor to be invoked on every method call, enriching the user message
+     * with relevant contents (RAG) before it is sent to the LLM.
+     * <p>
+     * See {@link DefaultRetrievalAugmentor} for an implementation searching one or more embedding stores concurrently.
+     *
+     * @param retrievalAugmentor The retrieval augmentor to be used by the LLM Service.
+     * @return builder
+     */
+    public LlmService<T> retrievalAugmentor(RetrievalAugmentor retrievalAugmentor) {
+        context.retrievalAugmentor = retrievalAugmentor;
+        return this;
+    }
+
+    /**
+     * Configures the executor on which the {@link RetrievalAugmentor} is invoked. Retrieval runs there while
+     * the chat memory and the tools are prepared on the calling thread, and the calling thread then waits for it.
+     * It is passed to {@link RetrievalAugmentor#augmentAsync(AugmentationRequest, Executor)}: an augmentor composing
+     * its own stages, such as {@link DefaultRetrievalAugmentor}, runs them on its own executor instead.
+     * <p>
+     * Defaults to the shared default executor (virtual threads when the runtime supports them).
+     *
+     * @param executor The executor for retrieval.
+     * @return builder
+     */
+    public LlmService<T> retrievalExecutor(Executor executor) {
+        context.retrievalExecutor = executor;
+        return this;
+    }
+
     /**
      * Constructs and returns the LLM Service.
      *
@@ -286,5 +405,9 @@ public abstract class LlmService<T> {
         if (context.chatModel == null && context.streamingChatModel == null) {
             throw illegalConfiguration("Please specify either chatLanguageModel or streamingLanguageChatModel");
         }
+        if (context.toolService.toolExecutionTimeout() != null && !context.toolService.executesToolsConcurrently()) {
+            throw illegalConfiguration("toolExecutionTimeout is only supported when tools are executed concurrently, "
+                    + "please configure executeToolsConcurrently()");
+        }
     }
 }
@@ -4,8 +4,10 @@ import com.llmagent.llm.chat.ChatLanguageModel;
 import com.llmagent.llm.chat.StreamingChatLanguageModel;
 import com.llmagent.llm.memory.ChatMemory;
 import com.llmagent.llm.memory.ChatMemoryProvider;
+import com.llmagent.llm.rag.RetrievalAugmentor;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 public class LlmServiceContext {
@@ -20,6 +22,9 @@ public class LlmServiceContext {
     public ChatMemoryService chatMemoryService;
     public ToolService toolService = new ToolService();
 
+    public RetrievalAugmentor retrievalAugmentor;
+    public Executor retrievalExecutor;
+
     public Function<Object, Optional<String>> systemMessageProvider = DEFAULT_MESSAGE_PROVIDER;
 
     public LlmServiceContext(Class<?> llmServiceClass) {
@@ -37,4 +42,8 @@ public class LlmServiceContext {
     public void initChatMemories(ChatMemoryProvider chatMemoryProvider) {
         chatMemoryService = new ChatMemoryService(chatMemoryProvider);
     }
+
+    public void initChatMemories(ChatMemoryProvider chatMemoryProvider, ChatMemoryEvictionPolicy evictionPolicy) {
+        chatMemoryService = new ChatMemoryService(chatMemoryProvider, evictionPolicy);
+    }
 }
@@ -0,0 +1,271 @@
+package com.llmagent.llm.service;
+
+import com.llmagent.data.message.SystemMessage;
+import com.llmagent.data.message.UserMessage;
+import com.llmagent.llm.chat.request.json.JsonSchema;
+import com.llmagent.llm.input.PromptTemplate;
+import com.llmagent.llm.input.StructuredPrompt;
+import com.llmagent.llm.input.StructuredPromptProcessor;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.exception.IllegalConfigurationException.illegalConfiguration;
+import static com.llmagent.util.StringUtil.isNotNullOrBlank;
+
+/**
+ * The immutable, pre-computed part of an LLM Service method invocation.
+ * <p>
+ * A plan is built once per {@link Method} when the service is built. It holds everything that does not depend
+ * on the arguments of a particular call (parameter roles, parsed prompt templates, the JSON schema and
+ * the output format instructions of the return type), so that an invocation only has to bind the arguments.
+ * <p>
+ * A method whose plan cannot be built, e.g. because of a missing user message, does not fail the service build:
+ * planning is retried, and fails, on each invocation of that method.
+ */
+final class LlmServiceMethodPlan {
+
+    private static final String IT = "it";
+    private static final String IT_PLACEHOLDER = "{{it}}";
+
+    private final Method method;
+    private final String[] parameterNames;
+    private final String[] variableNames;
+    private final int memoryIdIndex;
+    private final int userMessageIndex;
+    private final int itIndex;
+
+    private final PromptTemplate systemMessageTemplate;
+    private final boolean systemMessageTemplateUsesIt;
+    private final PromptTemplate userMessageTemplate;
+    private final boolean userMessageTemplateUsesIt;
+
+    private final Type returnType;
+    private final boolean streaming;
+    private final JsonSchema jsonSchema;
+    private final String outputFormatInstructions;
+
+    private LlmServiceMethodPlan(Builder builder) {
+        this.method = builder.method;
+        this.parameterNames = builder.parameterNames;
+        this.variableNames = builder.variableNames;
+        this.memoryIdIndex = builder.memoryIdIndex;
+        this.userMessageIndex = builder.userMessageIndex;
+        this.itIndex = builder.itIndex;
+        this.systemMessageTemplate = builder.systemMessageTemplate;
+        this.systemMessageTemplateUsesIt = usesIt(builder.systemMessageTemplate);
+        this.userMessageTemplate = builder.userMessageTemplate;
+        this.userMessageTemplateUsesIt = usesIt(builder.userMessageTemplate);
+        this.returnType = builder.returnType;
+        this.streaming = builder.streaming;
+        this.jsonSchema = builder.jsonSchema;
+        this.outputFormatInstructions = builder.outputFormatInstructions;
+    }
+
+    Method method() {
+        return method;
+    }
+
+    Type returnType() {
+        return returnType;
+    }
+
+    boolean streaming() {
+        return streaming;
+    }
+
+    Optional<JsonSchema> jsonSchema() {
+        return Optional.ofNullable(jsonSchema);
+    }
+
+    /**
+     * Finds the value of the parameter annotated with {@code @MemoryId}.
+     *
+     * @param args the arguments of the invocation.
+     * @return the memory id, or {@link ChatMemoryService#DEFAULT} when the method has no {@code @MemoryId} parameter.
+     */
+    Object memoryId(Object[] args) {
+        if (memoryIdIndex < 0) {
+            return ChatMemoryService.DEFAULT;
+        }
+        Object memoryId = args[memoryIdIndex];
+        if (memoryId == null) {
+            throw illegalArgument(
+                    "The value of parameter '%s' annotated with @MemoryId in method '%s' must not be null",
+                    parameterNames[memoryIdIndex], method.getName());
+        }
+        return memoryId;
+    }
+
+    Optional<SystemMessage> systemMessage(Object memoryId,
+                                          Object[] args,
+                                          Function<Object, Optional<String>> systemMessageProvider) {
+        if (systemMessageTemplate != null) {
+            return Optional.of(systemMessageTemplate
+                    .apply(variables(systemMessageTemplateUsesIt, args))
+                    .toSystemMessage());
+        }
+        return systemMessageProvider.apply(memoryId)
+                .map(template -> PromptTemplate.from(template)
+                        .apply(variables(template.contains(IT_PLACEHOLDER), args))
+                        .toSystemMessage());
+    }
+
+    UserMessage userMessage(Object[] args) {
+        if (userMessageTemplate != null) {
+            return userMessageTemplate.apply(variables(userMessageTemplateUsesIt, args)).toUserMessage();
+        }
+        String template = toString(args[userMessageIndex]);
+        return PromptTemplate.from(template).apply(variables(template.contains(IT_PLACEHOLDER), args)).toUserMessage();
+    }
+
+    /**
+     * Appends the output format instructions of the return type, unless the response format
+     * is enforced through a JSON schema or the method is streaming.
+     *
+     * @param userMessage the rendered user message.
+     * @return the user message to send.
+     */
+    UserMessage appendOutputFormatInstructions(UserMessage userMessage) {
+        if (outputFormatInstructions == null) {
+            return userMessage;
+        }
+        String text = userMessage.singleText() + outputFormatInstructions;
+        return isNotNullOrBlank(userMessage.name()) ? UserMessage.from(userMessage.name(), text) : UserMessage.from(text);
+    }
+
+    private Map<String, Object> variables(boolean usesIt, Object[] args) {
+        int length = variableNames.length;
+        Map<String, Object> variables = new HashMap<>((int) ((length + 1) / 0.75f) + 1);
+        for (int i = 0; i < length; i++) {
+            variables.put(variableNames[i], args[i]);
+        }
+        if (usesIt && !variables.containsKey(IT)) {
+            if (itIndex < 0) {
+                throw illegalConfiguration("Error: cannot find the value of the prompt template variable \"{{it}}\".");
+            }
+            variables.put(IT, toString(args[itIndex]));
+        }
+        return variables;
+    }
+
+    private static boolean usesIt(PromptTemplate template) {
+        return template != null && template.template().contains(IT_PLACEHOLDER);
+    }
+
+    static String toString(Object arg) {
+        if (arg.getClass().isArray()) {
+            return arrayToString(arg);
+        } else if (arg.getClass().isAnnotationPresent(StructuredPrompt.class)) {
+            return StructuredPromptProcessor.toPrompt(arg).text();
+        } else {
+            return arg.toString();
+        }
+    }
+
+    private static String arrayToString(Object arg) {
+        StringBuilder sb = new StringBuilder("[");
+        int length = Array.getLength(arg);
+        for (int i = 0; i < length; i++) {
+            sb.append(toString(Array.get(arg, i)));
+            if (i < length - 1) {
+                sb.append(", ");
+            }
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+
+        private Method method;
+        private String[] parameterNames = new String[0];
+        private String[] variableNames = new String[0];
+        private int memoryIdIndex = -1;
+        private int userMessageIndex = -1;
+        private int itIndex = -1;
+        private PromptTemplate systemMessageTemplate;
+        private PromptTemplate userMessageTemplate;
+        private Type returnType;
+        private boolean streaming;
+        private JsonSchema jsonSchema;
+        private String outputFormatInstructions;
+
+        private Builder() {
+        }
+
+        Builder method(Method method) {
+            this.method = method;
+            return this;
+        }
+
+        Builder parameterNames(String[] parameterNames) {
+            this.parameterNames = parameterNames;
+            return this;
+        }
+
+        Builder variableNames(String[] variableNames) {
+            this.variableNames = variableNames;
+            return this;
+        }
+
+        Builder memoryIdIndex(int memoryIdIndex) {
+            this.memoryIdIndex = memoryIdIndex;
+            return this;
+        }
+
+        Builder userMessageIndex(int userMessageIndex) {
+            this.userMessageIndex = userMessageIndex;
+            return this;
+        }
+
+        Builder itIndex(int itIndex) {
+            this.itIndex = itIndex;
+            return this;
+        }
+
+        Builder systemMessageTemplate(PromptTemplate systemMessageTemplate) {
+            this.systemMessageTemplate = systemMessageTemplate;
+            return this;
+        }
+
+        Builder userMessageTemplate(PromptTemplate userMessageTemplate) {
+            this.userMessageTemplate = userMessageTemplate;
+            return this;
+        }
+
+        Builder returnType(Type returnType) {
+            this.returnType = returnType;
+            return this;
+        }
+
+        Builder streaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        Builder jsonSchema(JsonSchema jsonSchema) {
+            this.jsonSchema = jsonSchema;
+            return this;
+        }
+
+        Builder outputFormatInstructions(String outputFormatInstructions) {
+            this.outputFormatInstructions = outputFormatInstructions;
+            return this;
+        }
+
+        LlmServiceMethodPlan build() {
+            return new LlmServiceMethodPlan(this);
+        }
+    }
+}
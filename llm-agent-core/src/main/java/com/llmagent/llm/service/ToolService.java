@@ -12,20 +12,45 @@ import com.llmagent.llm.chat.response.ChatResponse;
 import com.llmagent.llm.memory.ChatMemory;
 import com.llmagent.llm.output.TokenUsage;
 import com.llmagent.llm.tool.*;
+import com.llmagent.util.ExecutorUtil;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import static com.llmagent.exception.Exceptions.runtime;
 import static com.llmagent.exception.IllegalConfigurationException.illegalConfiguration;
 import static com.llmagent.llm.tool.ToolSpecifications.toolSpecificationFrom;
+import static com.llmagent.util.ObjectUtil.isNullOrEmpty;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
 
 public class ToolService {
     private final List<ToolSpecification> toolSpecifications = new ArrayList<>();
     private final Map<String, ToolExecutor> toolExecutors = new HashMap<>();
     private ToolProvider toolProvider;
     private int maxSequentialToolsInvocations = 100;
+    private Executor executor;
+    private Executor streamingExecutor;
+    private Duration toolExecutionTimeout;
+
+    /**
+     * Immutable snapshot of the statically configured tools, rebuilt lazily after the tools change.
+     */
+    private volatile ToolServiceContext staticToolsContext;
+    /**
+     * The tools last supplied by the {@link ToolProvider}, merged with the static ones.
+     * Replaced only when the provider supplies a different set of tools.
+     */
+    private volatile ProvidedToolsSnapshot providedToolsSnapshot;
 
     private Function<ToolRequest, ToolMessage> toolHallucinationStrategy =
             HallucinatedToolNameStrategy.THROW_EXCEPTION;
@@ -37,6 +62,7 @@ public class ToolService {
 
     public void toolProvider(ToolProvider toolProvider) {
         this.toolProvider = toolProvider;
+        this.providedToolsSnapshot = null;
     }
 
     public void tools(Map<ToolSpecification, ToolExecutor> tools) {
@@ -44,6 +70,7 @@ public class ToolService {
             toolSpecifications.add(toolSpecification);
             toolExecutors.put(toolSpecification.name(), toolExecutor);
         });
+        toolsChanged();
     }
 
     public void tools(Collection<Object> objectsWithTools) {
@@ -60,39 +87,125 @@ public class ToolService {
                                 "Duplicated definition for tool: " + toolSpecification.name());
                     }
                     toolExecutors.put(toolSpecification.name(), new DefaultToolExecutor(objectWithTool, method));
-                    toolSpecifications.add(toolSpecificationFrom(method));
+                    toolSpecifications.add(toolSpecification);
                 }
             }
         }
+        toolsChanged();
+    }
+
+    private void toolsChanged() {
+        this.staticToolsContext = null;
+        this.providedToolsSnapshot = null;
     }
 
     public void maxSequentialToolsInvocations(int maxSequentialToolsInvocations) {
         this.maxSequentialToolsInvocations = maxSequentialToolsInvocations;
     }
 
+    public void executeToolsConcurrently(Executor executor) {
+        this.executor = ensureNotNull(executor, "executor");
+    }
+
+    public void streamingToolExecutor(Executor streamingExecutor) {
+        this.streamingExecutor = ensureNotNull(streamingExecutor, "streamingExecutor");
+    }
+
+    public void toolExecutionTimeout(Duration toolExecutionTimeout) {
+        ensureNotNull(toolExecutionTimeout, "toolExecutionTimeout");
+        if (toolExecutionTimeout.isNegative() || toolExecutionTimeout.isZero()) {
+            throw illegalConfiguration("toolExecutionTimeout must be positive, but is: %s", toolExecutionTimeout);
+        }
+        this.toolExecutionTimeout = toolExecutionTimeout;
+    }
+
+    /**
+     * Creates the tool context for a single request.
+     * <p>
+     * The returned context is an immutable snapshot shared between requests: it is only rebuilt when
+     * the statically configured tools change or when the {@link ToolProvider} supplies a different set of tools.
+     */
     public ToolServiceContext createContext(Object memoryId, UserMessage userMessage) {
+        ToolServiceContext staticContext = staticToolsContext();
         if (this.toolProvider == null) {
-            return this.toolSpecifications.isEmpty() ?
-                    new ToolServiceContext(null, null) :
-                    new ToolServiceContext(this.toolSpecifications, this.toolExecutors);
+            return staticContext;
         }
 
-        List<ToolSpecification> toolsSpecs = new ArrayList<>(this.toolSpecifications);
-        Map<String, ToolExecutor> toolExecs = new HashMap<>(this.toolExecutors);
         ToolProviderRequest toolProviderRequest = new ToolProviderRequest(memoryId, userMessage);
         ToolProviderResult toolProviderResult = toolProvider.provideTools(toolProviderRequest);
-        if (toolProviderResult != null) {
-            for (Map.Entry<ToolSpecification, ToolExecutor> entry :
-                    toolProviderResult.tools().entrySet()) {
-                if (toolExecs.putIfAbsent(entry.getKey().name(), entry.getValue()) == null) {
-                    toolsSpecs.add(entry.getKey());
-                } else {
-                    throw new IllegalConfigurationException(
-                            "Duplicated definition for tool: " + entry.getKey().name());
+        if (toolProviderResult == null || isNullOrEmpty(toolProviderResult.tools())) {
+            return staticContext;
+        }
+
+        Map<ToolSpecification, ToolExecutor> providedTools = toolProviderResult.tools();
+        ProvidedToolsSnapshot snapshot = this.providedToolsSnapshot;
+        if (snapshot != null && snapshot.sameTools(providedTools)) {
+            return snapshot.context;
+        }
+
+        snapshot = new ProvidedToolsSnapshot(new LinkedHashMap<>(providedTools), merge(providedTools));
+        this.providedToolsSnapshot = snapshot;
+        return snapshot.context;
+    }
+
+    private ToolServiceContext staticToolsContext() {
+        ToolServiceContext context = this.staticToolsContext;
+        if (context == null) {
+            context = this.toolSpecifications.isEmpty() ?
+                    new ToolServiceContext(null, null) :
+                    new ToolServiceContext(List.copyOf(this.toolSpecifications), Map.copyOf(this.toolExecutors));
+            this.staticToolsContext = context;
+        }
+        return context;
+    }
+
+    private ToolServiceContext merge(Map<ToolSpecification, ToolExecutor> providedTools) {
+        List<ToolSpecification> toolsSpecs = new ArrayList<>(this.toolSpecifications.size() + providedTools.size());
+        toolsSpecs.addAll(this.toolSpecifications);
+        Map<String, ToolExecutor> toolExecs = new HashMap<>(this.toolExecutors);
+        for (Map.Entry<ToolSpecification, ToolExecutor> entry : providedTools.entrySet()) {
+            if (toolExecs.putIfAbsent(entry.getKey().name(), entry.getValue()) == null) {
+                toolsSpecs.add(entry.getKey());
+            } else {
+                throw new IllegalConfigurationException(
+                        "Duplicated definition for tool: " + entry.getKey().name());
+            }
+        }
+        return new ToolServiceContext(unmodifiableList(toolsSpecs), unmodifiableMap(toolExecs));
+    }
+
+    private static final class ProvidedToolsSnapshot {
+        private final Map<ToolSpecification, ToolExecutor> providedTools;
+        private final ToolSpecification[] specifications;
+        private final ToolExecutor[] executors;
+        private final ToolServiceContext context;
+
+        private ProvidedToolsSnapshot(Map<ToolSpecification, ToolExecutor> providedTools, ToolServiceContext context) {
+            this.providedTools = providedTools;
+            this.specifications = providedTools.keySet().toArray(new ToolSpecification[0]);
+            this.executors = providedTools.values().toArray(new ToolExecutor[0]);
+            this.context = context;
+        }
+
+        /**
+         * Compares the entries by identity first, so that a provider returning a new map of the same tool
+         * instances on each call does not pay for a deep comparison of the tool specifications.
+         * The snapshot holds a copy of the provided map, so a provider returning the same mutable map
+         * is compared entry by entry as well.
+         */
+        private boolean sameTools(Map<ToolSpecification, ToolExecutor> tools) {
+            if (tools.size() != specifications.length) {
+                return false;
+            }
+            int i = 0;
+            for (Map.Entry<ToolSpecification, ToolExecutor> entry : tools.entrySet()) {
+                if (entry.getKey() != specifications[i] || entry.getValue() != executors[i]) {
+                    return providedTools.equals(tools);
                 }
+                i++;
             }
+            return true;
         }
-        return new ToolServiceContext(toolsSpecs, toolExecs);
     }
 
     public ToolServiceResult executeInferenceAndToolsLoop(
@@ -127,16 +240,13 @@ public class ToolService {
                 break;
             }
 
-            for (ToolRequest toolRequest : aiMessage.toolRequests()) {
-                ToolExecutor toolExecutor = toolExecutors.get(toolRequest.name());
-
-                ToolMessage toolMessage = toolExecutor == null
-                        ? applyToolHallucinationStrategy(toolRequest)
-                        : ToolMessage.from(
-                        toolRequest, toolExecutor.execute(toolRequest, memoryId));
+            List<ToolRequest> toolRequests = aiMessage.toolRequests();
+            List<ToolMessage> toolMessages = executeTools(toolRequests, toolExecutors, memoryId);
+            for (int i = 0; i < toolRequests.size(); i++) {
+                ToolMessage toolMessage = toolMessages.get(i);
 
                 toolExecutions.add(ToolExecution.builder()
-                        .request(toolRequest)
+                        .request(toolRequests.get(i))
                         .result(toolMessage.content())
                         .build());
 
@@ -172,6 +282,96 @@ public class ToolService {
         return new ToolServiceResult(chatResponse, toolExecutions);
     }
 
+    /**
+     * Executes the given tool requests and returns their results in the order of the requests.
+     * <p>
+     * When an executor is configured (see {@link #executeToolsConcurrently(Executor)}) the tools run concurrently
+     * on it, each bounded by the optional tool execution timeout. Otherwise, they run one after another
+     * on the calling thread.
+     *
+     * @param toolRequests  the tool requests to execute.
+     * @param toolExecutors the tool executors by tool name.
+     * @param memoryId      the ID of the chat memory.
+     * @return the tool results, one per request and in the same order.
+     */
+    public List<ToolMessage> executeTools(List<ToolRequest> toolRequests,
+                                          Map<String, ToolExecutor> toolExecutors,
+                                          Object memoryId) {
+        return executeTools(toolRequests, toolExecutors, memoryId, executor);
+    }
+
+    /**
+     * Executes the given tool requests on the given executor and returns their results in the order of the requests.
+     * A single tool request is executed on the calling thread.
+     *
+     * @param toolRequests  the tool requests to execute.
+     * @param toolExecutors the tool executors by tool name.
+     * @param memoryId      the ID of the chat memory.
+     * @param executor      the executor to run the tools on, or {@code null} to run them one after another
+     *                      on the calling thread.
+     * @return the tool results, one per request and in the same order.
+     */
+    public List<ToolMessage> executeTools(List<ToolRequest> toolRequests,
+                                          Map<String, ToolExecutor> toolExecutors,
+                                          Object memoryId,
+                                          Executor executor) {
+        if (executor == null || (toolRequests.size() == 1 && toolExecutionTimeout == null)) {
+            List<ToolMessage> toolMessages = new ArrayList<>(toolRequests.size());
+            for (ToolRequest toolRequest : toolRequests) {
+                toolMessages.add(executeTool(toolRequest, toolExecutors, memoryId));
+            }
+            return toolMessages;
+        }
+
+        List<CompletableFuture<ToolMessage>> futures = new ArrayList<>(toolRequests.size());
+        List<Future<?>> tasks = new ArrayList<>(toolRequests.size());
+        for (ToolRequest toolRequest : toolRequests) {
+            CompletableFuture<ToolMessage> future = new CompletableFuture<>();
+            // a FutureTask rather than supplyAsync, as cancelling a CompletableFuture does not interrupt its task
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                try {
+                    future.complete(executeTool(toolRequest, toolExecutors, memoryId));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }, null);
+            executor.execute(task);
+            if (toolExecutionTimeout != null) {
+                long timeoutMillis = toolExecutionTimeout.toMillis();
+                CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                    // only a timeout that wins the race against the tool interrupts it
+                    if (future.complete(ToolMessage.from(toolRequest, String.format(
+                            "Tool '%s' did not complete within %d ms", toolRequest.name(), timeoutMillis)))) {
+                        task.cancel(true);
+                    }
+                });
+            }
+            futures.add(future);
+            tasks.add(task);
+        }
+
+        List<ToolMessage> toolMessages = new ArrayList<>(futures.size());
+        for (CompletableFuture<ToolMessage> future : futures) {
+            try {
+                toolMessages.add(future.join());
+            } catch (CompletionException e) {
+                tasks.forEach(task -> task.cancel(true));
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return toolMessages;
+    }
+
+    private ToolMessage executeTool(ToolRequest toolRequest, Map<String, ToolExecutor> toolExecutors, Object memoryId) {
+        ToolExecutor toolExecutor = toolExecutors.get(toolRequest.name());
+        return toolExecutor == null
+                ? applyToolHallucinationStrategy(toolRequest)
+                : ToolMessage.from(toolRequest, toolExecutor.execute(toolRequest, memoryId));
+    }
+
     public ToolMessage applyToolHallucinationStrategy(ToolRequest toolRequest) {
         return toolHallucinationStrategy.apply(toolRequest);
     }
@@ -187,4 +387,42 @@ public class ToolService {
     public ToolProvider toolProvider() {
         return toolProvider;
     }
+
+    public boolean executesToolsConcurrently() {
+        return executor != null;
+    }
+
+    public Duration toolExecutionTimeout() {
+        return toolExecutionTimeout;
+    }
+
+    /**
+     * Returns the executor on which a streaming response handler executes the requested tools
+     * and issues the follow-up request, so that the threads of the model provider's HTTP client
+     * are never blocked by tools.
+     *
+     * The tools themselves run on the concurrent tool executor, if any, not on this one: a task of a bounded
+     * pool waiting for sub-tasks queued on the same pool could deadlock it.
+     *
+     * @return the configured streaming tool executor, otherwise the shared default executor.
+     */
+    public Executor streamingToolExecutor() {
+        return streamingExecutor != null ? streamingExecutor : ExecutorUtil.defaultExecutor();
+    }
+
+    /**
+     * Returns the executor on which the tools requested by a streaming model run concurrently.
+     *
+     * Unless configured otherwise, a streamed response is already handled on the shared default executor,
+     * which is unbounded, so its tools can be fanned out to it as well without risking a deadlock.
+     *
+     * @return the concurrent tool executor, otherwise the shared default executor when no streaming tool executor
+     * is configured, otherwise {@code null} to execute the tools one after another.
+     */
+    public Executor streamingConcurrentToolExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        return streamingExecutor == null ? ExecutorUtil.defaultExecutor() : null;
+    }
 }
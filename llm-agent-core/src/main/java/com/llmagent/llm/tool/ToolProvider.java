@@ -7,6 +7,10 @@ import com.llmagent.llm.memory.MemoryId;
  * A tool provider. It is called each time the LLM service is called and supplies tools for that specific call.
  * <p>
  * Tools returned in {@link ToolProviderResult} will be included in the request to the LLM.
+ * <p>
+ * The tools of the previous call are reused when the same ones are returned. The check is cheapest when the
+ * provider returns the same {@link ToolSpecification} and {@link ToolExecutor} instances, e.g. cached ones:
+ * new but equal instances are compared deeply on each call.
  **/
 @FunctionalInterface
 public interface ToolProvider {
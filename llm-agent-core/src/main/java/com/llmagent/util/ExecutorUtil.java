@@ -0,0 +1,74 @@
+package com.llmagent.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExecutorUtil {
+    private ExecutorUtil() {}
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutorUtil.class);
+
+    /**
+     * Returns the shared executor used for I/O-bound work (tool executions, retrieval, etc.)
+     * when the user did not configure one.
+     * <p>
+     * On a Java 21+ runtime this is a virtual-thread-per-task executor.
+     * On older runtimes it falls back to a cached pool of daemon threads.
+     *
+     * @return the shared default executor.
+     */
+    public static ExecutorService defaultExecutor() {
+        return DefaultExecutorHolder.INSTANCE;
+    }
+
+    private static final class DefaultExecutorHolder {
+        private static final ExecutorService INSTANCE = createDefaultExecutor();
+    }
+
+    /**
+     * Returns the shared single-threaded scheduler used to trigger delayed work, e.g. timeouts or deferred writes.
+     * Scheduled tasks must be short and hand any blocking work over to an executor.
+     *
+     * @return the shared scheduler.
+     */
+    public static ScheduledExecutorService scheduler() {
+        return SchedulerHolder.INSTANCE;
+    }
+
+    private static final class SchedulerHolder {
+        private static final ScheduledExecutorService INSTANCE =
+                Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("llm-agent-scheduler-"));
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            log.debug("Virtual threads are not available, falling back to a cached thread pool");
+            return Executors.newCachedThreadPool(daemonThreadFactory("llm-agent-"));
+        }
+    }
+
+    /**
+     * Creates a {@link ThreadFactory} producing daemon threads named {@code prefix + sequence number}.
+     *
+     * @param prefix the thread name prefix.
+     * @return the thread factory.
+     */
+    public static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
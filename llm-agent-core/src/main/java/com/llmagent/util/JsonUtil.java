@@ -6,6 +6,8 @@ import com.llmagent.json.JsonCodecFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.llmagent.util.ServiceHelper.loadFactories;
 
@@ -46,6 +48,33 @@ public class JsonUtil {
          */
         <T> T fromJson(String json, Type type);
 
+        /**
+         * Convert the given JSON object to a map of its top-level properties.
+         * <p>
+         * Properties listed in {@code propertyTypes} are decoded straight into the given type;
+         * a typed property whose value is a JSON string is assumed to hold the encoded JSON of that type.
+         * All other properties are decoded as for a {@code Map<String, Object>}.
+         * <p>
+         * The default implementation decodes into a {@code Map<String, Object>} first and then re-encodes the
+         * typed properties; codecs should override it to decode the typed properties directly.
+         *
+         * @param json          the JSON object.
+         * @param mapType       the {@code Map<String, Object>} type.
+         * @param propertyTypes the types of the properties that must not be decoded as untyped values.
+         * @return the properties of the JSON object.
+         */
+        default Map<String, Object> fromJsonObject(String json, Type mapType, Map<String, Type> propertyTypes) {
+            Map<String, Object> properties = new LinkedHashMap<>(fromJson(json, mapType));
+            propertyTypes.forEach((name, type) -> {
+                Object value = properties.get(name);
+                if (value != null) {
+                    String valueJson = value instanceof String ? (String) value : toJson(value);
+                    properties.put(name, fromJson(valueJson, type));
+                }
+            });
+            return properties;
+        }
+
         /**
          * Convert the given object to an {@link InputStream}.
          *
@@ -100,6 +129,20 @@ public class JsonUtil {
         return CODEC.fromJson(json, type);
     }
 
+    /**
+     * Convert the given JSON object to a map of its top-level properties,
+     * decoding the properties listed in {@code propertyTypes} straight into the given type.
+     *
+     * @param json          the JSON object.
+     * @param mapType       the {@code Map<String, Object>} type.
+     * @param propertyTypes the types of the properties that must not be decoded as untyped values.
+     * @return the properties of the JSON object.
+     * @see JsonCodec#fromJsonObject(String, Type, Map)
+     */
+    public static Map<String, Object> fromJsonObject(String json, Type mapType, Map<String, Type> propertyTypes) {
+        return CODEC.fromJsonObject(json, mapType, propertyTypes);
+    }
+
     /**
      * Convert the given object to an {@link InputStream}.
      *
@@ -51,6 +51,25 @@ public class ToolRequestUtil {
         return JsonUtil.fromJson(removeTrailingComma(normalizeArguments), MAP_TYPE);
     }
 
+    /**
+     * Convert arguments to map, decoding the arguments listed in {@code argumentTypes} straight into the given type.
+     *
+     * @param arguments     json string
+     * @param argumentTypes the types of the arguments that must be decoded as POJOs, collections or maps
+     * @return map
+     */
+    public static Map<String, Object> argumentsAsMap(String arguments, Map<String, Type> argumentTypes) {
+        if (argumentTypes.isEmpty()) {
+            return argumentsAsMap(arguments);
+        }
+        if (isNullOrBlank(arguments)) {
+            return Map.of();
+        }
+
+        String normalizeArguments = normalizeJsonString(arguments);
+        return JsonUtil.fromJsonObject(removeTrailingComma(normalizeArguments), MAP_TYPE, argumentTypes);
+    }
+
     /**
      * Removes trailing commas before closing braces or brackets in JSON strings.
      *
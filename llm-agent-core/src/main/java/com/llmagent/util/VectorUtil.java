@@ -2,7 +2,6 @@ package com.llmagent.util;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class VectorUtil {
 
@@ -36,7 +35,22 @@ public class VectorUtil {
         if (floats == null) {
             return null;
         }
-        return floats.stream().map(Float::doubleValue).collect(Collectors.toList());
+        List<Double> vector = new ArrayList<>(floats.size());
+        for (Float f : floats) {
+            vector.add(f.doubleValue());
+        }
+        return vector;
+    }
+
+    public static float[] toPrimitiveArray(List<Float> vector) {
+        if (vector == null) {
+            return null;
+        }
+        float[] output = new float[vector.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = vector.get(i);
+        }
+        return output;
     }
 
     public static List<Double> convertToVector(float[] floats) {
@@ -44,8 +58,8 @@ public class VectorUtil {
             return null;
         }
         List<Double> vector = new ArrayList<>(floats.length);
-        for (int i = 0; i < floats.length; i++) {
-            vector.add(Double.parseDouble(String.valueOf(floats[i])));
+        for (float f : floats) {
+            vector.add((double) f);
         }
         return vector;
     }
@@ -55,8 +69,8 @@ public class VectorUtil {
             return null;
         }
         List<Float> vector = new ArrayList<>(floats.length);
-        for (int i = 0; i < floats.length; i++) {
-            vector.add(Float.parseFloat(String.valueOf(floats[i])));
+        for (float f : floats) {
+            vector.add(f);
         }
         return vector;
     }
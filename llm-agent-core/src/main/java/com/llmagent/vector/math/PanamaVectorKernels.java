@@ -0,0 +1,45 @@
+package com.llmagent.vector.math;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Reductions on the widest SIMD registers of the platform, with the incubating Vector API.
+ * <p>
+ * Only loaded by {@link VectorKernels#load()} when the {@code jdk.incubator.vector} module is present; compiling
+ * this class requires {@code --add-modules jdk.incubator.vector}. Only the array methods of the API that are
+ * unchanged since its first incubation are used.
+ */
+final class PanamaVectorKernels implements VectorKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    PanamaVectorKernels() {
+        if (SPECIES.vectorBitSize() < 128) {
+            // no SIMD registers, or C2 is disabled: the vector operations would be emulated
+            throw new UnsupportedOperationException("Preferred vector size is " + SPECIES.vectorBitSize() + " bits");
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int lanes = SPECIES.length();
+        int upperBound = length - length % (2 * lanes);
+        FloatVector acc0 = FloatVector.zero(SPECIES);
+        FloatVector acc1 = FloatVector.zero(SPECIES);
+        int i = 0;
+        // two accumulators, so that consecutive fused multiply-adds do not wait for each other
+        for (; i < upperBound; i += 2 * lanes) {
+            acc0 = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i), acc0);
+            acc1 = FloatVector.fromArray(SPECIES, a, aOffset + i + lanes)
+                    .fma(FloatVector.fromArray(SPECIES, b, bOffset + i + lanes), acc1);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,59 @@
+package com.llmagent.vector.math;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The implementation of the reductions of {@link VectorMath}, chosen once per JVM.
+ */
+interface VectorKernels {
+
+    /**
+     * @return the dot product of {@code length} elements of {@code a} and {@code b}, starting at the given offsets.
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * @return the Vector API kernels when the {@code jdk.incubator.vector} module is present and the platform has
+     * SIMD registers, otherwise the scalar kernels.
+     */
+    static VectorKernels load() {
+        Logger log = LoggerFactory.getLogger(VectorKernels.class);
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.debug("The jdk.incubator.vector module is not present, using scalar vector kernels");
+            return new Scalar();
+        }
+        try {
+            // loaded reflectively: resolving the class fails without the incubator module
+            return (VectorKernels) Class.forName("com.llmagent.vector.math.PanamaVectorKernels")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            log.debug("The Vector API is not usable, using scalar vector kernels", e);
+            return new Scalar();
+        }
+    }
+
+    /**
+     * Reductions unrolled over four independent accumulators.
+     */
+    final class Scalar implements VectorKernels {
+
+        @Override
+        public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            int upperBound = length & ~3;
+            float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            for (; i < upperBound; i += 4) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+                s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+                s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+                s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+    }
+}
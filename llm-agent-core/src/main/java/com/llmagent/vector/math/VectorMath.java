@@ -0,0 +1,285 @@
+package com.llmagent.vector.math;
+
+import java.nio.FloatBuffer;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+
+/**
+ * Kernels for the similarity math on {@code float[]} embeddings: dot product, cosine similarity, L2 distance,
+ * normalization, (weighted) mean pooling and top-k selection.
+ * <p>
+ * The JIT does not vectorize a reduction like {@code sum += a[i] * b[i]}, as it may not reorder floating point
+ * additions. The dot products of arrays, including {@link #dotAll(float[], float[][])}, therefore use the Vector API
+ * when the {@code jdk.incubator.vector} module is present at run time (e.g. with
+ * {@code --add-modules jdk.incubator.vector}), and otherwise a scalar loop unrolled over four independent
+ * accumulators, which at least breaks the dependency chain. The other reductions are always unrolled. The element-wise
+ * operations are plain loops, which the JIT vectorizes by itself.
+ * <p>
+ * All methods are allocation-free unless they return a new array. Vectors are not checked for {@code null}.
+ */
+public final class VectorMath {
+
+    private static final VectorKernels KERNELS = VectorKernels.load();
+
+    private VectorMath() {
+    }
+
+    /**
+     * @return the dot product of {@code a} and {@code b}.
+     */
+    public static float dot(float[] a, float[] b) {
+        ensureSameLength(a, b);
+        return KERNELS.dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * @return the dot product of {@code length} elements of {@code a} and {@code b}, starting at the given offsets,
+     * e.g. with a row of a row-major matrix.
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNELS.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * @return the dot product of {@code a} and the {@code a.length} elements of {@code b} starting at
+     * {@code bOffset}, e.g. a row of a memory-mapped matrix. Only absolute reads are used, so {@code b} can be shared
+     * by concurrent callers. Always scalar: the buffer loads of the Vector API differ between JDK releases.
+     */
+    public static float dot(float[] a, FloatBuffer b, int bOffset) {
+        int length = a.length;
+        int upperBound = length & ~3;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i < upperBound; i += 4) {
+            s0 += a[i] * b.get(bOffset + i);
+            s1 += a[i + 1] * b.get(bOffset + i + 1);
+            s2 += a[i + 2] * b.get(bOffset + i + 2);
+            s3 += a[i + 3] * b.get(bOffset + i + 3);
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b.get(bOffset + i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * @return the cosine similarity of {@code a} and {@code b}, in [-1, 1], or 0 if one of them is the zero vector.
+     */
+    public static float cosine(float[] a, float[] b) {
+        ensureSameLength(a, b);
+        int length = a.length;
+        int upperBound = length & ~1;
+        float dot0 = 0, dot1 = 0, normA0 = 0, normA1 = 0, normB0 = 0, normB1 = 0;
+        int i = 0;
+        for (; i < upperBound; i += 2) {
+            float a0 = a[i], a1 = a[i + 1], b0 = b[i], b1 = b[i + 1];
+            dot0 += a0 * b0;
+            dot1 += a1 * b1;
+            normA0 += a0 * a0;
+            normA1 += a1 * a1;
+            normB0 += b0 * b0;
+            normB1 += b1 * b1;
+        }
+        for (; i < length; i++) {
+            dot0 += a[i] * b[i];
+            normA0 += a[i] * a[i];
+            normB0 += b[i] * b[i];
+        }
+        double norms = Math.sqrt((double) (normA0 + normA1) * (normB0 + normB1));
+        return norms == 0 ? 0 : (float) ((dot0 + dot1) / norms);
+    }
+
+    /**
+     * @return the squared Euclidean distance between {@code a} and {@code b}.
+     */
+    public static float l2Squared(float[] a, float[] b) {
+        ensureSameLength(a, b);
+        int length = a.length;
+        int upperBound = length & ~3;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i < upperBound; i += 4) {
+            float d0 = a[i] - b[i];
+            float d1 = a[i + 1] - b[i + 1];
+            float d2 = a[i + 2] - b[i + 2];
+            float d3 = a[i + 3] - b[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < length; i++) {
+            float d = a[i] - b[i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * @return the Euclidean distance between {@code a} and {@code b}.
+     */
+    public static float l2(float[] a, float[] b) {
+        return (float) Math.sqrt(l2Squared(a, b));
+    }
+
+    /**
+     * @return the Euclidean norm of {@code vector}.
+     */
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector));
+    }
+
+    /**
+     * Scales {@code vector} to unit length, in place. The zero vector is left unchanged.
+     *
+     * @return {@code vector}.
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = norm(vector);
+        if (norm != 0) {
+            scale(vector, 1 / norm);
+        }
+        return vector;
+    }
+
+    /**
+     * Multiplies {@code vector} by {@code factor}, in place.
+     */
+    public static void scale(float[] vector, float factor) {
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= factor;
+        }
+    }
+
+    /**
+     * Adds {@code factor * vector} to {@code accumulator}, in place.
+     */
+    public static void addScaled(float[] accumulator, float[] vector, float factor) {
+        ensureSameLength(accumulator, vector);
+        for (int i = 0; i < vector.length; i++) {
+            accumulator[i] += factor * vector[i];
+        }
+    }
+
+    /**
+     * @param vectors the vectors, e.g. the token vectors of a sequence.
+     * @param count   the number of leading vectors to average, e.g. the non-padded tokens.
+     * @return a new vector, the mean of the first {@code count} vectors.
+     */
+    public static float[] meanPool(float[][] vectors, int count) {
+        if (count <= 0 || count > vectors.length) {
+            throw illegalArgument("count must be between 1 and %s, but is: %s", vectors.length, count);
+        }
+        float[] mean = new float[vectors[0].length];
+        for (int i = 0; i < count; i++) {
+            addScaled(mean, vectors[i], 1);
+        }
+        scale(mean, 1f / count);
+        return mean;
+    }
+
+    /**
+     * @param vectors the vectors to average.
+     * @param weights the weight of each vector.
+     * @return a new vector, the weighted mean of the vectors.
+     */
+    public static float[] weightedMean(float[][] vectors, float[] weights) {
+        if (vectors.length == 0 || vectors.length != weights.length) {
+            throw illegalArgument("Expected one weight per vector, but got %s vectors and %s weights",
+                    vectors.length, weights.length);
+        }
+        float[] mean = new float[vectors[0].length];
+        float totalWeight = 0;
+        for (int i = 0; i < vectors.length; i++) {
+            addScaled(mean, vectors[i], weights[i]);
+            totalWeight += weights[i];
+        }
+        scale(mean, 1 / totalWeight);
+        return mean;
+    }
+
+    /**
+     * Computes the dot product of {@code query} with every vector.
+     *
+     * @return a new array, the score of each vector.
+     */
+    public static float[] dotAll(float[] query, float[][] vectors) {
+        float[] scores = new float[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            scores[i] = dot(query, vectors[i]);
+        }
+        return scores;
+    }
+
+    /**
+     * Selects the indices of the {@code k} highest scores, in O(n log k) and without boxing.
+     *
+     * @param scores the scores.
+     * @param k      the maximum number of indices to return.
+     * @return the indices of the {@code min(k, scores.length)} highest scores, by descending score.
+     */
+    public static int[] topK(float[] scores, int k) {
+        int size = Math.min(k, scores.length);
+        if (size <= 0) {
+            return new int[0];
+        }
+        // a min-heap of indices, ordered by score: the root is the lowest of the best scores so far
+        int[] heap = new int[size];
+        int count = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (count < size) {
+                heap[count] = i;
+                siftUp(heap, count++, scores);
+            } else if (scores[i] > scores[heap[0]]) {
+                heap[0] = i;
+                siftDown(heap, 0, count, scores);
+            }
+        }
+        // pop the lowest scores to the end
+        for (int end = count - 1; end > 0; end--) {
+            int root = heap[0];
+            heap[0] = heap[end];
+            heap[end] = root;
+            siftDown(heap, 0, end, scores);
+        }
+        return heap;
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        int value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[heap[parent]] <= scores[value]) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private static void siftDown(int[] heap, int index, int size, float[] scores) {
+        int value = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && scores[heap[right]] < scores[heap[child]]) {
+                child = right;
+            }
+            if (scores[value] <= scores[heap[child]]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    private static void ensureSameLength(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw illegalArgument("Length of vector a (%s) must be equal to the length of vector b (%s)",
+                    a.length, b.length);
+        }
+    }
+}
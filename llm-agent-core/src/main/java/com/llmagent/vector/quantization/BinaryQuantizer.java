@@ -0,0 +1,87 @@
+package com.llmagent.vector.quantization;
+
+import java.nio.LongBuffer;
+
+/**
+ * 1-bit quantization: element {@code i} of a vector is encoded as bit {@code i % 64} of word {@code i / 64}, set if
+ * the element is positive. The trailing bits of the last word are zero.
+ * <p>
+ * The Hamming distance of two codes, the number of differing bits, is computed with one {@link Long#bitCount(long)}
+ * per 64 dimensions, an intrinsic of the JIT. The fraction of differing bits estimates the angle between the vectors,
+ * see {@link #similarity(int, int)}.
+ */
+public final class BinaryQuantizer {
+
+    private BinaryQuantizer() {
+    }
+
+    /**
+     * @return the number of {@code long} words of the code of a vector.
+     */
+    public static int words(int dimension) {
+        return (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Encodes {@code length} elements of {@code vector}, starting at {@code offset}.
+     *
+     * @param codes       the array receiving the {@link #words(int) words(length)} words of the code.
+     * @param codesOffset the index of the first word in {@code codes}.
+     */
+    public static void quantize(float[] vector, int offset, int length, long[] codes, int codesOffset) {
+        int words = words(length);
+        for (int word = 0; word < words; word++) {
+            long bits = 0;
+            int start = word * Long.SIZE;
+            int end = Math.min(length, start + Long.SIZE);
+            for (int i = start; i < end; i++) {
+                if (vector[offset + i] > 0) {
+                    bits |= 1L << (i - start);
+                }
+            }
+            codes[codesOffset + word] = bits;
+        }
+    }
+
+    /**
+     * @return the code of {@code vector}.
+     */
+    public static long[] quantize(float[] vector) {
+        long[] codes = new long[words(vector.length)];
+        quantize(vector, 0, vector.length, codes, 0);
+        return codes;
+    }
+
+    /**
+     * @return the number of differing bits of {@code a} and {@code b}.
+     */
+    public static int hamming(long[] a, long[] b) {
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+    /**
+     * @return the number of differing bits of {@code query} and the {@code query.length} words starting at
+     * {@code codesOffset}. Only absolute reads are used, so {@code codes} can be shared by concurrent callers.
+     */
+    public static int hamming(long[] query, LongBuffer codes, int codesOffset) {
+        int distance = 0;
+        for (int i = 0; i < query.length; i++) {
+            distance += Long.bitCount(query[i] ^ codes.get(codesOffset + i));
+        }
+        return distance;
+    }
+
+    /**
+     * @param hamming   the Hamming distance of two codes.
+     * @param dimension the dimension of the encoded vectors.
+     * @return an estimate of the cosine similarity of the vectors, in [-1, 1]: 1 when all bits are equal, -1 when
+     * all differ. Only meant to rank candidates, it is coarse for an absolute threshold.
+     */
+    public static float similarity(int hamming, int dimension) {
+        return 1 - 2f * hamming / dimension;
+    }
+}
@@ -0,0 +1,87 @@
+package com.llmagent.vector.quantization;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Symmetric int8 quantization, with a scale per vector: element {@code i} is encoded as
+ * {@code round(v[i] / max(|v|) * 127)}, so that {@code v[i] ≈ codes[i] * scale}.
+ * <p>
+ * Queries are not quantized: the dot product of a float query and the codes of a vector, multiplied by the scale of
+ * the vector, estimates the dot product of the query and the vector.
+ */
+public final class ScalarQuantizer {
+
+    private static final int MAX_CODE = 127;
+
+    private ScalarQuantizer() {
+    }
+
+    /**
+     * Encodes {@code length} elements of {@code vector}, starting at {@code offset}.
+     *
+     * @param codes       the array receiving the {@code length} codes.
+     * @param codesOffset the index of the first code in {@code codes}.
+     * @return the scale of the vector, 0 for the zero vector.
+     */
+    public static float quantize(float[] vector, int offset, int length, byte[] codes, int codesOffset) {
+        float maxAbs = 0;
+        for (int i = 0; i < length; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(vector[offset + i]));
+        }
+        if (maxAbs == 0) {
+            for (int i = 0; i < length; i++) {
+                codes[codesOffset + i] = 0;
+            }
+            return 0;
+        }
+        float factor = MAX_CODE / maxAbs;
+        for (int i = 0; i < length; i++) {
+            codes[codesOffset + i] = (byte) Math.round(vector[offset + i] * factor);
+        }
+        return maxAbs / MAX_CODE;
+    }
+
+    /**
+     * @return the dot product of {@code query} and the {@code query.length} codes starting at {@code codesOffset},
+     * to be multiplied by the scale of the encoded vector.
+     */
+    public static float dot(float[] query, byte[] codes, int codesOffset) {
+        int length = query.length;
+        int upperBound = length & ~3;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i < upperBound; i += 4) {
+            s0 += query[i] * codes[codesOffset + i];
+            s1 += query[i + 1] * codes[codesOffset + i + 1];
+            s2 += query[i + 2] * codes[codesOffset + i + 2];
+            s3 += query[i + 3] * codes[codesOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += query[i] * codes[codesOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Same as {@link #dot(float[], byte[], int)}, with codes read from a little-endian buffer, e.g. a memory-mapped
+     * file. The codes are read eight at a time, as one {@code long}: per-byte reads of a buffer are bounds-checked
+     * each. Only absolute reads are used, so {@code codes} can be shared by concurrent callers.
+     */
+    public static float dot(float[] query, ByteBuffer codes, int codesOffset) {
+        int length = query.length;
+        int upperBound = length & ~7;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i < upperBound; i += 8) {
+            long word = codes.getLong(codesOffset + i);
+            s0 += query[i] * (byte) word + query[i + 4] * (byte) (word >> 32);
+            s1 += query[i + 1] * (byte) (word >> 8) + query[i + 5] * (byte) (word >> 40);
+            s2 += query[i + 2] * (byte) (word >> 16) + query[i + 6] * (byte) (word >> 48);
+            s3 += query[i + 3] * (byte) (word >> 24) + query[i + 7] * (byte) (word >> 56);
+        }
+        for (; i < length; i++) {
+            s0 += query[i] * codes.get(codesOffset + i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -0,0 +1,29 @@
+package com.llmagent.vector.quantization;
+
+/**
+ * How the vectors of a store are encoded for search.
+ * <p>
+ * Quantized codes are compact approximations of the vectors: a search scans the codes to select a few times more
+ * candidates than requested, then re-scores the candidates with their full precision vectors. The full precision
+ * vectors are kept, but only read for the candidates.
+ */
+public enum VectorQuantization {
+
+    /**
+     * No codes, vectors are scanned at full precision: 4 bytes per dimension.
+     */
+    NONE,
+
+    /**
+     * One signed byte per dimension and a scale per vector, see {@link ScalarQuantizer}: about 4x smaller than
+     * the vectors, with a recall close to full precision.
+     */
+    INT8,
+
+    /**
+     * One bit per dimension, the sign of each element, see {@link BinaryQuantizer}: 32x smaller than the vectors.
+     * Suited to high-dimensional embeddings, whose elements are centered around zero, and to larger re-scoring
+     * factors.
+     */
+    BINARY
+}
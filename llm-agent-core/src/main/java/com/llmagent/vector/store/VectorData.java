@@ -15,14 +15,22 @@
  */
 package com.llmagent.vector.store;
 
+import com.llmagent.vector.math.VectorMath;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
+/**
+ * An embedding, stored as a primitive {@code float[]}.
+ * <p>
+ * Boxed {@code List<Float>} representations are only created on demand: {@link #asList()} is a view of the vector,
+ * {@link #vectorAsList()} a copy. Prefer {@link #vector()} whenever a client accepts a {@code float[]}.
+ */
 public class VectorData {
     private final float[] vector;
-    private List<Float> embedding;
 
     /**
      * Creates a new Embedding.
@@ -30,7 +38,6 @@ public class VectorData {
      */
     public VectorData(float[] vector) {
         this.vector = vector;
-        this.embedding = vectorAsList();
     }
 
     /**
@@ -53,23 +60,29 @@ public class VectorData {
         return list;
     }
 
+    /**
+     * Returns an unmodifiable list view of the vector. Elements are boxed on access, nothing is copied.
+     * @return the vector as a list view.
+     */
+    public List<Float> asList() {
+        return new FloatListView(vector);
+    }
+
+    /**
+     * Returns the vector as a list.
+     * @return an unmodifiable list view of the vector.
+     * @deprecated use {@link #vector()}, or {@link #asList()} when a list is required.
+     */
+    @Deprecated
     public List<Float> embedding() {
-        return embedding;
+        return asList();
     }
 
     /**
-     * Normalize vector
+     * Normalize vector, in place
      */
     public void normalize() {
-        double norm = 0.0;
-        for (float f : vector) {
-            norm += f * f;
-        }
-        norm = Math.sqrt(norm);
-
-        for (int i = 0; i < vector.length; i++) {
-            vector[i] /= norm;
-        }
+        VectorMath.normalize(vector);
     }
 
     /**
@@ -100,6 +113,25 @@ public class VectorData {
                 " }";
     }
 
+    private static final class FloatListView extends AbstractList<Float> implements RandomAccess {
+
+        private final float[] vector;
+
+        private FloatListView(float[] vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public Float get(int index) {
+            return vector[index];
+        }
+
+        @Override
+        public int size() {
+            return vector.length;
+        }
+    }
+
     /**
      * Creates a new Embedding from the given vector.
      * @param vector the vector, takes ownership of the array.
@@ -0,0 +1,132 @@
+package com.llmagent.vector.store.inmemory;
+
+import com.llmagent.data.Metadata;
+import com.llmagent.data.segment.TextSegment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The binary encoding of ids and {@link TextSegment}s shared by the snapshots of {@link InMemoryEmbeddingStore}
+ * and the segment files of {@link MappedEmbeddingStore}.
+ * <p>
+ * Strings are length-prefixed UTF-8, as {@link DataOutput#writeUTF(String)} is limited to 64 KB. A segment is
+ * written metadata first, so that filters can be evaluated without decoding the text.
+ */
+final class BinaryCodec {
+
+    private static final byte STRING = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte FLOAT = 3;
+    private static final byte DOUBLE = 4;
+
+    private BinaryCodec() {
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a segment, which may be {@code null}.
+     */
+    static void writeSegment(DataOutput out, TextSegment segment) throws IOException {
+        out.writeBoolean(segment != null);
+        if (segment != null) {
+            writeMetadata(out, segment.metadata());
+            writeMetadata(out, segment.bizData());
+            writeString(out, segment.sid());
+            writeString(out, segment.text());
+        }
+    }
+
+    /**
+     * @param withText whether the sid and text are decoded, or only the metadata and business data, e.g. to
+     *                 evaluate a filter.
+     */
+    static TextSegment readSegment(DataInput in, boolean withText) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Metadata metadata = readMetadata(in);
+        Metadata bizData = readMetadata(in);
+        if (!withText) {
+            return new TextSegment(null, null, metadata, bizData);
+        }
+        String sid = readString(in);
+        String text = readString(in);
+        return new TextSegment(sid, text, metadata, bizData);
+    }
+
+    private static void writeMetadata(DataOutput out, Metadata metadata) throws IOException {
+        if (metadata == null) {
+            out.writeInt(-1);
+            return;
+        }
+        Map<String, Object> entries = metadata.toMap();
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            writeString(out, entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Integer integer) {
+                out.writeByte(INTEGER);
+                out.writeInt(integer);
+            } else if (value instanceof Long longValue) {
+                out.writeByte(LONG);
+                out.writeLong(longValue);
+            } else if (value instanceof Float floatValue) {
+                out.writeByte(FLOAT);
+                out.writeFloat(floatValue);
+            } else if (value instanceof Double doubleValue) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(doubleValue);
+            } else {
+                out.writeByte(STRING);
+                writeString(out, value.toString());
+            }
+        }
+    }
+
+    private static Metadata readMetadata(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        Map<String, Object> entries = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+            Object value = switch (type) {
+                case STRING -> readString(in);
+                case INTEGER -> in.readInt();
+                case LONG -> in.readLong();
+                case FLOAT -> in.readFloat();
+                case DOUBLE -> in.readDouble();
+                default -> throw new IOException("Unknown metadata value type: " + type);
+            };
+            entries.put(key, value);
+        }
+        return new Metadata(entries);
+    }
+}
@@ -0,0 +1,75 @@
+package com.llmagent.vector.store.inmemory;
+
+import java.util.Arrays;
+
+/**
+ * A growable primitive max-heap of (node, score) pairs: the candidates still to be expanded by a graph search,
+ * best first. Not thread-safe.
+ */
+final class CandidateQueue {
+
+    private int[] nodes;
+    private float[] scores;
+    private int size;
+
+    CandidateQueue(int initialCapacity) {
+        this.nodes = new int[Math.max(1, initialCapacity)];
+        this.scores = new float[nodes.length];
+    }
+
+    void push(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] >= score) {
+                break;
+            }
+            nodes[index] = nodes[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        nodes[index] = node;
+        scores[index] = score;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    /**
+     * Removes the best candidate.
+     *
+     * @return its node.
+     */
+    int pop() {
+        int top = nodes[0];
+        int node = nodes[--size];
+        float score = scores[size];
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && scores[right] > scores[child]) {
+                child = right;
+            }
+            if (score >= scores[child]) {
+                break;
+            }
+            nodes[index] = nodes[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        nodes[index] = node;
+        scores[index] = score;
+        return top;
+    }
+}
@@ -0,0 +1,698 @@
+package com.llmagent.vector.store.inmemory;
+
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.util.ExecutorUtil;
+import com.llmagent.util.UUIDUtil;
+import com.llmagent.vector.math.VectorMath;
+import com.llmagent.vector.store.EmbeddingMatch;
+import com.llmagent.vector.store.EmbeddingSearchRequest;
+import com.llmagent.vector.store.EmbeddingSearchResult;
+import com.llmagent.vector.store.EmbeddingStore;
+import com.llmagent.vector.store.RelevanceScore;
+import com.llmagent.vector.store.VectorData;
+import com.llmagent.vector.store.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * An {@link EmbeddingStore} keeping all embeddings in the memory of the JVM, indexed by a
+ * <a href="https://arxiv.org/abs/1603.09320">Hierarchical Navigable Small World</a> graph for approximate nearest
+ * neighbour search. Use it instead of {@link InMemoryEmbeddingStore} when a brute-force scan is too slow,
+ * typically beyond a few million embeddings.
+ * <p>
+ * The graph is tuned with:
+ * <ul>
+ * <li>{@code m}: the number of neighbours of a node per layer (twice as many on the bottom layer). Higher values
+ * improve recall and cost memory and insertion time.</li>
+ * <li>{@code efConstruction}: the number of candidates considered when linking a new node.</li>
+ * <li>{@code efSearch}: the number of candidates considered by a search, at least {@code maxResults}. This is the
+ * recall versus latency trade-off of searches.</li>
+ * </ul>
+ * <p>
+ * Searches do not lock: neighbour lists are immutable arrays replaced on update, so a search always reads consistent
+ * lists while embeddings are added concurrently. Insertions run concurrently with each other, only locking the
+ * nodes whose neighbour lists they update.
+ * <p>
+ * Removed embeddings are tombstoned: they are still traversed, to keep the graph connected, but never returned.
+ * Once tombstones exceed {@code compactionThreshold} of the nodes, the graph is rebuilt from the live embeddings in
+ * the background; searches keep using the previous graph until the new one is swapped in.
+ * <p>
+ * {@link EmbeddingSearchRequest#filter()} and {@link EmbeddingSearchRequest#filter4BizData()} are evaluated during
+ * the traversal: nodes that do not match are expanded but not collected, so a search returns up to
+ * {@code maxResults} matching embeddings instead of filtering an already truncated result.
+ * Embeddings added without a segment never match a filter.
+ * <p>
+ * The relevance score is derived from the cosine similarity, see {@link RelevanceScore#fromCosineSimilarity(double)}.
+ */
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswEmbeddingStore.class);
+
+    private static final int DEFAULT_M = 16;
+    private static final int DEFAULT_EF_CONSTRUCTION = 200;
+    private static final int DEFAULT_EF_SEARCH = 160;
+    private static final double DEFAULT_COMPACTION_THRESHOLD = 0.2;
+    private static final int MAX_LEVEL = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int[] NO_NEIGHBORS = new int[0];
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double compactionThreshold;
+    private final double levelMultiplier;
+    private final Executor compactionExecutor;
+
+    // inserts and removals share the lock, swapping in a compacted graph is exclusive
+    private final ReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final Map<String, Node> nodesById = new ConcurrentHashMap<>();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+    private volatile Graph graph = new Graph();
+
+    private HnswEmbeddingStore(Builder builder) {
+        this.m = ensureGreaterThanZero(getOrDefault(builder.m, DEFAULT_M), "m");
+        this.efConstruction = ensureGreaterThanZero(
+                getOrDefault(builder.efConstruction, DEFAULT_EF_CONSTRUCTION), "efConstruction");
+        this.efSearch = ensureGreaterThanZero(getOrDefault(builder.efSearch, DEFAULT_EF_SEARCH), "efSearch");
+        this.compactionThreshold = getOrDefault(builder.compactionThreshold, DEFAULT_COMPACTION_THRESHOLD);
+        if (compactionThreshold <= 0 || compactionThreshold > 1) {
+            throw illegalArgument("compactionThreshold must be in (0, 1], but is: %s", compactionThreshold);
+        }
+        this.levelMultiplier = 1 / Math.log(Math.max(2, m));
+        this.compactionExecutor = getOrDefault(builder.compactionExecutor, ExecutorUtil.defaultExecutor());
+    }
+
+    public HnswEmbeddingStore() {
+        this(builder());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String add(VectorData embedding) {
+        String id = UUIDUtil.simpleUUID();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, VectorData embedding) {
+        addAll(Collections.singletonList(id), Collections.singletonList(embedding), null);
+    }
+
+    @Override
+    public String add(VectorData embedding, TextSegment segment) {
+        String id = UUIDUtil.simpleUUID();
+        addAll(Collections.singletonList(id), Collections.singletonList(embedding),
+                Collections.singletonList(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<VectorData> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<VectorData> embeddings, List<TextSegment> segments) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, segments);
+        return ids;
+    }
+
+    /**
+     * Adds embeddings, replacing the embeddings already stored with the same ids.
+     *
+     * @param segments the segments, or {@code null} to add the embeddings alone.
+     */
+    @Override
+    public void addAll(List<String> ids, List<VectorData> embeddings, List<TextSegment> segments) {
+        ensureNotNull(ids, "ids");
+        ensureNotNull(embeddings, "embeddings");
+        if (ids.size() != embeddings.size()) {
+            throw illegalArgument("The number of ids (%s) must be equal to the number of embeddings (%s)",
+                    ids.size(), embeddings.size());
+        }
+        if (segments != null && segments.size() != embeddings.size()) {
+            throw illegalArgument("The number of segments (%s) must be equal to the number of embeddings (%s)",
+                    segments.size(), embeddings.size());
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ensureNotNull(ids.get(i), "id");
+            float[] vector = ensureNotNull(embeddings.get(i), "embedding").vector().clone();
+            TextSegment segment = segments == null ? null : segments.get(i);
+            structureLock.readLock().lock();
+            try {
+                Node node = new Node(id, vector, segment, randomLevel());
+                graph.insert(node);
+                Node previous = nodesById.put(id, node);
+                if (previous != null) {
+                    graph.tombstone(previous);
+                }
+            } finally {
+                structureLock.readLock().unlock();
+            }
+        }
+        maybeCompact();
+    }
+
+    private int randomLevel() {
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return Math.min(MAX_LEVEL, (int) (-Math.log(random) * levelMultiplier));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        ensureNotEmpty(ids, "ids");
+        structureLock.readLock().lock();
+        try {
+            for (String id : ids) {
+                Node node = nodesById.remove(id);
+                if (node != null) {
+                    graph.tombstone(node);
+                }
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        ensureNotNull(filter, "filter");
+        structureLock.readLock().lock();
+        try {
+            Graph graph = this.graph;
+            int size = graph.size;
+            for (int i = 0; i < size; i++) {
+                Node node = graph.node(i);
+                if (!node.deleted && matches(node.segment, filter, null) && nodesById.remove(node.id, node)) {
+                    graph.tombstone(node);
+                }
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public void removeAll() {
+        structureLock.writeLock().lock();
+        try {
+            graph = new Graph();
+            nodesById.clear();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of embeddings in the store, tombstones excluded.
+     */
+    public int size() {
+        return nodesById.size();
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        ensureNotNull(request, "request");
+        Graph graph = this.graph;
+        Entry entry = graph.entry.get();
+        int maxResults = request.maxResults();
+        if (entry == null || maxResults <= 0) {
+            return new EmbeddingSearchResult<>(new ArrayList<>());
+        }
+        float[] query = request.queryEmbedding().vector();
+        if (query.length != graph.dimension) {
+            throw illegalArgument("The query embedding has %s dimensions, but the store has %s",
+                    query.length, graph.dimension);
+        }
+        query = VectorMath.normalize(query.clone());
+        // relevance = (cosine + 1) / 2
+        float minCosine = (float) (2 * request.minScore() - 1);
+        Filter filter = request.filter();
+        Filter bizDataFilter = request.filter4BizData();
+        IntPredicate accept = filter == null && bizDataFilter == null
+                ? index -> !graph.node(index).deleted
+                : index -> {
+            Node node = graph.node(index);
+            return !node.deleted && matches(node.segment, filter, bizDataFilter);
+        };
+
+        TopKCollector results = graph.search(query, entry, Math.max(efSearch, maxResults), accept);
+        int count = results.sort();
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(Math.min(count, maxResults));
+        for (int i = 0; i < count && matches.size() < maxResults; i++) {
+            float cosine = results.score(i);
+            if (cosine < minCosine) {
+                break;
+            }
+            Node node = graph.node(results.row(i));
+            matches.add(new EmbeddingMatch<>(RelevanceScore.fromCosineSimilarity(cosine),
+                    node.id, new VectorData(node.vector.clone()), node.segment));
+        }
+        return new EmbeddingSearchResult<>(matches);
+    }
+
+    private static boolean matches(TextSegment segment, Filter filter, Filter bizDataFilter) {
+        if (segment == null) {
+            return false;
+        }
+        return (filter == null || filter.test(segment.metadata()))
+                && (bizDataFilter == null || bizDataFilter.test(segment.bizData()));
+    }
+
+    private void maybeCompact() {
+        Graph graph = this.graph;
+        if (graph.deleted.get() > compactionThreshold * graph.size && compacting.compareAndSet(false, true)) {
+            try {
+                compactionExecutor.execute(() -> {
+                    try {
+                        compact();
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to compact the HNSW graph", e);
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                compacting.set(false);
+                log.warn("Failed to schedule the compaction of the HNSW graph", e);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the graph from the live embeddings, dropping the tombstones. Runs automatically in the background,
+     * but can be called directly, e.g. after a bulk removal.
+     * <p>
+     * Searches and insertions continue on the current graph during the rebuild. Insertions are only blocked while
+     * the embeddings added and removed in the meantime are carried over to the new graph.
+     */
+    public void compact() {
+        Graph old = this.graph;
+        Graph compacted = new Graph();
+        List<Node> sources = new ArrayList<>();
+        int copied = copyLiveNodes(old, compacted, 0, old.size, sources);
+
+        structureLock.writeLock().lock();
+        try {
+            if (this.graph != old) {
+                // removeAll() replaced the graph in the meantime
+                return;
+            }
+            copyLiveNodes(old, compacted, copied, old.size, sources);
+            nodesById.clear();
+            for (int i = 0; i < sources.size(); i++) {
+                Node node = compacted.node(i);
+                if (sources.get(i).deleted) {
+                    compacted.tombstone(node);
+                } else {
+                    nodesById.put(node.id, node);
+                }
+            }
+            this.graph = compacted;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        log.debug("Compacted the HNSW graph from {} to {} nodes", old.size, compacted.size - compacted.deleted.get());
+    }
+
+    private static int copyLiveNodes(Graph from, Graph to, int start, int end, List<Node> sources) {
+        for (int i = start; i < end; i++) {
+            Node node = from.node(i);
+            if (!node.deleted) {
+                to.insert(new Node(node.id, node.vector, node.segment, node.level));
+                sources.add(node);
+            }
+        }
+        return end;
+    }
+
+    private static List<String> generateIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUIDUtil.simpleUUID());
+        }
+        return ids;
+    }
+
+    private static final class Node {
+
+        private final String id;
+        private final float[] vector;
+        private final float inverseNorm;
+        private final TextSegment segment;
+        private final int level;
+        // one immutable array per layer, replaced under the node's monitor
+        private final AtomicReferenceArray<int[]> neighbors;
+        private volatile boolean deleted;
+
+        private Node(String id, float[] vector, TextSegment segment, int level) {
+            this.id = id;
+            this.vector = vector;
+            float norm = VectorMath.norm(vector);
+            this.inverseNorm = norm == 0 ? 0 : 1 / norm;
+            this.segment = segment;
+            this.level = level;
+            this.neighbors = new AtomicReferenceArray<>(level + 1);
+        }
+
+        private int[] neighbors(int level) {
+            int[] neighbors = this.neighbors.get(level);
+            // the lower layers of a node being inserted are linked last
+            return neighbors == null ? NO_NEIGHBORS : neighbors;
+        }
+    }
+
+    private record Entry(int node, int level) {
+    }
+
+    private final class Graph {
+
+        private final Object growLock = new Object();
+        private final AtomicReference<Entry> entry = new AtomicReference<>();
+        private final AtomicInteger deleted = new AtomicInteger();
+        private volatile Node[] nodes = new Node[INITIAL_CAPACITY];
+        private volatile int size;
+        private volatile int dimension;
+
+        private Node node(int index) {
+            return nodes[index];
+        }
+
+        private int register(Node node) {
+            synchronized (growLock) {
+                if (dimension == 0) {
+                    if (node.vector.length == 0) {
+                        throw illegalArgument("The embeddings must have at least one dimension");
+                    }
+                    dimension = node.vector.length;
+                } else if (node.vector.length != dimension) {
+                    throw illegalArgument("The embedding %s has %s dimensions, but the store has %s",
+                            node.id, node.vector.length, dimension);
+                }
+                int index = size;
+                if (index == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, index * 2);
+                }
+                nodes[index] = node;
+                size = index + 1;
+                return index;
+            }
+        }
+
+        private void tombstone(Node node) {
+            synchronized (node) {
+                if (node.deleted) {
+                    return;
+                }
+                node.deleted = true;
+            }
+            deleted.incrementAndGet();
+        }
+
+        private void insert(Node node) {
+            int index = register(node);
+            Entry entry = this.entry.get();
+            if (entry == null) {
+                if (this.entry.compareAndSet(null, new Entry(index, node.level))) {
+                    return;
+                }
+                entry = this.entry.get();
+            }
+
+            float[] query = node.vector.clone();
+            VectorMath.scale(query, node.inverseNorm);
+            int current = entry.node();
+            float currentScore = score(query, current);
+            for (int level = entry.level(); level > node.level; level--) {
+                current = greedy(query, current, currentScore, level);
+                currentScore = score(query, current);
+            }
+            for (int level = Math.min(node.level, entry.level()); level >= 0; level--) {
+                TopKCollector candidates = searchLayer(query, current, currentScore, efConstruction, level, null);
+                int count = candidates.sort();
+                int maxConnections = maxConnections(level);
+                node.neighbors.set(level, selectNeighbors(candidates, count, maxConnections));
+                for (int neighbor : node.neighbors(level)) {
+                    link(neighbor, index, level, maxConnections);
+                }
+                current = candidates.row(0);
+                currentScore = candidates.score(0);
+            }
+
+            while (node.level > entry.level() && !this.entry.compareAndSet(entry, new Entry(index, node.level))) {
+                entry = this.entry.get();
+            }
+        }
+
+        private TopKCollector search(float[] query, Entry entry, int ef, IntPredicate accept) {
+            int current = entry.node();
+            float currentScore = score(query, current);
+            for (int level = entry.level(); level > 0; level--) {
+                current = greedy(query, current, currentScore, level);
+                currentScore = score(query, current);
+            }
+            return searchLayer(query, current, currentScore, ef, 0, accept);
+        }
+
+        /**
+         * Moves to the neighbour closest to the query until no neighbour is closer.
+         */
+        private int greedy(float[] query, int current, float currentScore, int level) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int neighbor : node(current).neighbors(level)) {
+                    float score = score(query, neighbor);
+                    if (score > currentScore) {
+                        current = neighbor;
+                        currentScore = score;
+                        improved = true;
+                    }
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Best-first search of a layer, keeping the {@code ef} best accepted nodes. Nodes that are not accepted are
+         * still expanded, so that filters and tombstones do not disconnect the graph.
+         *
+         * @param accept the nodes that may be returned, or {@code null} for all.
+         */
+        private TopKCollector searchLayer(float[] query, int entry, float entryScore, int ef, int level,
+                                          IntPredicate accept) {
+            VisitedSet visited = visitedSets.get();
+            visited.clear(size);
+            CandidateQueue candidates = new CandidateQueue(ef);
+            TopKCollector results = new TopKCollector(ef);
+            visited.visit(entry);
+            candidates.push(entry, entryScore);
+            if (accept == null || accept.test(entry)) {
+                results.offer(entry, entryScore);
+            }
+            while (!candidates.isEmpty() && candidates.topScore() >= results.threshold()) {
+                int candidate = candidates.pop();
+                for (int neighbor : node(candidate).neighbors(level)) {
+                    if (!visited.visit(neighbor)) {
+                        continue;
+                    }
+                    float score = score(query, neighbor);
+                    if (results.accepts(score)) {
+                        candidates.push(neighbor, score);
+                        if (accept == null || accept.test(neighbor)) {
+                            results.offer(neighbor, score);
+                        }
+                    }
+                }
+            }
+            return results;
+        }
+
+        /**
+         * The neighbour selection heuristic of the HNSW paper: a candidate is kept if it is closer to the base node
+         * than to the neighbours already kept, which favours links in diverse directions. Pruned candidates are
+         * dropped, leaving room for cheap appends in {@link #link(int, int, int, int)}.
+         *
+         * @param candidates the candidates, sorted by descending similarity with the base node.
+         */
+        private int[] selectNeighbors(TopKCollector candidates, int count, int maxConnections) {
+            int[] selected = new int[Math.min(count, maxConnections)];
+            int size = 0;
+            for (int i = 0; i < count && size < selected.length; i++) {
+                int candidate = candidates.row(i);
+                float score = candidates.score(i);
+                boolean diverse = true;
+                for (int j = 0; j < size && diverse; j++) {
+                    diverse = similarity(candidate, selected[j]) < score;
+                }
+                if (diverse) {
+                    selected[size++] = candidate;
+                }
+            }
+            return size == selected.length ? selected : Arrays.copyOf(selected, size);
+        }
+
+        private void link(int from, int to, int level, int maxConnections) {
+            Node node = node(from);
+            synchronized (node) {
+                int[] neighbors = node.neighbors(level);
+                int[] updated;
+                if (neighbors.length < maxConnections) {
+                    updated = Arrays.copyOf(neighbors, neighbors.length + 1);
+                    updated[neighbors.length] = to;
+                } else {
+                    TopKCollector candidates = new TopKCollector(neighbors.length + 1);
+                    for (int neighbor : neighbors) {
+                        candidates.offer(neighbor, similarity(from, neighbor));
+                    }
+                    candidates.offer(to, similarity(from, to));
+                    updated = selectNeighbors(candidates, candidates.sort(), maxConnections);
+                }
+                node.neighbors.set(level, updated);
+            }
+        }
+
+        private int maxConnections(int level) {
+            return level == 0 ? 2 * m : m;
+        }
+
+        private float score(float[] normalizedQuery, int index) {
+            Node node = node(index);
+            return VectorMath.dot(normalizedQuery, node.vector) * node.inverseNorm;
+        }
+
+        private float similarity(int a, int b) {
+            Node nodeA = node(a);
+            Node nodeB = node(b);
+            return VectorMath.dot(nodeA.vector, nodeB.vector) * nodeA.inverseNorm * nodeB.inverseNorm;
+        }
+    }
+
+    /**
+     * The nodes visited by a search, reused across the searches of a thread: a node is visited when its mark equals
+     * the current generation, so clearing is O(1).
+     */
+    private static final class VisitedSet {
+
+        private int[] marks = new int[INITIAL_CAPACITY];
+        private int generation;
+
+        private void clear(int capacity) {
+            if (capacity > marks.length) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return whether the node was not visited yet.
+         */
+        private boolean visit(int node) {
+            if (node >= marks.length) {
+                // added by a concurrent insertion after the search started
+                marks = Arrays.copyOf(marks, Math.max(node + 1, marks.length * 2));
+            }
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    public static class Builder {
+
+        private Integer m;
+        private Integer efConstruction;
+        private Integer efSearch;
+        private Double compactionThreshold;
+        private Executor compactionExecutor;
+
+        /**
+         * The number of neighbours of a node per layer, twice as many on the bottom layer. Default: 16.
+         */
+        public Builder m(Integer m) {
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * The number of candidates considered when linking a new node. Default: 200.
+         */
+        public Builder efConstruction(Integer efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * The number of candidates considered by a search, raised to {@code maxResults} if lower. Default: 160.
+         * <p>
+         * Latency grows about linearly with it, recall with diminishing returns. On 20,000 random 64-dimensional
+         * vectors, with the other defaults and {@code maxResults} 10, the recall is 0.79 with 64, 0.93 with 128,
+         * 0.96 with 160 and 0.97 with 200, for a latency of 1.3, 1.9, 2.1 and 2.4 ms per search on one core.
+         * Real embeddings usually have a lower intrinsic dimension and reach a higher recall with the same value.
+         * See {@code HnswEmbeddingStoreBenchmark} in {@code llm-agent-benchmarks} to measure it on other data.
+         */
+        public Builder efSearch(Integer efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * The ratio of removed nodes above which the graph is rebuilt in the background. Default: 0.2.
+         */
+        public Builder compactionThreshold(Double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        /**
+         * The executor running the compactions. Default: {@link ExecutorUtil#defaultExecutor()}.
+         */
+        public Builder compactionExecutor(Executor compactionExecutor) {
+            this.compactionExecutor = compactionExecutor;
+            return this;
+        }
+
+        public HnswEmbeddingStore build() {
+            return new HnswEmbeddingStore(this);
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.llmagent.vector.store.inmemory;
+
+import com.llmagent.data.Metadata;
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.util.UUIDUtil;
+import com.llmagent.vector.math.VectorMath;
+import com.llmagent.vector.store.EmbeddingMatch;
+import com.llmagent.vector.store.EmbeddingSearchRequest;
+import com.llmagent.vector.store.EmbeddingSearchResult;
+import com.llmagent.vector.store.EmbeddingStore;
+import com.llmagent.vector.store.RelevanceScore;
+import com.llmagent.vector.store.VectorData;
+import com.llmagent.vector.store.filter.Filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * An {@link EmbeddingStore} keeping all embeddings in the memory of the JVM, for local development, tests and
+ * collections of up to a few million embeddings.
+ * <p>
+ * The vectors are stored in one contiguous row-major {@code float[]} matrix, so a search is a sequential scan of
+ * primitive memory with the {@link VectorMath} kernels, without boxing or pointer chasing. Large stores are scanned
+ * in parallel on the common fork-join pool, each task keeping its best matches in a bounded heap.
+ * The relevance score is derived from the cosine similarity, see {@link RelevanceScore#fromCosineSimilarity(double)}.
+ * <p>
+ * {@link EmbeddingSearchRequest#filter()} is tested against the {@link Metadata} of the {@link TextSegment}s,
+ * and {@link EmbeddingSearchRequest#filter4BizData()} against their business data. Embeddings added without a
+ * segment never match a filter.
+ * <p>
+ * The store can be {@link #save(Path) saved} to a binary snapshot and {@link #load(Path) loaded} back at startup,
+ * without embedding the segments again.
+ * <p>
+ * All embeddings must have the same dimension, set by the first one added. The store is thread-safe:
+ * searches run concurrently, updates are exclusive.
+ */
+public class InMemoryEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    private static final int SNAPSHOT_MAGIC = 0x4C414D53;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MIN_ROWS_PER_TASK = 8192;
+    private static final int COPY_CHUNK_FLOATS = 16384;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private int dimension;
+    private int size;
+    private float[] matrix = new float[0];
+    private float[] norms = new float[0];
+    private String[] ids = new String[0];
+    private TextSegment[] segments = new TextSegment[0];
+
+    @Override
+    public String add(VectorData embedding) {
+        String id = UUIDUtil.simpleUUID();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, VectorData embedding) {
+        addAll(Collections.singletonList(id), Collections.singletonList(embedding), null);
+    }
+
+    @Override
+    public String add(VectorData embedding, TextSegment segment) {
+        String id = UUIDUtil.simpleUUID();
+        addAll(Collections.singletonList(id), Collections.singletonList(embedding),
+                Collections.singletonList(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<VectorData> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<VectorData> embeddings, List<TextSegment> segments) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, segments);
+        return ids;
+    }
+
+    /**
+     * Adds embeddings, replacing the embeddings already stored with the same ids.
+     *
+     * @param segments the segments, or {@code null} to add the embeddings alone.
+     */
+    @Override
+    public void addAll(List<String> ids, List<VectorData> embeddings, List<TextSegment> segments) {
+        ensureNotNull(ids, "ids");
+        ensureNotNull(embeddings, "embeddings");
+        if (ids.size() != embeddings.size()) {
+            throw illegalArgument("The number of ids (%s) must be equal to the number of embeddings (%s)",
+                    ids.size(), embeddings.size());
+        }
+        if (segments != null && segments.size() != embeddings.size()) {
+            throw illegalArgument("The number of segments (%s) must be equal to the number of embeddings (%s)",
+                    segments.size(), embeddings.size());
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                put(ensureNotNull(ids.get(i), "id"), ensureNotNull(embeddings.get(i), "embedding").vector(),
+                        segments == null ? null : segments.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the rows of {@code other}, replacing the embeddings already stored with the same ids.
+     */
+    void addAll(InMemoryEmbeddingStore other) {
+        lock.writeLock().lock();
+        other.lock.readLock().lock();
+        try {
+            for (int row = 0; row < other.size; row++) {
+                int offset = row * other.dimension;
+                put(other.ids[row], Arrays.copyOfRange(other.matrix, offset, offset + other.dimension),
+                        other.segments[row]);
+            }
+        } finally {
+            other.lock.readLock().unlock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(String id, float[] vector, TextSegment segment) {
+        if (dimension == 0) {
+            dimension = dimensionOf(vector);
+        } else if (vector.length != dimension) {
+            throw illegalArgument("The embedding %s has %s dimensions, but the store has %s", id, vector.length, dimension);
+        }
+        Integer existing = rowsById.get(id);
+        int row;
+        if (existing != null) {
+            row = existing;
+        } else {
+            ensureCapacity(size + 1);
+            row = size++;
+            rowsById.put(id, row);
+        }
+        System.arraycopy(vector, 0, matrix, row * dimension, dimension);
+        norms[row] = VectorMath.norm(vector);
+        ids[row] = id;
+        segments[row] = segment;
+    }
+
+    private static int dimensionOf(float[] vector) {
+        if (vector.length == 0) {
+            throw illegalArgument("The embeddings must have at least one dimension");
+        }
+        return vector.length;
+    }
+
+    private void ensureCapacity(int rows) {
+        // the dimension changes when the store is emptied and refilled
+        if (rows <= ids.length && (long) rows * dimension <= matrix.length) {
+            return;
+        }
+        int capacity = Math.max(rows, Math.max(INITIAL_CAPACITY, ids.length * 2));
+        if ((long) capacity * dimension > Integer.MAX_VALUE - 8) {
+            capacity = Math.max(rows, (Integer.MAX_VALUE - 8) / dimension);
+            if ((long) capacity * dimension > Integer.MAX_VALUE - 8) {
+                throw illegalArgument("The store cannot hold more than %s embeddings of %s dimensions",
+                        (Integer.MAX_VALUE - 8) / dimension, dimension);
+            }
+        }
+        matrix = Arrays.copyOf(matrix, capacity * dimension);
+        norms = Arrays.copyOf(norms, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        segments = Arrays.copyOf(segments, capacity);
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        ensureNotEmpty(ids, "ids");
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer row = rowsById.get(id);
+                if (row != null) {
+                    removeRow(row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        ensureNotNull(filter, "filter");
+        lock.writeLock().lock();
+        try {
+            // iterate backward: removing a row moves the last row into its place
+            for (int row = size - 1; row >= 0; row--) {
+                if (matches(segments[row], filter, null)) {
+                    removeRow(row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            rowsById.clear();
+            matrix = new float[0];
+            norms = new float[0];
+            ids = new String[0];
+            segments = new TextSegment[0];
+            size = 0;
+            dimension = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a row by moving the last row into its place, which keeps the matrix contiguous.
+     */
+    private void removeRow(int row) {
+        int last = size - 1;
+        rowsById.remove(ids[row]);
+        if (row != last) {
+            System.arraycopy(matrix, last * dimension, matrix, row * dimension, dimension);
+            norms[row] = norms[last];
+            ids[row] = ids[last];
+            segments[row] = segments[last];
+            rowsById.put(ids[row], row);
+        }
+        ids[last] = null;
+        segments[last] = null;
+        size = last;
+        if (size == 0) {
+            dimension = 0;
+        }
+    }
+
+    /**
+     * @return the number of embeddings in the store.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every embedding to {@code consumer}, e.g. to write them to a segment file, without copying the matrix.
+     */
+    void forEachRow(RowConsumer consumer) throws IOException {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                consumer.accept(ids[row], matrix, row * dimension, segments[row]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    interface RowConsumer {
+
+        /**
+         * @param vectors the matrix holding the vector.
+         * @param offset  the offset of the vector in the matrix.
+         */
+        void accept(String id, float[] vectors, int offset, TextSegment segment) throws IOException;
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        ensureNotNull(request, "request");
+        float[] query = request.queryEmbedding().vector();
+        int maxResults = request.maxResults();
+        // relevance = (cosine + 1) / 2
+        float minCosine = (float) (2 * request.minScore() - 1);
+        Filter filter = request.filter();
+        Filter bizDataFilter = request.filter4BizData();
+
+        lock.readLock().lock();
+        try {
+            if (size == 0 || maxResults <= 0) {
+                return new EmbeddingSearchResult<>(new ArrayList<>());
+            }
+            if (query.length != dimension) {
+                throw illegalArgument("The query embedding has %s dimensions, but the store has %s",
+                        query.length, dimension);
+            }
+            float queryNorm = VectorMath.norm(query);
+            int tasks = Math.min(ForkJoinPool.getCommonPoolParallelism(), size / MIN_ROWS_PER_TASK);
+            TopKCollector best;
+            if (tasks <= 1) {
+                best = scan(query, queryNorm, 0, size, maxResults, minCosine, filter, bizDataFilter);
+            } else {
+                // the tasks only read, the calling thread holds the read lock until they are all done
+                int rowsPerTask = (size + tasks - 1) / tasks;
+                best = IntStream.range(0, tasks)
+                        .parallel()
+                        .mapToObj(task -> scan(query, queryNorm, task * rowsPerTask,
+                                Math.min(size, (task + 1) * rowsPerTask), maxResults, minCosine, filter, bizDataFilter))
+                        .reduce(TopKCollector::merge)
+                        .orElseThrow();
+            }
+
+            int count = best.sort();
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int row = best.row(i);
+                float[] vector = Arrays.copyOfRange(matrix, row * dimension, (row + 1) * dimension);
+                matches.add(new EmbeddingMatch<>(RelevanceScore.fromCosineSimilarity(best.score(i)),
+                        ids[row], new VectorData(vector), segments[row]));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private TopKCollector scan(float[] query, float queryNorm, int from, int to, int maxResults, float minCosine,
+                               Filter filter, Filter bizDataFilter) {
+        TopKCollector best = new TopKCollector(maxResults);
+        for (int row = from; row < to; row++) {
+            if ((filter != null || bizDataFilter != null) && !matches(segments[row], filter, bizDataFilter)) {
+                continue;
+            }
+            float norm = queryNorm * norms[row];
+            float cosine = norm == 0 ? 0 : VectorMath.dot(query, 0, matrix, row * dimension, dimension) / norm;
+            if (cosine >= minCosine && best.accepts(cosine)) {
+                best.offer(row, cosine);
+            }
+        }
+        return best;
+    }
+
+    private static boolean matches(TextSegment segment, Filter filter, Filter bizDataFilter) {
+        if (segment == null) {
+            return false;
+        }
+        return (filter == null || filter.test(segment.metadata()))
+                && (bizDataFilter == null || bizDataFilter.test(segment.bizData()));
+    }
+
+    private static List<String> generateIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUIDUtil.simpleUUID());
+        }
+        return ids;
+    }
+
+    /**
+     * Saves the store to a binary snapshot: the matrix, in bulk, followed by the ids and segments.
+     * The snapshot is written to a temporary file that is synced and then atomically moved to {@code file},
+     * and the directory is synced after the move, so a crash never leaves a partially written snapshot behind.
+     *
+     * @param file the snapshot file, replaced if it exists.
+     */
+    public void save(Path file) {
+        ensureNotNull(file, "file");
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = null;
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                writeSnapshot(out);
+            }
+            // without it, the rename may reach the disk before the data and a crash leaves an empty snapshot
+            VectorSegment.sync(temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            VectorSegment.syncDirectory(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save embedding store to " + file, e);
+        } finally {
+            lock.readLock().unlock();
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // the temporary file is left behind, it does not affect the snapshot
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a store from a snapshot written by {@link #save(Path)}.
+     *
+     * @param file the snapshot file.
+     * @return a new store.
+     */
+    public static InMemoryEmbeddingStore load(Path file) {
+        ensureNotNull(file, "file");
+        InMemoryEmbeddingStore store = new InMemoryEmbeddingStore();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            store.readSnapshot(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load embedding store from " + file, e);
+        }
+        return store;
+    }
+
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeInt(dimension);
+        out.writeInt(size);
+
+        byte[] chunk = new byte[COPY_CHUNK_FLOATS * Float.BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        int floats = size * dimension;
+        for (int offset = 0; offset < floats; offset += COPY_CHUNK_FLOATS) {
+            int length = Math.min(COPY_CHUNK_FLOATS, floats - offset);
+            buffer.asFloatBuffer().put(matrix, offset, length);
+            out.write(chunk, 0, length * Float.BYTES);
+        }
+
+        for (int row = 0; row < size; row++) {
+            BinaryCodec.writeString(out, ids[row]);
+            BinaryCodec.writeSegment(out, segments[row]);
+        }
+    }
+
+    private void readSnapshot(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not an embedding store snapshot");
+        }
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported embedding store snapshot version: " + version);
+        }
+        int dimension = in.readInt();
+        int size = in.readInt();
+        if (dimension < 0 || size < 0 || (size > 0 && dimension == 0)) {
+            throw new IOException("Corrupted embedding store snapshot");
+        }
+
+        this.dimension = dimension;
+        ensureCapacity(size);
+        byte[] chunk = new byte[COPY_CHUNK_FLOATS * Float.BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        int floats = size * dimension;
+        for (int offset = 0; offset < floats; offset += COPY_CHUNK_FLOATS) {
+            int length = Math.min(COPY_CHUNK_FLOATS, floats - offset);
+            in.readFully(chunk, 0, length * Float.BYTES);
+            buffer.asFloatBuffer().get(matrix, offset, length);
+        }
+
+        for (int row = 0; row < size; row++) {
+            norms[row] = (float) Math.sqrt(VectorMath.dot(matrix, row * dimension, matrix, row * dimension, dimension));
+            ids[row] = BinaryCodec.readString(in);
+            segments[row] = BinaryCodec.readSegment(in, true);
+            rowsById.put(ids[row], row);
+        }
+        this.size = size;
+    }
+}
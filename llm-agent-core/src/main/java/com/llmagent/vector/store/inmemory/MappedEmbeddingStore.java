@@ -0,0 +1,780 @@
+package com.llmagent.vector.store.inmemory;
+
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.util.UUIDUtil;
+import com.llmagent.vector.math.VectorMath;
+import com.llmagent.vector.quantization.BinaryQuantizer;
+import com.llmagent.vector.quantization.VectorQuantization;
+import com.llmagent.vector.store.EmbeddingMatch;
+import com.llmagent.vector.store.EmbeddingSearchRequest;
+import com.llmagent.vector.store.EmbeddingSearchResult;
+import com.llmagent.vector.store.EmbeddingStore;
+import com.llmagent.vector.store.RelevanceScore;
+import com.llmagent.vector.store.VectorData;
+import com.llmagent.vector.store.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * An {@link EmbeddingStore} keeping its embeddings in memory-mapped segment files of a local directory, for corpora
+ * too large for the Java heap.
+ * <p>
+ * Added embeddings are buffered in an {@link InMemoryEmbeddingStore} and written to a new immutable segment file
+ * by {@link #commit()}, which runs automatically once {@code maxBufferedEmbeddings} are buffered. Searches scan the
+ * buffer and the mapped segments: vectors are read by the OS from the page cache, not copied to the heap, and only
+ * the records of the best matches are decoded. Opening a store maps its segments without reading them, so startup
+ * time does not depend on the size of the corpus.
+ * <p>
+ * Removed embeddings are marked in a bitset per segment, persisted in a deletion file at each commit. When there are
+ * more than {@code maxSegments} segments, the smallest ones are merged into one, dropping the removed embeddings.
+ * <p>
+ * A commit is crash-safe: new files are synced before a commit marker, {@code commit-<generation>}, lists the files
+ * of the commit, and the marker itself is written to a temporary file that is then atomically moved. On startup the
+ * latest valid commit is loaded, and the files of an interrupted commit are deleted. Embeddings that were not
+ * committed are lost.
+ * <p>
+ * With a {@link VectorQuantization quantization}, segments also hold compact codes of their vectors. Searches scan
+ * the codes, a fraction of the size of the vectors, to select {@code rescoreFactor} times more candidates than
+ * requested, then re-score the candidates with their full precision vectors: only the codes need to stay in the page
+ * cache. Segments are written with the quantization of the store, and re-encoded when merged, so it can be changed
+ * when the store is reopened.
+ * <p>
+ * Ids are not deduplicated: remove an id before adding it again. A directory must only be opened by one store at
+ * a time.
+ * <p>
+ * {@link EmbeddingSearchRequest#filter()} and {@link EmbeddingSearchRequest#filter4BizData()} are supported,
+ * the relevance score is derived from the cosine similarity, see {@link RelevanceScore#fromCosineSimilarity(double)}.
+ */
+public class MappedEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedEmbeddingStore.class);
+
+    private static final int DEFAULT_MAX_BUFFERED_EMBEDDINGS = 10_000;
+    private static final int DEFAULT_MAX_SEGMENTS = 10;
+    private static final int DEFAULT_RESCORE_FACTOR = 4;
+    private static final int COMMIT_MAGIC = 0x4C414D43;
+    private static final int COMMIT_VERSION = 1;
+    private static final String COMMIT_PREFIX = "commit-";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String DELETIONS_EXTENSION = ".del";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final Pattern COMMIT_FILE = Pattern.compile(COMMIT_PREFIX + "(\\d+)");
+
+    private final Path directory;
+    private final int maxBufferedEmbeddings;
+    private final int maxSegments;
+    private final VectorQuantization quantization;
+    private final int rescoreFactor;
+
+    // searches and updates, commits only lock exclusively to swap in their result
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // commits, merges and removals, which read the segments before updating them
+    private final Object commitLock = new Object();
+    private InMemoryEmbeddingStore buffer = new InMemoryEmbeddingStore();
+    // the previous buffer while a commit writes it, still searched
+    private InMemoryEmbeddingStore flushing;
+    private List<VectorSegment> segments = new ArrayList<>();
+    private long generation;
+    private int dimension;
+
+    private MappedEmbeddingStore(Builder builder) {
+        this.directory = ensureNotNull(builder.directory, "directory");
+        this.maxBufferedEmbeddings = ensureGreaterThanZero(
+                getOrDefault(builder.maxBufferedEmbeddings, DEFAULT_MAX_BUFFERED_EMBEDDINGS), "maxBufferedEmbeddings");
+        this.maxSegments = ensureGreaterThanZero(getOrDefault(builder.maxSegments, DEFAULT_MAX_SEGMENTS), "maxSegments");
+        this.quantization = getOrDefault(builder.quantization, VectorQuantization.NONE);
+        this.rescoreFactor = ensureGreaterThanZero(
+                getOrDefault(builder.rescoreFactor, DEFAULT_RESCORE_FACTOR), "rescoreFactor");
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open embedding store " + directory, e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String add(VectorData embedding) {
+        String id = UUIDUtil.simpleUUID();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, VectorData embedding) {
+        addAll(Collections.singletonList(id), Collections.singletonList(embedding), null);
+    }
+
+    @Override
+    public String add(VectorData embedding, TextSegment segment) {
+        String id = UUIDUtil.simpleUUID();
+        addAll(Collections.singletonList(id), Collections.singletonList(embedding),
+                Collections.singletonList(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<VectorData> embeddings) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<VectorData> embeddings, List<TextSegment> segments) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(ids, embeddings, segments);
+        return ids;
+    }
+
+    /**
+     * Buffers embeddings, committing them once {@code maxBufferedEmbeddings} are buffered.
+     *
+     * @param segments the segments, or {@code null} to add the embeddings alone.
+     */
+    @Override
+    public void addAll(List<String> ids, List<VectorData> embeddings, List<TextSegment> segments) {
+        ensureNotNull(embeddings, "embeddings");
+        boolean full;
+        lock.writeLock().lock();
+        try {
+            // the dimension of an empty store is only set once the buffer accepted the embeddings
+            int expectedDimension = dimension;
+            for (VectorData embedding : embeddings) {
+                int length = ensureNotNull(embedding, "embedding").dimension();
+                if (expectedDimension == 0) {
+                    expectedDimension = length;
+                } else if (length != expectedDimension) {
+                    throw illegalArgument("The embedding has %s dimensions, but the store has %s",
+                            length, expectedDimension);
+                }
+            }
+            buffer.addAll(ids, embeddings, segments);
+            dimension = expectedDimension;
+            full = buffer.size() >= maxBufferedEmbeddings;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full) {
+            commit();
+        }
+    }
+
+    /**
+     * Removes the embeddings with the given ids. Each segment indexes its ids on the first removal by id,
+     * so that later removals only decode the ids of a few rows.
+     */
+    @Override
+    public void removeAll(Collection<String> ids) {
+        ensureNotEmpty(ids, "ids");
+        Set<String> targets = new HashSet<>(ids);
+        removeRows((segment, rows) -> {
+            for (String id : targets) {
+                segment.forEachRowWithId(id, rows);
+            }
+        }, () -> buffer.removeAll(ids));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        ensureNotNull(filter, "filter");
+        removeRows((segment, rows) -> {
+            for (int index = 0; index < segment.count(); index++) {
+                if (!segment.isDeleted(index) && matches(segment.segment(index, false), filter, null)) {
+                    rows.accept(index);
+                }
+            }
+        }, () -> buffer.removeAll(filter));
+    }
+
+    private void removeRows(RowFinder finder, Runnable bufferRemoval) {
+        synchronized (commitLock) {
+            // find the rows without blocking searches, the segments cannot change while the commit lock is held
+            List<Row> rows = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (VectorSegment segment : segments) {
+                    finder.find(segment, index -> {
+                        if (!segment.isDeleted(index)) {
+                            rows.add(new Row(segment, index));
+                        }
+                    });
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            lock.writeLock().lock();
+            try {
+                for (Row row : rows) {
+                    row.segment.delete(row.index);
+                }
+                bufferRemoval.run();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes all embeddings, and commits.
+     */
+    @Override
+    public void removeAll() {
+        synchronized (commitLock) {
+            lock.writeLock().lock();
+            try {
+                writeCommit(Collections.emptyList());
+                segments = new ArrayList<>();
+                buffer.removeAll();
+                dimension = 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to commit embedding store " + directory, e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            deleteUnreferencedFiles();
+        }
+    }
+
+    /**
+     * @return the number of embeddings in the store, buffered ones included.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = buffer.size() + (flushing != null ? flushing.size() : 0);
+            for (VectorSegment segment : segments) {
+                size += segment.liveCount();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        ensureNotNull(request, "request");
+        int maxResults = request.maxResults();
+        Filter filter = request.filter();
+        Filter bizDataFilter = request.filter4BizData();
+        // relevance = (cosine + 1) / 2
+        float minCosine = (float) (2 * request.minScore() - 1);
+
+        lock.readLock().lock();
+        try {
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+            if (maxResults <= 0 || dimension == 0) {
+                return new EmbeddingSearchResult<>(matches);
+            }
+            float[] query = request.queryEmbedding().vector();
+            if (query.length != dimension) {
+                throw illegalArgument("The query embedding has %s dimensions, but the store has %s",
+                        query.length, dimension);
+            }
+            if (buffer.size() > 0) {
+                matches.addAll(buffer.search(request).matches());
+            }
+            if (flushing != null) {
+                matches.addAll(flushing.search(request).matches());
+            }
+            float[] normalizedQuery = VectorMath.normalize(query.clone());
+            long[] queryBits = BinaryQuantizer.quantize(query);
+            for (VectorSegment segment : segments) {
+                TopKCollector best = segment.quantization() == VectorQuantization.NONE
+                        ? scan(segment, normalizedQuery, maxResults, minCosine, filter, bizDataFilter)
+                        : scanCodes(segment, normalizedQuery, queryBits, maxResults, minCosine, filter, bizDataFilter);
+                int count = best.sort();
+                for (int i = 0; i < count; i++) {
+                    int row = best.row(i);
+                    matches.add(new EmbeddingMatch<>(RelevanceScore.fromCosineSimilarity(best.score(i)),
+                            segment.id(row), new VectorData(segment.vector(row)), segment.segment(row, true)));
+                }
+            }
+            matches.sort(Comparator.comparing(EmbeddingMatch<TextSegment>::score).reversed());
+            return new EmbeddingSearchResult<>(new ArrayList<>(matches.subList(0, Math.min(maxResults, matches.size()))));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static TopKCollector scan(VectorSegment segment, float[] normalizedQuery, int maxResults,
+                                      float minCosine, Filter filter, Filter bizDataFilter) {
+        TopKCollector best = new TopKCollector(maxResults);
+        for (int row = 0; row < segment.count(); row++) {
+            if (segment.isDeleted(row)) {
+                continue;
+            }
+            float cosine = segment.cosine(normalizedQuery, row);
+            // decode the metadata of the candidates only
+            if (cosine >= minCosine && best.accepts(cosine)
+                    && (filter == null && bizDataFilter == null
+                    || matches(segment.segment(row, false), filter, bizDataFilter))) {
+                best.offer(row, cosine);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Selects candidates from the codes of a segment, then re-scores them with their full precision vectors. The
+     * minimum score only applies to the exact scores, as the estimates can be lower.
+     */
+    private TopKCollector scanCodes(VectorSegment segment, float[] normalizedQuery, long[] queryBits, int maxResults,
+                                    float minCosine, Filter filter, Filter bizDataFilter) {
+        TopKCollector candidates = new TopKCollector((int) Math.min((long) maxResults * rescoreFactor, segment.count()));
+        for (int row = 0; row < segment.count(); row++) {
+            if (segment.isDeleted(row)) {
+                continue;
+            }
+            float estimate = segment.approximateCosine(normalizedQuery, queryBits, row);
+            if (candidates.accepts(estimate)
+                    && (filter == null && bizDataFilter == null
+                    || matches(segment.segment(row, false), filter, bizDataFilter))) {
+                candidates.offer(row, estimate);
+            }
+        }
+        int count = candidates.sort();
+        TopKCollector best = new TopKCollector(maxResults);
+        for (int i = 0; i < count; i++) {
+            int row = candidates.row(i);
+            float cosine = segment.cosine(normalizedQuery, row);
+            if (cosine >= minCosine) {
+                best.offer(row, cosine);
+            }
+        }
+        return best;
+    }
+
+    private static boolean matches(TextSegment segment, Filter filter, Filter bizDataFilter) {
+        if (segment == null) {
+            return false;
+        }
+        return (filter == null || filter.test(segment.metadata()))
+                && (bizDataFilter == null || bizDataFilter.test(segment.bizData()));
+    }
+
+    /**
+     * Writes the buffered embeddings to a new segment and the removals to deletion files, then atomically
+     * publishes them in a new commit. Merges segments if there are more than {@code maxSegments}.
+     * <p>
+     * The segment is written and synced without blocking searches and adds: the buffer is swapped for an empty
+     * one, and searched until the new segment replaces it. Removals wait for the commit.
+     */
+    public void commit() {
+        synchronized (commitLock) {
+            InMemoryEmbeddingStore flushed;
+            int flushedDimension;
+            lock.writeLock().lock();
+            try {
+                boolean deletionsChanged = segments.stream().anyMatch(VectorSegment::deletionsChanged);
+                if (buffer.size() == 0 && !deletionsChanged) {
+                    return;
+                }
+                flushed = buffer.size() > 0 ? buffer : null;
+                if (flushed != null) {
+                    flushing = flushed;
+                    buffer = new InMemoryEmbeddingStore();
+                }
+                flushedDimension = dimension;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                VectorSegment added = null;
+                if (flushed != null) {
+                    String name = SEGMENT_PREFIX + (generation + 1);
+                    try (VectorSegment.Writer writer = new VectorSegment.Writer(directory, name, flushedDimension,
+                            flushed.size(), quantization)) {
+                        flushed.forEachRow(writer::add);
+                        writer.finish();
+                    }
+                    added = VectorSegment.open(directory, name);
+                }
+                lock.writeLock().lock();
+                try {
+                    List<VectorSegment> committed = new ArrayList<>(segments);
+                    if (added != null) {
+                        committed.add(added);
+                    }
+                    writeCommit(committed);
+                    segments = committed;
+                    flushing = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (IOException e) {
+                if (flushed != null) {
+                    restoreBuffer(flushed);
+                }
+                throw new UncheckedIOException("Failed to commit embedding store " + directory, e);
+            }
+            deleteUnreferencedFiles();
+            if (segments.size() > maxSegments) {
+                List<VectorSegment> smallest = new ArrayList<>(segments);
+                smallest.sort(Comparator.comparingInt(VectorSegment::liveCount));
+                merge(smallest.subList(0, segments.size() - maxSegments + 1));
+            }
+        }
+    }
+
+    /**
+     * Makes the buffer of a failed commit the buffer again, followed by the embeddings added during the commit.
+     */
+    private void restoreBuffer(InMemoryEmbeddingStore flushed) {
+        lock.writeLock().lock();
+        try {
+            flushed.addAll(buffer);
+            buffer = flushed;
+            flushing = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Commits, then merges all segments into one, dropping the removed embeddings.
+     */
+    public void merge() {
+        synchronized (commitLock) {
+            commit();
+            if (segments.size() > 1 || segments.size() == 1 && segments.get(0).liveCount() < segments.get(0).count()) {
+                merge(new ArrayList<>(segments));
+            }
+        }
+    }
+
+    private void merge(List<VectorSegment> sources) {
+        // the commit lock is held: sources cannot be swapped out, but rows can still be removed
+        List<long[]> deletedAtStart = new ArrayList<>(sources.size());
+        int liveCount = 0;
+        lock.readLock().lock();
+        try {
+            for (VectorSegment source : sources) {
+                deletedAtStart.add(source.deletedSnapshot());
+                liveCount += source.liveCount();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            VectorSegment merged = null;
+            if (liveCount > 0) {
+                String name = SEGMENT_PREFIX + (generation + 1);
+                try (VectorSegment.Writer writer = new VectorSegment.Writer(directory, name, dimension, liveCount,
+                        quantization)) {
+                    for (int s = 0; s < sources.size(); s++) {
+                        VectorSegment source = sources.get(s);
+                        for (int row = 0; row < source.count(); row++) {
+                            if (!VectorSegment.isDeleted(deletedAtStart.get(s), row)) {
+                                writer.add(source.vector(row), 0, source.norm(row), source.recordBytes(row));
+                            }
+                        }
+                    }
+                    writer.finish();
+                }
+                merged = VectorSegment.open(directory, name);
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (merged != null) {
+                    // carry over the rows removed during the merge
+                    int mergedRow = 0;
+                    for (int s = 0; s < sources.size(); s++) {
+                        VectorSegment source = sources.get(s);
+                        for (int row = 0; row < source.count(); row++) {
+                            if (!VectorSegment.isDeleted(deletedAtStart.get(s), row)) {
+                                if (source.isDeleted(row)) {
+                                    merged.delete(mergedRow);
+                                }
+                                mergedRow++;
+                            }
+                        }
+                    }
+                }
+                List<VectorSegment> committed = new ArrayList<>(segments);
+                committed.removeAll(sources);
+                if (merged != null) {
+                    committed.add(merged);
+                }
+                writeCommit(committed);
+                segments = committed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to merge segments of embedding store " + directory, e);
+        }
+        deleteUnreferencedFiles();
+        log.debug("Merged {} segments of {} into one of {} embeddings", sources.size(), directory, liveCount);
+    }
+
+    /**
+     * Commits the buffered embeddings.
+     */
+    @Override
+    public void close() {
+        commit();
+    }
+
+    /**
+     * Writes the changed deletions, then the commit marker of a new generation listing the segments.
+     * Must be called with the write lock held.
+     */
+    private void writeCommit(List<VectorSegment> committed) throws IOException {
+        long next = generation + 1;
+        for (VectorSegment segment : committed) {
+            if (segment.deletionsChanged()) {
+                segment.writeDeletions(directory, segment.name() + "_" + next + DELETIONS_EXTENSION);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(COMMIT_MAGIC);
+        out.writeInt(COMMIT_VERSION);
+        out.writeLong(next);
+        out.writeInt(committed.isEmpty() ? 0 : dimension);
+        out.writeInt(committed.size());
+        for (VectorSegment segment : committed) {
+            BinaryCodec.writeString(out, segment.name());
+            BinaryCodec.writeString(out, segment.deletionFile());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+
+        Path file = directory.resolve(COMMIT_PREFIX + next);
+        Path temp = directory.resolve(COMMIT_PREFIX + next + TEMP_EXTENSION);
+        Files.write(temp, bytes.toByteArray());
+        VectorSegment.sync(temp);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        VectorSegment.syncDirectory(directory);
+        generation = next;
+    }
+
+    /**
+     * Loads the latest valid commit. Fails if there are commits but none of them is valid, rather than opening
+     * an empty store and deleting the files of the unreadable commits.
+     */
+    private void recover() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, COMMIT_PREFIX + "*")) {
+            for (Path file : files) {
+                Matcher matcher = COMMIT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    generations.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        generations.sort(Comparator.reverseOrder());
+        IOException failure = null;
+        for (long candidate : generations) {
+            try {
+                readCommit(candidate);
+                failure = null;
+                break;
+            } catch (IOException e) {
+                log.warn("Ignoring invalid commit {} of embedding store {}", candidate, directory, e);
+                if (failure == null) {
+                    failure = new IOException("None of the " + generations.size() + " commits is valid", e);
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        // including the invalid commits, whose generations are reused
+        deleteUnreferencedFiles();
+    }
+
+    private void readCommit(long candidate) throws IOException {
+        byte[] bytes = Files.readAllBytes(directory.resolve(COMMIT_PREFIX + candidate));
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("Truncated commit");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != COMMIT_MAGIC || in.readInt() != COMMIT_VERSION) {
+            throw new IOException("Not a commit of a supported version");
+        }
+        long commitGeneration = in.readLong();
+        int commitDimension = in.readInt();
+        int count = in.readInt();
+        List<VectorSegment> committed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = BinaryCodec.readString(in);
+            String deletionFile = BinaryCodec.readString(in);
+            VectorSegment segment = VectorSegment.open(directory, name);
+            if (segment.dimension() != commitDimension) {
+                throw new IOException("Segment " + name + " has " + segment.dimension() + " dimensions");
+            }
+            if (deletionFile != null) {
+                segment.readDeletions(directory, deletionFile);
+            }
+            committed.add(segment);
+        }
+        if (in.readLong() != crc.getValue()) {
+            throw new IOException("Corrupted commit");
+        }
+        this.segments = committed;
+        this.generation = commitGeneration;
+        this.dimension = commitDimension;
+    }
+
+    /**
+     * Deletes the files that the current commit does not reference: previous commits, merged segments,
+     * outdated deletion files and leftovers of interrupted commits.
+     */
+    private void deleteUnreferencedFiles() {
+        Set<String> referenced = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            referenced.add(COMMIT_PREFIX + generation);
+            for (VectorSegment segment : segments) {
+                referenced.add(segment.name() + VectorSegment.EXTENSION);
+                if (segment.deletionFile() != null) {
+                    referenced.add(segment.deletionFile());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean owned = name.startsWith(COMMIT_PREFIX) || name.startsWith(SEGMENT_PREFIX);
+                if (owned && !referenced.contains(name)) {
+                    try {
+                        // segments still mapped are deleted once unmapped, except on Windows
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        log.debug("Failed to delete {}, it will be deleted by a later commit", file, e);
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            log.warn("The directory of embedding store {} was deleted", directory);
+        } catch (IOException e) {
+            log.warn("Failed to list the files of embedding store {}", directory, e);
+        }
+    }
+
+    private static List<String> generateIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUIDUtil.simpleUUID());
+        }
+        return ids;
+    }
+
+    private record Row(VectorSegment segment, int index) {
+    }
+
+    private interface RowFinder {
+
+        /**
+         * Passes the rows of {@code segment} to remove to {@code rows}, removed ones may be included.
+         */
+        void find(VectorSegment segment, IntConsumer rows);
+    }
+
+    public static class Builder {
+
+        private Path directory;
+        private Integer maxBufferedEmbeddings;
+        private Integer maxSegments;
+        private VectorQuantization quantization;
+        private Integer rescoreFactor;
+
+        /**
+         * The directory of the segment files, created if it does not exist.
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * The number of buffered embeddings that triggers a commit. Default: 10000.
+         */
+        public Builder maxBufferedEmbeddings(Integer maxBufferedEmbeddings) {
+            this.maxBufferedEmbeddings = maxBufferedEmbeddings;
+            return this;
+        }
+
+        /**
+         * The number of segments above which the smallest ones are merged. Default: 10.
+         */
+        public Builder maxSegments(Integer maxSegments) {
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * The codes of the vectors scanned by searches, written to new segments. Default: {@link VectorQuantization#NONE}.
+         */
+        public Builder quantization(VectorQuantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        /**
+         * With a quantization, the number of candidates selected from the codes and re-scored, per requested result.
+         * Higher factors improve the recall of coarse codes, e.g. {@link VectorQuantization#BINARY}. Default: 4.
+         */
+        public Builder rescoreFactor(Integer rescoreFactor) {
+            this.rescoreFactor = rescoreFactor;
+            return this;
+        }
+
+        public MappedEmbeddingStore build() {
+            return new MappedEmbeddingStore(this);
+        }
+    }
+}
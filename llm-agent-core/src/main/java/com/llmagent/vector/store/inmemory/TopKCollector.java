@@ -0,0 +1,117 @@
+package com.llmagent.vector.store.inmemory;
+
+/**
+ * Collects the {@code k} best (row, score) pairs offered to it, in a bounded primitive min-heap:
+ * the root is the lowest of the best scores so far, so a candidate is rejected in O(1) once the heap is full.
+ * <p>
+ * Not thread-safe: parallel scans use one collector per task and {@link #merge(TopKCollector) merge} them.
+ */
+final class TopKCollector {
+
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    TopKCollector(int k) {
+        this.rows = new int[k];
+        this.scores = new float[k];
+    }
+
+    /**
+     * @return whether a candidate with this score would currently be kept.
+     */
+    boolean accepts(float score) {
+        return size < rows.length || score > scores[0];
+    }
+
+    void offer(int row, float score) {
+        if (size < rows.length) {
+            rows[size] = row;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            rows[0] = row;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * @return the lowest score kept, or negative infinity while fewer than {@code k} pairs are kept.
+     */
+    float threshold() {
+        return size < rows.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    TopKCollector merge(TopKCollector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.rows[i], other.scores[i]);
+        }
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the kept pairs by descending score, which empties the heap: read them with {@link #row(int)}
+     * and {@link #score(int)} afterward, and do not offer anything else.
+     *
+     * @return the number of pairs.
+     */
+    int sort() {
+        int count = size;
+        // pop the lowest scores to the end
+        for (int end = count - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        size = 0;
+        return count;
+    }
+
+    int row(int index) {
+        return rows[index];
+    }
+
+    float score(int index) {
+        return scores[index];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                break;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int size) {
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && scores[right] < scores[child]) {
+                child = right;
+            }
+            if (scores[index] <= scores[child]) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
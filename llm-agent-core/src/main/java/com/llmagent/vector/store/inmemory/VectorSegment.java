@@ -0,0 +1,662 @@
+package com.llmagent.vector.store.inmemory;
+
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.vector.math.VectorMath;
+import com.llmagent.vector.quantization.BinaryQuantizer;
+import com.llmagent.vector.quantization.ScalarQuantizer;
+import com.llmagent.vector.quantization.VectorQuantization;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable segment file of {@link MappedEmbeddingStore}, memory-mapped rather than loaded on the heap.
+ * <p>
+ * Layout, little-endian:
+ * <pre>
+ * header   magic, version, dimension, count (4 ints), then the offsets of the sections, the records length and the
+ *          offset of the codes, 0 if none (6 longs)
+ * vectors  count * dimension floats, row-major
+ * norms    count floats
+ * codes    optional, the type of the codes and a reserved int, then
+ *          for {@link VectorQuantization#INT8}: count floats, the scales, then count * dimension bytes, 8-aligned
+ *          for {@link VectorQuantization#BINARY}: count * {@link BinaryQuantizer#words(int) words(dimension)} longs
+ * offsets  count + 1 longs, the start of each record relative to the records section
+ * records  per row: the id and the {@link TextSegment}, see {@link BinaryCodec}
+ * </pre>
+ * The file is only written by {@link Writer} and never modified afterward. Removed rows are tracked in an in-heap
+ * bitset, persisted by the store in a separate deletion file.
+ * <p>
+ * A mapping cannot exceed 2 GB, so the vectors and the records are mapped in windows. Record windows overlap, so that
+ * a record is almost always read from a single window.
+ */
+final class VectorSegment {
+
+    static final String EXTENSION = ".seg";
+    static final int MAX_ROWS = Integer.MAX_VALUE / Long.BYTES - 1;
+
+    private static final int MAGIC = 0x4C415653;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final long WINDOW_BYTES = 1L << 30;
+    private static final long RECORD_WINDOW_OVERLAP = 1L << 24;
+    private static final int DELETIONS_MAGIC = 0x4C415644;
+    private static final int INT8_CODES = 1;
+    private static final int BINARY_CODES = 2;
+    private static final long ID_KEY_MASK = 0xFFFFFFFF00000000L;
+
+    private final String name;
+    private final Path file;
+    private final int dimension;
+    private final int count;
+    private final int rowsPerWindow;
+    private final FloatBuffer[] vectorWindows;
+    private final FloatBuffer norms;
+    private final LongBuffer offsets;
+    private final long recordsOffset;
+    private final ByteBuffer[] recordWindows;
+    private final VectorQuantization quantization;
+    private final int codeRowsPerWindow;
+    private final FloatBuffer scales;
+    private final ByteBuffer[] int8Windows;
+    private final LongBuffer[] binaryWindows;
+
+    // guarded by the lock of the store
+    private final long[] deleted;
+    private int deletedCount;
+
+    // guarded by the commit lock of the store, built by the first lookup by id
+    private long[] idIndex;
+    private String deletionFile;
+    private boolean deletionsChanged;
+
+    private VectorSegment(String name, Path file, FileChannel channel) throws IOException {
+        this.name = name;
+        this.file = file;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Truncated segment file " + file);
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a segment file: " + file);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported segment file version " + version + ": " + file);
+        }
+        this.dimension = header.getInt();
+        this.count = header.getInt();
+        long vectorsOffset = header.getLong();
+        long normsOffset = header.getLong();
+        long offsetsOffset = header.getLong();
+        this.recordsOffset = header.getLong();
+        long recordsLength = header.getLong();
+        long codesOffset = header.getLong();
+        if (recordsOffset + recordsLength > channel.size()) {
+            throw new IOException("Truncated segment file " + file);
+        }
+
+        long rowBytes = (long) dimension * Float.BYTES;
+        this.rowsPerWindow = rowsPerWindow(count, rowBytes);
+        this.vectorWindows = new FloatBuffer[windows(count, rowsPerWindow)];
+        for (int window = 0; window < vectorWindows.length; window++) {
+            int rows = Math.min(rowsPerWindow, count - window * rowsPerWindow);
+            vectorWindows[window] = map(channel, vectorsOffset + window * rowsPerWindow * rowBytes, rows * rowBytes)
+                    .asFloatBuffer();
+        }
+        this.norms = map(channel, normsOffset, (long) count * Float.BYTES).asFloatBuffer();
+        this.offsets = map(channel, offsetsOffset, (count + 1L) * Long.BYTES).asLongBuffer();
+        this.recordWindows = new ByteBuffer[(int) ((recordsLength + WINDOW_BYTES - 1) / WINDOW_BYTES)];
+        for (int window = 0; window < recordWindows.length; window++) {
+            long start = window * WINDOW_BYTES;
+            recordWindows[window] = map(channel, recordsOffset + start,
+                    Math.min(recordsLength - start, WINDOW_BYTES + RECORD_WINDOW_OVERLAP));
+        }
+
+        int codeType = 0;
+        if (codesOffset != 0) {
+            ByteBuffer codesHeader = map(channel, codesOffset, Long.BYTES);
+            codeType = codesHeader.getInt(0);
+        }
+        switch (codeType) {
+            case 0 -> {
+                this.quantization = VectorQuantization.NONE;
+                this.codeRowsPerWindow = 0;
+                this.scales = null;
+                this.int8Windows = null;
+                this.binaryWindows = null;
+            }
+            case INT8_CODES -> {
+                this.quantization = VectorQuantization.INT8;
+                this.codeRowsPerWindow = rowsPerWindow(count, dimension);
+                long scalesOffset = codesOffset + Long.BYTES;
+                this.scales = map(channel, scalesOffset, (long) count * Float.BYTES).asFloatBuffer();
+                long int8Offset = int8Offset(scalesOffset, count);
+                this.int8Windows = new ByteBuffer[windows(count, codeRowsPerWindow)];
+                for (int window = 0; window < int8Windows.length; window++) {
+                    int rows = Math.min(codeRowsPerWindow, count - window * codeRowsPerWindow);
+                    int8Windows[window] = map(channel, int8Offset + (long) window * codeRowsPerWindow * dimension,
+                            (long) rows * dimension);
+                }
+                this.binaryWindows = null;
+            }
+            case BINARY_CODES -> {
+                this.quantization = VectorQuantization.BINARY;
+                long codeBytes = (long) BinaryQuantizer.words(dimension) * Long.BYTES;
+                this.codeRowsPerWindow = rowsPerWindow(count, codeBytes);
+                this.scales = null;
+                this.int8Windows = null;
+                this.binaryWindows = new LongBuffer[windows(count, codeRowsPerWindow)];
+                for (int window = 0; window < binaryWindows.length; window++) {
+                    int rows = Math.min(codeRowsPerWindow, count - window * codeRowsPerWindow);
+                    binaryWindows[window] = map(channel, codesOffset + Long.BYTES + window * codeRowsPerWindow * codeBytes,
+                            rows * codeBytes).asLongBuffer();
+                }
+            }
+            default -> throw new IOException("Unknown code type " + codeType + ": " + file);
+        }
+        this.deleted = new long[(count + 63) >>> 6];
+    }
+
+    private static int rowsPerWindow(int count, long rowBytes) {
+        return (int) Math.max(1, Math.min(count, WINDOW_BYTES / rowBytes));
+    }
+
+    private static int windows(int count, int rowsPerWindow) {
+        return (count + rowsPerWindow - 1) / rowsPerWindow;
+    }
+
+    /**
+     * @return the offset of the int8 codes, after the scales and aligned like the other sections.
+     */
+    private static long int8Offset(long scalesOffset, int count) {
+        return (scalesOffset + (long) count * Float.BYTES + 7) & ~7L;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps a segment file. The mappings stay valid after the file is closed, and are released once the segment is
+     * garbage collected.
+     */
+    static VectorSegment open(Path directory, String name) throws IOException {
+        Path file = directory.resolve(name + EXTENSION);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new VectorSegment(name, file, channel);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int liveCount() {
+        return count - deletedCount;
+    }
+
+    /**
+     * @param normalizedQuery the query, scaled to unit length.
+     * @return the cosine similarity of the query and a row.
+     */
+    float cosine(float[] normalizedQuery, int row) {
+        float norm = norms.get(row);
+        if (norm == 0) {
+            return 0;
+        }
+        return VectorMath.dot(normalizedQuery, vectorWindows[row / rowsPerWindow], (row % rowsPerWindow) * dimension)
+                / norm;
+    }
+
+    /**
+     * @return the codes of the segment, {@link VectorQuantization#NONE} if it only has full precision vectors.
+     */
+    VectorQuantization quantization() {
+        return quantization;
+    }
+
+    /**
+     * Estimates the cosine similarity of the query and a row from the codes of the row, falling back to
+     * {@link #cosine(float[], int)} if the segment has no codes.
+     *
+     * @param normalizedQuery the query, scaled to unit length.
+     * @param queryBits       the {@link BinaryQuantizer binary code} of the query.
+     */
+    float approximateCosine(float[] normalizedQuery, long[] queryBits, int row) {
+        return switch (quantization) {
+            case INT8 -> {
+                float norm = norms.get(row);
+                yield norm == 0 ? 0 : scales.get(row) * ScalarQuantizer.dot(normalizedQuery,
+                        int8Windows[row / codeRowsPerWindow], (row % codeRowsPerWindow) * dimension) / norm;
+            }
+            case BINARY -> BinaryQuantizer.similarity(BinaryQuantizer.hamming(queryBits,
+                    binaryWindows[row / codeRowsPerWindow], (row % codeRowsPerWindow) * queryBits.length), dimension);
+            case NONE -> cosine(normalizedQuery, row);
+        };
+    }
+
+    float norm(int row) {
+        return norms.get(row);
+    }
+
+    float[] vector(int row) {
+        float[] vector = new float[dimension];
+        vectorWindows[row / rowsPerWindow].get((row % rowsPerWindow) * dimension, vector);
+        return vector;
+    }
+
+    String id(int row) {
+        try {
+            return BinaryCodec.readString(record(row));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read row " + row + " of " + file, e);
+        }
+    }
+
+    /**
+     * Passes the rows holding {@code id} to {@code action}, removed ones included.
+     * <p>
+     * The first call decodes every id once, to build a sorted index of 8 bytes per row: the upper half of a 64-bit
+     * hash of the id, then the row. Later calls binary search the index and only decode the ids of the rows whose
+     * hash matches.
+     */
+    void forEachRowWithId(String id, IntConsumer action) {
+        if (idIndex == null) {
+            long[] index = new long[count];
+            for (int row = 0; row < count; row++) {
+                index[row] = idKey(id(row)) | row;
+            }
+            Arrays.sort(index);
+            idIndex = index;
+        }
+        long key = idKey(id);
+        int i = Arrays.binarySearch(idIndex, key);
+        for (i = i < 0 ? -i - 1 : i; i < idIndex.length && (idIndex[i] & ID_KEY_MASK) == key; i++) {
+            int row = (int) idIndex[i];
+            if (id.equals(id(row))) {
+                action.accept(row);
+            }
+        }
+    }
+
+    /**
+     * @return the upper half of the 64-bit FNV-1a hash of {@code id}, the lower half being free for the row.
+     */
+    private static long idKey(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001b3L;
+        }
+        return hash & ID_KEY_MASK;
+    }
+
+    /**
+     * @param withText whether the sid and text are decoded, or only the metadata, e.g. to evaluate a filter.
+     */
+    TextSegment segment(int row, boolean withText) {
+        try {
+            DataInputStream in = record(row);
+            BinaryCodec.readString(in);
+            return BinaryCodec.readSegment(in, withText);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read row " + row + " of " + file, e);
+        }
+    }
+
+    private DataInputStream record(int row) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(recordBytes(row)));
+    }
+
+    /**
+     * @return the encoded id and segment of a row, e.g. to copy them to a merged segment.
+     */
+    byte[] recordBytes(int row) throws IOException {
+        long start = offsets.get(row);
+        int length = (int) (offsets.get(row + 1) - start);
+        byte[] bytes = new byte[length];
+        int window = (int) (start / WINDOW_BYTES);
+        ByteBuffer buffer = recordWindows[window];
+        int position = (int) (start - window * WINDOW_BYTES);
+        if (position + length <= buffer.limit()) {
+            buffer.get(position, bytes);
+            return bytes;
+        }
+        // a record larger than the overlap of the windows
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer target = ByteBuffer.wrap(bytes);
+            while (target.hasRemaining()) {
+                if (channel.read(target, recordsOffset + start + target.position()) < 0) {
+                    throw new IOException("Truncated segment file " + file);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    boolean isDeleted(int row) {
+        return (deleted[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return whether the row was not deleted yet.
+     */
+    boolean delete(int row) {
+        if (isDeleted(row)) {
+            return false;
+        }
+        deleted[row >>> 6] |= 1L << row;
+        deletedCount++;
+        deletionsChanged = true;
+        return true;
+    }
+
+    long[] deletedSnapshot() {
+        return deleted.clone();
+    }
+
+    static boolean isDeleted(long[] deleted, int row) {
+        return (deleted[row >>> 6] & (1L << row)) != 0;
+    }
+
+    boolean deletionsChanged() {
+        return deletionsChanged;
+    }
+
+    /**
+     * @return the name of the file holding the deletions of the last commit, or {@code null} if none.
+     */
+    String deletionFile() {
+        return deletionFile;
+    }
+
+    /**
+     * Writes and syncs the deletions to a new file.
+     */
+    void writeDeletions(Path directory, String deletionFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(deletionFile), StandardOpenOption.CREATE_NEW)))) {
+            out.writeInt(DELETIONS_MAGIC);
+            out.writeInt(count);
+            for (long word : deleted) {
+                out.writeLong(word);
+            }
+        }
+        sync(directory.resolve(deletionFile));
+        this.deletionFile = deletionFile;
+        this.deletionsChanged = false;
+    }
+
+    void readDeletions(Path directory, String deletionFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(deletionFile))))) {
+            if (in.readInt() != DELETIONS_MAGIC || in.readInt() != count) {
+                throw new IOException("Invalid deletion file " + deletionFile);
+            }
+            deletedCount = 0;
+            for (int i = 0; i < deleted.length; i++) {
+                deleted[i] = in.readLong();
+                deletedCount += Long.bitCount(deleted[i]);
+            }
+        }
+        this.deletionFile = deletionFile;
+        this.deletionsChanged = false;
+    }
+
+    static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Syncs a directory, so that the files created or renamed in it survive a crash.
+     * Best effort: directories cannot be opened on every platform, e.g. Windows.
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on this platform
+        }
+    }
+
+    /**
+     * Writes a segment file in a single pass, with bounded memory: each section is buffered and written at its
+     * final position, which is known from the number of rows.
+     */
+    static final class Writer implements Closeable {
+
+        private static final int BUFFER_BYTES = 1 << 20;
+
+        private final Path file;
+        private final FileChannel channel;
+        private final int dimension;
+        private final int count;
+        private final VectorQuantization quantization;
+        private final Section vectors;
+        private final Section norms;
+        private final Section scales;
+        private final Section codes;
+        private final Section offsets;
+        private final Section records;
+        private final long vectorsOffset;
+        private final long normsOffset;
+        private final long codesOffset;
+        private final long offsetsOffset;
+        private final long recordsOffset;
+        private final byte[] int8Codes;
+        private final long[] binaryCodes;
+        private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+        private int rows;
+        private long recordsLength;
+
+        /**
+         * @param quantization the codes written along the vectors.
+         */
+        Writer(Path directory, String name, int dimension, int count, VectorQuantization quantization)
+                throws IOException {
+            if (count > MAX_ROWS) {
+                throw new IOException("A segment cannot hold more than " + MAX_ROWS + " rows");
+            }
+            this.file = directory.resolve(name + EXTENSION);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.dimension = dimension;
+            this.count = count;
+            this.quantization = quantization;
+            this.vectorsOffset = HEADER_BYTES;
+            this.normsOffset = vectorsOffset + (long) count * dimension * Float.BYTES;
+            // aligned, so that the codes and the offsets can be viewed as longs
+            long normsEnd = (normsOffset + (long) count * Float.BYTES + 7) & ~7L;
+            long codesEnd;
+            switch (quantization) {
+                case INT8 -> {
+                    this.codesOffset = normsEnd;
+                    long scalesOffset = codesOffset + Long.BYTES;
+                    long int8Offset = int8Offset(scalesOffset, count);
+                    codesEnd = int8Offset + (long) count * dimension;
+                    this.scales = new Section(scalesOffset);
+                    this.codes = new Section(int8Offset);
+                    this.int8Codes = new byte[dimension];
+                    this.binaryCodes = null;
+                }
+                case BINARY -> {
+                    this.codesOffset = normsEnd;
+                    int words = BinaryQuantizer.words(dimension);
+                    codesEnd = codesOffset + Long.BYTES + (long) count * words * Long.BYTES;
+                    this.scales = null;
+                    this.codes = new Section(codesOffset + Long.BYTES);
+                    this.int8Codes = null;
+                    this.binaryCodes = new long[words];
+                }
+                default -> {
+                    this.codesOffset = 0;
+                    codesEnd = normsEnd;
+                    this.scales = null;
+                    this.codes = null;
+                    this.int8Codes = null;
+                    this.binaryCodes = null;
+                }
+            }
+            this.offsetsOffset = (codesEnd + 7) & ~7L;
+            this.recordsOffset = offsetsOffset + (count + 1L) * Long.BYTES;
+            this.vectors = new Section(vectorsOffset);
+            this.norms = new Section(normsOffset);
+            this.offsets = new Section(offsetsOffset);
+            this.records = new Section(recordsOffset);
+            offsets.putLong(0);
+        }
+
+        void add(String id, float[] vectors, int offset, TextSegment segment) throws IOException {
+            recordBytes.reset();
+            BinaryCodec.writeString(recordOut, id);
+            BinaryCodec.writeSegment(recordOut, segment);
+            float norm = (float) Math.sqrt(VectorMath.dot(vectors, offset, vectors, offset, dimension));
+            add(vectors, offset, norm, recordBytes.toByteArray());
+        }
+
+        void add(float[] vectors, int offset, float norm, byte[] record) throws IOException {
+            if (rows == count) {
+                throw new IOException("The segment " + file + " is full");
+            }
+            for (int i = 0; i < dimension; i++) {
+                this.vectors.putFloat(vectors[offset + i]);
+            }
+            norms.putFloat(norm);
+            switch (quantization) {
+                case INT8 -> {
+                    scales.putFloat(ScalarQuantizer.quantize(vectors, offset, dimension, int8Codes, 0));
+                    codes.put(int8Codes);
+                }
+                case BINARY -> {
+                    BinaryQuantizer.quantize(vectors, offset, dimension, binaryCodes, 0);
+                    for (long word : binaryCodes) {
+                        codes.putLong(word);
+                    }
+                }
+                case NONE -> {
+                }
+            }
+            records.put(record);
+            recordsLength += record.length;
+            offsets.putLong(recordsLength);
+            rows++;
+        }
+
+        /**
+         * Writes the header and syncs the file, which can then be {@link #open(Path, String) opened}.
+         */
+        void finish() throws IOException {
+            if (rows != count) {
+                throw new IOException("The segment " + file + " has " + rows + " rows instead of " + count);
+            }
+            vectors.flush();
+            norms.flush();
+            if (scales != null) {
+                scales.flush();
+            }
+            if (codes != null) {
+                codes.flush();
+                ByteBuffer codesHeader = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                codesHeader.putInt(quantization == VectorQuantization.INT8 ? INT8_CODES : BINARY_CODES).putInt(0);
+                codesHeader.flip();
+                write(codesHeader, codesOffset);
+            }
+            offsets.flush();
+            records.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(count)
+                    .putLong(vectorsOffset).putLong(normsOffset).putLong(offsetsOffset)
+                    .putLong(recordsOffset).putLong(recordsLength).putLong(codesOffset);
+            header.flip();
+            write(header, 0);
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void write(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        private final class Section {
+
+            private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            private long position;
+
+            private Section(long position) {
+                this.position = position;
+            }
+
+            private void putFloat(float value) throws IOException {
+                if (buffer.remaining() < Float.BYTES) {
+                    flush();
+                }
+                buffer.putFloat(value);
+            }
+
+            private void putLong(long value) throws IOException {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush();
+                }
+                buffer.putLong(value);
+            }
+
+            private void put(byte[] bytes) throws IOException {
+                if (buffer.remaining() < bytes.length) {
+                    flush();
+                }
+                if (bytes.length > buffer.capacity()) {
+                    ByteBuffer large = ByteBuffer.wrap(bytes);
+                    write(large, position);
+                    position += bytes.length;
+                } else {
+                    buffer.put(bytes);
+                }
+            }
+
+            private void flush() throws IOException {
+                buffer.flip();
+                int length = buffer.remaining();
+                write(buffer, position);
+                position += length;
+                buffer.clear();
+            }
+        }
+    }
+}
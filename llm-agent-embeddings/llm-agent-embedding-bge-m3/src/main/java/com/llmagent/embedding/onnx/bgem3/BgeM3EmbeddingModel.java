@@ -1,6 +1,7 @@
 package com.llmagent.embedding.onnx.bgem3;
 
 import com.llmagent.embedding.onnx.OnnxBertEncoder;
+import com.llmagent.embedding.onnx.OnnxSessionOptions;
 import com.llmagent.embedding.onnx.PoolingMode;
 import com.llmagent.embedding.onnx.ProcessEmbeddingModel;
 
@@ -60,13 +61,39 @@ public class BgeM3EmbeddingModel extends ProcessEmbeddingModel {
      * @param executor The executor to use to parallelize the embedding process.
      */
     public BgeM3EmbeddingModel(String modelPath, Executor executor) {
-        super(executor);
+        this(modelPath, executor, null, null);
+    }
+
+    /**
+     * Creates an instance of an {@code BgeM3EmbeddingModel}.
+     *
+     * @param executor       The executor to use to parallelize the embedding process.
+     * @param maxBatchSize   The maximum number of sequences encoded in one inference call.
+     * @param maxBatchTokens The maximum number of tokens, padding included, encoded in one inference call.
+     */
+    public BgeM3EmbeddingModel(String modelPath, Executor executor, Integer maxBatchSize, Integer maxBatchTokens) {
+        this(modelPath, executor, maxBatchSize, maxBatchTokens, null);
+    }
+
+    /**
+     * Creates an instance of an {@code BgeM3EmbeddingModel}.
+     *
+     * @param executor       The executor to use to parallelize the embedding process.
+     * @param maxBatchSize   The maximum number of sequences encoded in one inference call.
+     * @param maxBatchTokens The maximum number of tokens, padding included, encoded in one inference call.
+     * @param sessionOptions The tuning of the ONNX runtime session, or {@code null} for the defaults.
+     *                       Memory-mapped loading is not supported, as the model has an external data file.
+     */
+    public BgeM3EmbeddingModel(String modelPath, Executor executor, Integer maxBatchSize, Integer maxBatchTokens,
+                               OnnxSessionOptions sessionOptions) {
+        super(executor, maxBatchSize, maxBatchTokens);
 
         this.model = loadFromFileSystemPath(
                 modelPath,
                 DEFAULT_MODEL_FILENAME,
                 DEFAULT_TOKENIZER_FILENAME,
-                PoolingMode.CLS
+                PoolingMode.CLS,
+                sessionOptions
         );
     }
 
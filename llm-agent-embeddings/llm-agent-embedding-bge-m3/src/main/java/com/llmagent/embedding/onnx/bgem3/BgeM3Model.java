@@ -0,0 +1,242 @@
+package com.llmagent.embedding.onnx.bgem3;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.embedding.onnx.HuggingFaceTokenizer;
+import com.llmagent.embedding.onnx.OnnxSessionOptions;
+import com.llmagent.llm.embedding.DimensionAwareEmbeddingModel;
+import com.llmagent.llm.output.LlmResponse;
+import com.llmagent.llm.output.TokenUsage;
+import com.llmagent.vector.math.VectorMath;
+import com.llmagent.vector.store.VectorData;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static ai.onnxruntime.OnnxTensor.createTensor;
+import static com.llmagent.exception.IllegalConfigurationException.illegalConfiguration;
+import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+import static java.nio.LongBuffer.wrap;
+
+/**
+ * BAAI bge-m3 model computing, in a single forward pass, the three representations of a text supported by bge-m3:
+ * the dense embedding, the lexical (sparse) weights and the multi-vector (ColBERT) embeddings.
+ * See {@link BgeM3Output} and {@link BgeM3Scores} to score them, e.g. for hybrid retrieval.
+ * <p>
+ * It requires an ONNX export of bge-m3 including the sparse and ColBERT heads, with the outputs
+ * {@code dense_vecs}, {@code sparse_vecs} and {@code colbert_vecs} (e.g. <a href="https://huggingface.co/aapot/bge-m3-onnx">aapot/bge-m3-onnx</a>).
+ * The directory passed to the constructors must contain the {@code model.onnx} file, its external data file(s)
+ * and the {@code tokenizer.json} file. The export of {@link BgeM3EmbeddingModel}, which only outputs the hidden states,
+ * is rejected.
+ * <p>
+ * Texts are truncated to 8192 tokens. Texts are sorted by length and encoded in padded batches.
+ * <p>
+ * As an {@link com.llmagent.llm.embedding.EmbeddingModel}, it returns the dense embeddings.
+ * <p>
+ * Embedding dimensions: 1024
+ */
+public class BgeM3Model extends DimensionAwareEmbeddingModel {
+
+    private static final String DEFAULT_MODEL_FILENAME = "model.onnx";
+    private static final String DEFAULT_TOKENIZER_FILENAME = "tokenizer.json";
+    private static final String DENSE_OUTPUT = "dense_vecs";
+    private static final String SPARSE_OUTPUT = "sparse_vecs";
+    private static final String COLBERT_OUTPUT = "colbert_vecs";
+    private static final int MAX_LENGTH = 8192;
+    private static final int MAX_BATCH_SIZE = 16;
+    private static final int MAX_BATCH_TOKENS = 16384;
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final Set<String> expectedInputs;
+    private final HuggingFaceTokenizer tokenizer;
+
+    /**
+     * @param modelPath the path to the directory containing the model and tokenizer files.
+     */
+    public BgeM3Model(String modelPath) {
+        this(modelPath, null);
+    }
+
+    /**
+     * @param modelPath      the path to the directory containing the model and tokenizer files.
+     * @param sessionOptions the tuning of the ONNX runtime session, or {@code null} for the defaults.
+     */
+    public BgeM3Model(String modelPath, OnnxSessionOptions sessionOptions) {
+        Path directory = Paths.get(ensureNotNull(modelPath, "modelPath"));
+        Map<String, String> options = new HashMap<>();
+        options.put("padding", "false");
+        options.put("truncation", "true");
+        options.put("maxLength", String.valueOf(MAX_LENGTH));
+        try {
+            this.environment = OrtEnvironment.getEnvironment();
+            this.session = OnnxSessionOptions.createSession(
+                    environment, directory.resolve(DEFAULT_MODEL_FILENAME), sessionOptions);
+            this.expectedInputs = session.getInputNames();
+            this.tokenizer = new HuggingFaceTokenizer(directory.resolve(DEFAULT_TOKENIZER_FILENAME), options);
+        } catch (OrtException e) {
+            throw new RuntimeException(e);
+        }
+        Set<String> outputs = session.getOutputNames();
+        if (!outputs.contains(DENSE_OUTPUT) || !outputs.contains(SPARSE_OUTPUT) || !outputs.contains(COLBERT_OUTPUT)) {
+            throw illegalConfiguration("The bge-m3 model must output %s, %s and %s, but outputs %s",
+                    DENSE_OUTPUT, SPARSE_OUTPUT, COLBERT_OUTPUT, outputs);
+        }
+    }
+
+    /**
+     * Computes the dense, sparse and multi-vector representations of a text.
+     */
+    public BgeM3Output encode(String text) {
+        return encodeAll(Collections.singletonList(text)).get(0);
+    }
+
+    /**
+     * Computes the dense, sparse and multi-vector representations of texts, in padded batches.
+     *
+     * @return the representations, in the order of the texts.
+     */
+    public List<BgeM3Output> encodeAll(List<String> texts) {
+        ensureNotEmpty(texts, "texts");
+        Encoding[] encodings = new Encoding[texts.size()];
+        List<Integer> byLength = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            encodings[i] = tokenizer.encode(texts.get(i), true, false);
+            byLength.add(i);
+        }
+        // texts padded together have similar lengths
+        byLength.sort(Comparator.comparingInt(i -> encodings[i].getIds().length));
+
+        BgeM3Output[] outputs = new BgeM3Output[texts.size()];
+        int from = 0;
+        while (from < byLength.size()) {
+            int batchLength = encodings[byLength.get(from)].getIds().length;
+            int to = from + 1;
+            while (to < byLength.size() && to - from < MAX_BATCH_SIZE) {
+                int length = encodings[byLength.get(to)].getIds().length;
+                if ((long) length * (to - from + 1) > MAX_BATCH_TOKENS) {
+                    break;
+                }
+                batchLength = length;
+                to++;
+            }
+            try {
+                encodeBatch(byLength.subList(from, to), encodings, batchLength, outputs);
+            } catch (OrtException e) {
+                throw new RuntimeException(e);
+            }
+            from = to;
+        }
+
+        List<BgeM3Output> result = new ArrayList<>(outputs.length);
+        Collections.addAll(result, outputs);
+        return result;
+    }
+
+    private void encodeBatch(List<Integer> batch, Encoding[] encodings, int batchLength, BgeM3Output[] outputs)
+            throws OrtException {
+        int batchSize = batch.size();
+        long[] inputIds = new long[batchSize * batchLength];
+        long[] attentionMask = new long[batchSize * batchLength];
+        long[] tokenTypeIds = new long[batchSize * batchLength];
+        for (int row = 0; row < batchSize; row++) {
+            Encoding encoding = encodings[batch.get(row)];
+            int length = encoding.getIds().length;
+            System.arraycopy(encoding.getIds(), 0, inputIds, row * batchLength, length);
+            System.arraycopy(encoding.getAttentionMask(), 0, attentionMask, row * batchLength, length);
+            System.arraycopy(encoding.getTypeIds(), 0, tokenTypeIds, row * batchLength, length);
+        }
+
+        long[] shape = {batchSize, batchLength};
+        try (
+                OnnxTensor inputIdsTensor = createTensor(environment, wrap(inputIds), shape);
+                OnnxTensor attentionMaskTensor = createTensor(environment, wrap(attentionMask), shape);
+                OnnxTensor tokenTypeIdsTensor = createTensor(environment, wrap(tokenTypeIds), shape)
+        ) {
+            Map<String, OnnxTensor> inputs = new HashMap<>();
+            inputs.put("input_ids", inputIdsTensor);
+            inputs.put("attention_mask", attentionMaskTensor);
+            if (expectedInputs.contains("token_type_ids")) {
+                inputs.put("token_type_ids", tokenTypeIdsTensor);
+            }
+
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][] dense = (float[][]) result.get(DENSE_OUTPUT).orElseThrow().getValue();
+                Object sparse = result.get(SPARSE_OUTPUT).orElseThrow().getValue();
+                float[][][] colbert = (float[][][]) result.get(COLBERT_OUTPUT).orElseThrow().getValue();
+                for (int row = 0; row < batchSize; row++) {
+                    int index = batch.get(row);
+                    outputs[index] = toOutput(encodings[index], dense[row], sparseWeights(sparse, row), colbert[row]);
+                }
+            }
+        }
+    }
+
+    private static float[] sparseWeights(Object sparse, int row) {
+        // [batch, length, 1] or [batch, length]
+        if (sparse instanceof float[][][] weights) {
+            float[] rowWeights = new float[weights[row].length];
+            for (int i = 0; i < rowWeights.length; i++) {
+                rowWeights[i] = weights[row][i][0];
+            }
+            return rowWeights;
+        }
+        return ((float[][]) sparse)[row];
+    }
+
+    private static BgeM3Output toOutput(Encoding encoding, float[] dense, float[] sparse, float[][] colbert) {
+        long[] ids = encoding.getIds();
+        long[] specialTokens = encoding.getSpecialTokenMask();
+        int length = ids.length;
+
+        Map<Integer, Float> lexicalWeights = new HashMap<>();
+        for (int i = 0; i < length; i++) {
+            float weight = sparse[i];
+            if (specialTokens[i] == 0 && weight > 0) {
+                // a token occurring several times keeps its highest weight
+                lexicalWeights.merge((int) ids[i], weight, Math::max);
+            }
+        }
+
+        // the ColBERT vectors start at the token following CLS
+        float[][] multiVector = new float[length - 1][];
+        for (int i = 0; i < length - 1; i++) {
+            multiVector[i] = VectorMath.normalize(colbert[i]);
+        }
+
+        return new BgeM3Output(VectorMath.normalize(dense), lexicalWeights, multiVector, length - 2);
+    }
+
+    @Override
+    public LlmResponse<List<VectorData>> embedAll(List<TextSegment> segments) {
+        ensureNotEmpty(segments, "segments");
+        List<String> texts = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            texts.add(segment.text());
+        }
+        int inputTokenCount = 0;
+        List<VectorData> embeddings = new ArrayList<>(segments.size());
+        for (BgeM3Output output : encodeAll(texts)) {
+            embeddings.add(VectorData.from(output.dense()));
+            inputTokenCount += output.tokenCount();
+        }
+        return LlmResponse.from(embeddings, new TokenUsage(inputTokenCount));
+    }
+
+    @Override
+    protected Integer knownDimension() {
+        return 1024;
+    }
+}
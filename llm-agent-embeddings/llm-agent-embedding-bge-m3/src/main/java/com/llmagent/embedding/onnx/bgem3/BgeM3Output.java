@@ -0,0 +1,14 @@
+package com.llmagent.embedding.onnx.bgem3;
+
+import java.util.Map;
+
+/**
+ * The three representations of a text computed by bge-m3 in a single forward pass.
+ *
+ * @param dense       the normalized dense embedding (CLS pooling), 1024 dimensions.
+ * @param sparse      the lexical weights: the weight of every distinct (non-special) token id of the text.
+ * @param multiVector the normalized ColBERT vectors, one per token except the CLS token.
+ * @param tokenCount  the number of tokens of the text, special tokens excluded.
+ */
+public record BgeM3Output(float[] dense, Map<Integer, Float> sparse, float[][] multiVector, int tokenCount) {
+}
@@ -0,0 +1,86 @@
+package com.llmagent.embedding.onnx.bgem3;
+
+import com.llmagent.vector.math.VectorMath;
+
+import java.util.Map;
+
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * Relevance scores between the {@link BgeM3Output}s of a query and of a passage, as defined by bge-m3:
+ * <ul>
+ * <li>dense: the dot product of the normalized dense embeddings, i.e. their cosine similarity;</li>
+ * <li>sparse (lexical matching): the sum, over the tokens present in both texts, of the products of their weights;</li>
+ * <li>multi-vector (ColBERT late interaction): the average, over the query vectors, of their best dot product
+ * with a passage vector.</li>
+ * </ul>
+ * The hybrid score is their weighted sum, by default with the weights recommended for bge-m3 (0.4, 0.2, 0.4).
+ */
+public final class BgeM3Scores {
+
+    public static final double DEFAULT_DENSE_WEIGHT = 0.4;
+    public static final double DEFAULT_SPARSE_WEIGHT = 0.2;
+    public static final double DEFAULT_MULTI_VECTOR_WEIGHT = 0.4;
+
+    private BgeM3Scores() {
+    }
+
+    public static double dense(float[] query, float[] passage) {
+        return VectorMath.dot(query, passage);
+    }
+
+    public static double sparse(Map<Integer, Float> query, Map<Integer, Float> passage) {
+        ensureNotNull(query, "query");
+        ensureNotNull(passage, "passage");
+        // iterate over the smaller map
+        Map<Integer, Float> small = query.size() <= passage.size() ? query : passage;
+        Map<Integer, Float> large = small == query ? passage : query;
+        double score = 0;
+        for (Map.Entry<Integer, Float> entry : small.entrySet()) {
+            Float weight = large.get(entry.getKey());
+            if (weight != null) {
+                score += entry.getValue() * weight;
+            }
+        }
+        return score;
+    }
+
+    public static double multiVector(float[][] query, float[][] passage) {
+        ensureNotNull(query, "query");
+        ensureNotNull(passage, "passage");
+        if (query.length == 0 || passage.length == 0) {
+            return 0;
+        }
+        double score = 0;
+        for (float[] queryVector : query) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (float[] passageVector : passage) {
+                max = Math.max(max, VectorMath.dot(queryVector, passageVector));
+            }
+            score += max;
+        }
+        return score / query.length;
+    }
+
+    public static double hybrid(BgeM3Output query, BgeM3Output passage) {
+        return hybrid(query, passage, DEFAULT_DENSE_WEIGHT, DEFAULT_SPARSE_WEIGHT, DEFAULT_MULTI_VECTOR_WEIGHT);
+    }
+
+    /**
+     * @return the weighted sum of the scores, a score with a weight of 0 is not computed.
+     */
+    public static double hybrid(BgeM3Output query, BgeM3Output passage,
+                                double denseWeight, double sparseWeight, double multiVectorWeight) {
+        double score = 0;
+        if (denseWeight != 0) {
+            score += denseWeight * dense(query.dense(), passage.dense());
+        }
+        if (sparseWeight != 0) {
+            score += sparseWeight * sparse(query.sparse(), passage.sparse());
+        }
+        if (multiVectorWeight != 0) {
+            score += multiVectorWeight * multiVector(query.multiVector(), passage.multiVector());
+        }
+        return score;
+    }
+}
@@ -1,6 +1,7 @@
 package com.llmagent.embedding.onnx;
 
 import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.util.PairList;
 import com.llmagent.data.message.*;
 import com.llmagent.llm.Tokenizer;
 import com.llmagent.llm.tool.ToolRequest;
@@ -116,6 +117,18 @@ public class HuggingFaceTokenizer implements Tokenizer {
         return tokenizer.encode(text, addSpecialTokens, withOverflowingTokens);
     }
 
+    /**
+     * Encodes pairs of texts, e.g. (query, passage) pairs for a cross-encoder, in a single call.
+     * Padding and truncation follow the options the tokenizer was created with.
+     *
+     * @param texts     the first text of every pair.
+     * @param textPairs the second text of every pair.
+     * @return the encodings, in the order of the pairs.
+     */
+    public Encoding[] batchEncode(List<String> texts, List<String> textPairs) {
+        return tokenizer.batchEncode(new PairList<>(texts, textPairs));
+    }
+
     public String buildSentence(List<String> tokens) {
         return tokenizer.buildSentence(tokens);
     }
@@ -0,0 +1,321 @@
+package com.llmagent.embedding.onnx;
+
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.llm.embedding.DimensionAwareEmbeddingModel;
+import com.llmagent.llm.output.LlmResponse;
+import com.llmagent.llm.output.TokenUsage;
+import com.llmagent.util.ExecutorUtil;
+import com.llmagent.vector.store.VectorData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * A front-end of a {@link ProcessEmbeddingModel} coalescing concurrent embedding requests into batches.
+ * <p>
+ * Embedding a single query per request thread, as RAG does, runs one inference call per query.
+ * This model instead queues the texts to embed: a dispatcher thread takes the first waiting text, then waits for
+ * more texts for up to {@link Builder#maxDelay(Duration)} or until {@link Builder#maxBatchSize(Integer)} texts
+ * are collected, and hands them to the {@link Builder#executor(Executor)}, which embeds them with a single batched
+ * inference call and completes each caller. At most {@link Builder#maxConcurrentBatches(Integer)} batches run at
+ * once. Under low load a text waits at most {@code maxDelay}; under high load batches fill up without waiting, and
+ * texts queue up while that many batches are running.
+ * <p>
+ * Calls with at least {@code maxBatchSize} texts are already batches and bypass the queue.
+ * <p>
+ * {@link #stats()} exposes the queue depth and batch size histograms, to tune {@code maxDelay} and
+ * {@code maxBatchSize} between latency and throughput. {@link #close()} stops the dispatcher thread.
+ */
+public class MicroBatchingEmbeddingModel extends DimensionAwareEmbeddingModel implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MicroBatchingEmbeddingModel.class);
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 32;
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(2);
+    private static final int DEFAULT_MAX_CONCURRENT_BATCHES = 2;
+    private static final int HISTOGRAM_BUCKETS = 16;
+
+    private final ProcessEmbeddingModel model;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Executor executor;
+    private final Semaphore batchPermits;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private final AtomicLongArray queueDepthHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray batchSizeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    private MicroBatchingEmbeddingModel(Builder builder) {
+        this.model = ensureNotNull(builder.model, "model");
+        this.maxBatchSize = ensureGreaterThanZero(getOrDefault(builder.maxBatchSize, DEFAULT_MAX_BATCH_SIZE), "maxBatchSize");
+        Duration maxDelay = getOrDefault(builder.maxDelay, DEFAULT_MAX_DELAY);
+        if (maxDelay.isNegative()) {
+            throw illegalArgument("maxDelay must not be negative, but is: %s", maxDelay);
+        }
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.executor = builder.executor != null ? builder.executor : ExecutorUtil.defaultExecutor();
+        this.batchPermits = new Semaphore(ensureGreaterThanZero(
+                getOrDefault(builder.maxConcurrentBatches, DEFAULT_MAX_CONCURRENT_BATCHES), "maxConcurrentBatches"));
+        this.dispatcher = ExecutorUtil.daemonThreadFactory("embedding-micro-batcher-").newThread(this::dispatch);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public LlmResponse<List<VectorData>> embedAll(List<TextSegment> segments) {
+        ensureNotEmpty(segments, "segments");
+        if (segments.size() >= maxBatchSize) {
+            return model.embedAll(segments);
+        }
+
+        List<Request> submitted = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            submitted.add(submit(segment.text()));
+        }
+
+        int inputTokenCount = 0;
+        List<VectorData> embeddings = new ArrayList<>(submitted.size());
+        for (Request request : submitted) {
+            OnnxBertEncoder.EmbeddingAndTokenCount embeddingAndTokenCount = join(request.result);
+            embeddings.add(VectorData.from(embeddingAndTokenCount.embedding));
+            inputTokenCount += embeddingAndTokenCount.tokenCount - 2; // do not count special tokens [CLS] and [SEP]
+        }
+        return LlmResponse.from(embeddings, new TokenUsage(inputTokenCount));
+    }
+
+    @Override
+    protected Integer knownDimension() {
+        return model.dimension();
+    }
+
+    /**
+     * @return a snapshot of the statistics of this model.
+     */
+    public MicroBatchingStats stats() {
+        return new MicroBatchingStats(
+                requests.sum(),
+                batches.sum(),
+                batchedRequests.sum(),
+                queue.size(),
+                toList(queueDepthHistogram),
+                toList(batchSizeHistogram));
+    }
+
+    /**
+     * Stops the dispatcher thread. The texts still waiting fail with an {@link IllegalStateException},
+     * as do later calls. The batches already running complete. The wrapped model is not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+    }
+
+    private Request submit(String text) {
+        if (closed) {
+            throw new IllegalStateException("The embedding model is closed");
+        }
+        Request request = new Request(text);
+        queue.add(request);
+        requests.increment();
+        queueDepthHistogram.incrementAndGet(MicroBatchingStats.bucketOf(queue.size(), HISTOGRAM_BUCKETS));
+        if (closed) {
+            // the dispatcher may have stopped before the request was queued
+            failWaiting();
+        }
+        return request;
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            try {
+                // texts keep queueing up while all batches are running, so that the next batch is a full one
+                batchPermits.acquire();
+            } catch (InterruptedException e) {
+                break;
+            }
+            List<Request> batch = new ArrayList<>(maxBatchSize);
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // closed, the texts already taken are still embedded
+            }
+            if (batch.isEmpty()) {
+                batchPermits.release();
+            } else {
+                execute(batch);
+            }
+        }
+        failWaiting();
+    }
+
+    private void execute(List<Request> batch) {
+        try {
+            executor.execute(() -> runAndRelease(batch));
+        } catch (RejectedExecutionException e) {
+            log.debug("The executor rejected a batch of {} texts, embedding it on the dispatcher thread", batch.size(), e);
+            runAndRelease(batch);
+        }
+    }
+
+    private void runAndRelease(List<Request> batch) {
+        try {
+            run(batch);
+        } finally {
+            batchPermits.release();
+        }
+    }
+
+    private void run(List<Request> batch) {
+        batches.increment();
+        batchedRequests.add(batch.size());
+        batchSizeHistogram.incrementAndGet(MicroBatchingStats.bucketOf(batch.size(), HISTOGRAM_BUCKETS));
+
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            texts.add(request.text);
+        }
+        try {
+            List<OnnxBertEncoder.EmbeddingAndTokenCount> results = model.encode(texts);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            log.warn("Failed to embed a batch of {} texts", batch.size(), e);
+            for (Request request : batch) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void failWaiting() {
+        List<Request> waiting = new ArrayList<>();
+        queue.drainTo(waiting);
+        for (Request request : waiting) {
+            request.result.completeExceptionally(new IllegalStateException("The embedding model is closed"));
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static List<Long> toList(AtomicLongArray histogram) {
+        List<Long> values = new ArrayList<>(histogram.length());
+        for (int i = 0; i < histogram.length(); i++) {
+            values.add(histogram.get(i));
+        }
+        return values;
+    }
+
+    private static final class Request {
+        private final String text;
+        private final CompletableFuture<OnnxBertEncoder.EmbeddingAndTokenCount> result = new CompletableFuture<>();
+
+        private Request(String text) {
+            this.text = text;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private ProcessEmbeddingModel model;
+        private Integer maxBatchSize;
+        private Duration maxDelay;
+        private Executor executor;
+        private Integer maxConcurrentBatches;
+
+        /**
+         * The in-process model embedding the batches.
+         */
+        public Builder model(ProcessEmbeddingModel model) {
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * The maximum number of texts per batch. Default: 32.
+         */
+        public Builder maxBatchSize(Integer maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * The maximum time a batch waits for more texts after its first one, must not be negative.
+         * Default: 2 milliseconds.
+         */
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = ensureNotNull(maxDelay, "maxDelay");
+            return this;
+        }
+
+        /**
+         * The executor running the batches. Defaults to {@link ExecutorUtil#defaultExecutor()}.
+         * A batch rejected by the executor runs on the dispatcher thread.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * The maximum number of batches embedded at once. With more than one, the next batch is embedded while
+         * the previous one is still running, at the cost of the inference calls sharing the cores. Default: 2.
+         */
+        public Builder maxConcurrentBatches(Integer maxConcurrentBatches) {
+            this.maxConcurrentBatches = maxConcurrentBatches;
+            return this;
+        }
+
+        public MicroBatchingEmbeddingModel build() {
+            return new MicroBatchingEmbeddingModel(this);
+        }
+    }
+}
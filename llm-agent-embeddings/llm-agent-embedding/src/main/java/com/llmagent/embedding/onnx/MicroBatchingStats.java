@@ -0,0 +1,50 @@
+package com.llmagent.embedding.onnx;
+
+import java.util.List;
+
+/**
+ * A snapshot of the statistics of a {@link MicroBatchingEmbeddingModel}.
+ * <p>
+ * Histograms have power-of-two buckets: bucket {@code i} counts the values in
+ * {@code (bucketUpperBound(i - 1), bucketUpperBound(i)]}, i.e. 1, 2, 3-4, 5-8, 9-16, ...
+ * The last bucket also counts all larger values. The histograms are immutable copies.
+ *
+ * @param requests            the number of texts submitted.
+ * @param batches             the number of batches run.
+ * @param batchedRequests     the number of texts in the batches run.
+ * @param queueDepth          the number of texts currently waiting for a batch.
+ * @param queueDepthHistogram the number of waiting texts, sampled when each text is submitted (itself included).
+ * @param batchSizeHistogram  the number of texts in each batch.
+ */
+public record MicroBatchingStats(long requests,
+                                 long batches,
+                                 long batchedRequests,
+                                 long queueDepth,
+                                 List<Long> queueDepthHistogram,
+                                 List<Long> batchSizeHistogram) {
+
+    public MicroBatchingStats {
+        queueDepthHistogram = List.copyOf(queueDepthHistogram);
+        batchSizeHistogram = List.copyOf(batchSizeHistogram);
+    }
+
+    /**
+     * @return the average number of texts per batch, or {@code 0} when no batch was run yet.
+     */
+    public double averageBatchSize() {
+        return batches == 0 ? 0 : (double) batchedRequests / batches;
+    }
+
+    /**
+     * @param bucket the index of a histogram bucket.
+     * @return the largest value counted in the bucket, except for the last one which is unbounded.
+     */
+    public static long bucketUpperBound(int bucket) {
+        return 1L << bucket;
+    }
+
+    static int bucketOf(long value, int buckets) {
+        int bucket = value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+        return Math.min(bucket, buckets - 1);
+    }
+}
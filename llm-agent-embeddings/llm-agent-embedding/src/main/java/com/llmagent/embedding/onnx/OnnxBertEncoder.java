@@ -2,19 +2,23 @@ package com.llmagent.embedding.onnx;
 
 import ai.djl.huggingface.tokenizers.Encoding;
 import ai.onnxruntime.*;
+import com.llmagent.vector.math.VectorMath;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import static ai.onnxruntime.OnnxTensor.createTensor;
 import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
 import static com.llmagent.util.ValidationUtil.ensureNotNull;
 import static java.nio.LongBuffer.wrap;
 import static java.util.Collections.singletonMap;
-import static java.util.stream.Collectors.toList;
 
 /**
  * OnnxBertEncoder is designed to encode text using a BERT model.
@@ -26,6 +30,16 @@ public class OnnxBertEncoder {
     // The maximum sequence length for the BERT model
     private static final int MAX_SEQUENCE_LENGTH = 510;
 
+    /**
+     * The default maximum number of sequences (texts or 510-token windows of texts) encoded in one inference call.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+
+    /**
+     * The default maximum number of tokens, padding included, encoded in one inference call.
+     */
+    public static final int DEFAULT_MAX_BATCH_TOKENS = 16 * 512;
+
     // The environment for the ONNX runtime
     private final OrtEnvironment environment;
     private final OrtSession session;
@@ -38,17 +52,29 @@ public class OnnxBertEncoder {
 
     /**
      * initializes an instance of the class by setting up the necessary environment and resources for processing text using a BERT model.
-     * The constructor is suitable for small models
+     * The constructor is suitable for small models, e.g. loaded from the classpath, as the model is read on the heap
      * @param model the ONNX model file
      * @param tokenizer the HuggingFace tokenizer file
      * @param poolingMode the pooling mode for the BERT model
      */
     public OnnxBertEncoder(InputStream model, InputStream tokenizer, PoolingMode poolingMode) {
+        this(model, tokenizer, poolingMode, null);
+    }
+
+    /**
+     * initializes an instance of the class by setting up the necessary environment and resources for processing text using a BERT model.
+     * The constructor is suitable for small models, e.g. loaded from the classpath, as the model is read on the heap
+     * @param model the ONNX model file
+     * @param tokenizer the HuggingFace tokenizer file
+     * @param poolingMode the pooling mode for the BERT model
+     * @param sessionOptions the tuning of the ONNX runtime session, or {@code null} for the defaults
+     */
+    public OnnxBertEncoder(InputStream model, InputStream tokenizer, PoolingMode poolingMode, OnnxSessionOptions sessionOptions) {
         try {
             // Get the OrtEnvironment
             this.environment = OrtEnvironment.getEnvironment();
             // Create a session from the model
-            this.session = environment.createSession(loadModel(model));
+            this.session = OnnxSessionOptions.createSession(environment, loadModel(model), sessionOptions);
             // Get the input names of the session
             this.expectedInputs = session.getInputNames();
             // Create a tokenizer from the tokenizer input stream
@@ -63,26 +89,39 @@ public class OnnxBertEncoder {
 
     /**
      * initializes an instance of the class by setting up the necessary environment and resources for processing text using a BERT model.
-     * The constructor is suitable for some models which has external data file. For example, the BAAI/bge-m3
+     * The model is loaded by ONNX runtime from its path (or memory-mapped, see {@link OnnxSessionOptions}), not on the heap.
+     * The constructor is suitable for large models and for models which have external data files. For example, the BAAI/bge-m3
      *
-     * @param modelPath the path to the ONNX model file
-     * @param modelName the name of the ONNX model file
-     * @param tokenizer the name of the HuggingFace tokenizer file
+     * @param pathToModel the path to the ONNX model file
+     * @param pathToTokenizer the path to the HuggingFace tokenizer file
      * @param poolingMode the pooling mode for the BERT model
+     * @param sessionOptions the tuning of the ONNX runtime session, or {@code null} for the defaults
      */
-    public OnnxBertEncoder(String modelPath, String modelName, String tokenizer, PoolingMode poolingMode) {
-
+    public OnnxBertEncoder(Path pathToModel, Path pathToTokenizer, PoolingMode poolingMode, OnnxSessionOptions sessionOptions) {
         try {
             this.environment = OrtEnvironment.getEnvironment();
-            this.session = environment.createSession(modelPath + modelName);
+            this.session = OnnxSessionOptions.createSession(environment, pathToModel, sessionOptions);
             this.expectedInputs = session.getInputNames();
-            this.tokenizer = new HuggingFaceTokenizer(Paths.get(modelPath + tokenizer), singletonMap("padding", "false"));
+            this.tokenizer = new HuggingFaceTokenizer(pathToTokenizer, singletonMap("padding", "false"));
             this.poolingMode = ensureNotNull(poolingMode, "poolingMode");
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * initializes an instance of the class by setting up the necessary environment and resources for processing text using a BERT model.
+     * The constructor is suitable for some models which has external data file. For example, the BAAI/bge-m3
+     *
+     * @param modelPath the path to the ONNX model file
+     * @param modelName the name of the ONNX model file
+     * @param tokenizer the name of the HuggingFace tokenizer file
+     * @param poolingMode the pooling mode for the BERT model
+     */
+    public OnnxBertEncoder(String modelPath, String modelName, String tokenizer, PoolingMode poolingMode) {
+        this(Paths.get(modelPath + modelName), Paths.get(modelPath + tokenizer), poolingMode, null);
+    }
+
     public OnnxBertEncoder(OrtEnvironment environment, OrtSession session, InputStream tokenizer, PoolingMode poolingMode) {
         try {
             this.environment = environment;
@@ -108,82 +147,249 @@ public class OnnxBertEncoder {
 
     /**
      * Encodes the input text using the BERT model and returns the embedding and token count.
+     * A text longer than 510 tokens is split into windows which are encoded in a single batch.
      * @param text the input text to encode
      * @return the embedding and token count
      */
     public EmbeddingAndTokenCount embed(String text) {
-        // Tokenize the input text
-        List<String> tokens = tokenizer.tokenize(text);
-        // Partition the tokens into chunks of MAX_SEQUENCE_LENGTH
-        List<List<String>> partitions = partition(tokens, MAX_SEQUENCE_LENGTH);
-
-        List<float[]> embeddings = new ArrayList<>();
-        for (List<String> partition : partitions) {
-            try (OrtSession.Result result = encode(partition)) {
-                float[] embedding = toEmbedding(result);
-                // Get the embedding for the partition
-                embeddings.add(embedding);
-                // Add the embedding to the list
-            } catch (OrtException e) {
+        return embedAll(Collections.singletonList(text), DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_TOKENS).get(0);
+    }
+
+    /**
+     * Encodes the input texts using the BERT model in padded batches and returns their embeddings and token counts.
+     * <p>
+     * Every text is tokenized once and its token ids are sliced into windows of at most 510 tokens, which do not split
+     * words, each window being wrapped in the special tokens of the text. All windows are sorted by length,
+     * so that sequences of similar lengths are padded together, and grouped into batches of at most
+     * {@code maxBatchSize} sequences and {@code maxBatchTokens} tokens (padding included). Each batch is encoded with
+     * a single {@code [batch, length]} inference call and every row is pooled using its attention mask.
+     * The embedding of a text is the normalized average of its windows' embeddings, weighted by their lengths.
+     *
+     * @param texts          the input texts to encode
+     * @param maxBatchSize   the maximum number of sequences per inference call
+     * @param maxBatchTokens the maximum number of tokens per inference call, padding included
+     * @return the embeddings and token counts, in the order of the texts
+     */
+    public List<EmbeddingAndTokenCount> embedAll(List<String> texts, int maxBatchSize, int maxBatchTokens) {
+        return embedAll(texts, maxBatchSize, maxBatchTokens, null);
+    }
+
+    /**
+     * Same as {@link #embedAll(List, int, int)}, running the inference calls concurrently on the executor
+     * when the texts do not fit into a single batch.
+     *
+     * @param texts          the input texts to encode
+     * @param maxBatchSize   the maximum number of sequences per inference call
+     * @param maxBatchTokens the maximum number of tokens per inference call, padding included
+     * @param executor       the executor running the inference calls, or {@code null} to run them in the calling thread
+     * @return the embeddings and token counts, in the order of the texts
+     */
+    public List<EmbeddingAndTokenCount> embedAll(List<String> texts, int maxBatchSize, int maxBatchTokens, Executor executor) {
+        return embedAll(texts, maxBatchSize, maxBatchTokens, 0, executor);
+    }
+
+    /**
+     * Same as {@link #embedAll(List, int, int, Executor)}, with consecutive windows of a long text sharing
+     * {@code windowOverlap} tokens, so that the context around window boundaries is seen by both windows.
+     *
+     * @param texts          the input texts to encode
+     * @param maxBatchSize   the maximum number of sequences per inference call
+     * @param maxBatchTokens the maximum number of tokens per inference call, padding included
+     * @param windowOverlap  the number of tokens shared by consecutive windows, from 0 to 255
+     * @param executor       the executor running the inference calls, or {@code null} to run them in the calling thread
+     * @return the embeddings and token counts, in the order of the texts
+     */
+    public List<EmbeddingAndTokenCount> embedAll(List<String> texts, int maxBatchSize, int maxBatchTokens,
+                                                 int windowOverlap, Executor executor) {
+        ensureGreaterThanZero(maxBatchSize, "maxBatchSize");
+        ensureGreaterThanZero(maxBatchTokens, "maxBatchTokens");
+        if (windowOverlap < 0 || windowOverlap > MAX_SEQUENCE_LENGTH / 2) {
+            throw illegalArgument("windowOverlap must be between 0 and %s, but is: %s", MAX_SEQUENCE_LENGTH / 2, windowOverlap);
+        }
+
+        int[] tokenCounts = new int[texts.size()];
+        List<Sequence> sequences = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            Encoding encoding = tokenizer.encode(texts.get(i), true, false);
+            tokenCounts[i] = encoding.getIds().length;
+            window(i, encoding, MAX_SEQUENCE_LENGTH, windowOverlap, sequences);
+        }
+
+        // length bucketing: sequences padded together have similar lengths
+        List<Sequence> byLength = new ArrayList<>(sequences);
+        byLength.sort(Comparator.comparingInt(Sequence::length));
+        List<List<Sequence>> batches = new ArrayList<>();
+        int from = 0;
+        while (from < byLength.size()) {
+            int batchLength = byLength.get(from).length();
+            int to = from + 1;
+            while (to < byLength.size() && to - from < maxBatchSize) {
+                int length = Math.max(batchLength, byLength.get(to).length());
+                if ((long) length * (to - from + 1) > maxBatchTokens) {
+                    break;
+                }
+                batchLength = length;
+                to++;
+            }
+            batches.add(byLength.subList(from, to));
+            from = to;
+        }
+        if (executor == null || batches.size() == 1) {
+            batches.forEach(this::encodeBatch);
+        } else {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+            for (List<Sequence> batch : batches) {
+                futures.add(CompletableFuture.runAsync(() -> encodeBatch(batch), executor));
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            } catch (InterruptedException | ExecutionException e) {
                 throw new RuntimeException(e);
             }
         }
 
-        // List to store the weights for each partition
-        List<Integer> weights = partitions.stream()
-                .map(List::size)
-                .collect(toList());
-
-        // Normalize the weighted average of the embeddings
-        float[] embedding = normalize(weightedAverage(embeddings, weights));
+        List<List<float[]>> embeddings = new ArrayList<>(texts.size());
+        List<List<Integer>> weights = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new ArrayList<>(1));
+            weights.add(new ArrayList<>(1));
+        }
+        for (Sequence sequence : sequences) {
+            embeddings.get(sequence.textIndex).add(sequence.embedding);
+            weights.get(sequence.textIndex).add(sequence.weight);
+        }
 
-        // Return the embedding and token count
-        return new EmbeddingAndTokenCount(embedding, tokens.size());
+        List<EmbeddingAndTokenCount> result = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            float[] embedding = normalize(weightedAverage(embeddings.get(i), weights.get(i)));
+            result.add(new EmbeddingAndTokenCount(embedding, tokenCounts[i]));
+        }
+        return result;
     }
 
-    static List<List<String>> partition(List<String> tokens, int partitionSize) {
-    // Method to partition the tokens into chunks of partitionSize
-        List<List<String>> partitions = new ArrayList<>();
-        int from = 1; // Skip the first (CLS) token
+    /**
+     * A tokenized text, or 510-token window of a text, to encode.
+     */
+    private static final class Sequence {
+
+        private final int textIndex;
+        private final int weight;
+        private final long[] inputIds;
+        private final long[] attentionMask;
+        private final long[] tokenTypeIds;
+        private float[] embedding;
+
+        private Sequence(int textIndex, int weight, long[] inputIds, long[] attentionMask, long[] tokenTypeIds) {
+            this.textIndex = textIndex;
+            this.weight = weight;
+            this.inputIds = inputIds;
+            this.attentionMask = attentionMask;
+            this.tokenTypeIds = tokenTypeIds;
+        }
 
-        while (from < tokens.size() - 1) { // Skip the last (SEP) token
-            int to = from + partitionSize;
+        private int length() {
+            return inputIds.length;
+        }
+    }
 
-            if (to >= tokens.size() - 1) {
-                to = tokens.size() - 1;
-            } else {
-                // ensure we don't split word across partitions
-                while (tokens.get(to).startsWith("##")) {
-                    to--;
+    /**
+     * Slices the encoding of a text, {@code [CLS] tokens... [SEP]}, into sequences of at most {@code windowSize} tokens
+     * (special tokens excluded), each wrapped in the special tokens of the text. A window ends before the last word it
+     * would otherwise split, unless that word fills the whole window.
+     *
+     * @param textIndex     the index of the text
+     * @param encoding      the encoding of the text, with special tokens
+     * @param windowSize    the maximum number of tokens of a window, special tokens excluded
+     * @param windowOverlap the number of tokens shared by consecutive windows
+     * @param sequences     the list the sequences are added to
+     */
+    private static void window(int textIndex, Encoding encoding, int windowSize, int windowOverlap, List<Sequence> sequences) {
+        long[] ids = encoding.getIds();
+        long[] attentionMask = encoding.getAttentionMask();
+        long[] typeIds = encoding.getTypeIds();
+        long[] wordIds = encoding.getWordIds();
+        int last = ids.length - 1; // the SEP token
+
+        if (last - 1 <= windowSize) {
+            // the text fits into a single window, or is empty and encoded as [CLS] [SEP]
+            sequences.add(new Sequence(textIndex, Math.max(last - 1, 1), ids, attentionMask, typeIds));
+            return;
+        }
+
+        int from = 1; // skip the CLS token
+        while (from < last) {
+            int to = Math.min(from + windowSize, last);
+            if (to < last) {
+                // ensure we don't split a word across windows
+                int end = to;
+                while (end > from + 1 && wordIds[end] >= 0 && wordIds[end] == wordIds[end - 1]) {
+                    end--;
+                }
+                if (end > from + 1) {
+                    to = end;
                 }
             }
+            sequences.add(slice(textIndex, ids, attentionMask, typeIds, from, to));
+            if (to == last) {
+                break;
+            }
 
-            partitions.add(tokens.subList(from, to));
-
-            from = to;
+            // start the next window windowOverlap tokens back, at the beginning of a word
+            int next = Math.max(to - windowOverlap, from + 1);
+            while (next > from + 1 && next < to && wordIds[next] >= 0 && wordIds[next] == wordIds[next - 1]) {
+                next--;
+            }
+            from = next;
         }
+    }
 
-        return partitions;
+    private static Sequence slice(int textIndex, long[] ids, long[] attentionMask, long[] typeIds, int from, int to) {
+        int last = ids.length - 1;
+        int length = to - from + 2;
+        long[] windowIds = new long[length];
+        long[] windowAttentionMask = new long[length];
+        long[] windowTypeIds = new long[length];
+        windowIds[0] = ids[0];
+        windowAttentionMask[0] = attentionMask[0];
+        windowTypeIds[0] = typeIds[0];
+        System.arraycopy(ids, from, windowIds, 1, to - from);
+        System.arraycopy(attentionMask, from, windowAttentionMask, 1, to - from);
+        System.arraycopy(typeIds, from, windowTypeIds, 1, to - from);
+        windowIds[length - 1] = ids[last];
+        windowAttentionMask[length - 1] = attentionMask[last];
+        windowTypeIds[length - 1] = typeIds[last];
+        return new Sequence(textIndex, to - from, windowIds, windowAttentionMask, windowTypeIds);
     }
 
     /**
-     * Encodes a list of tokens into a format suitable for input into an ONNX model.
+     * Encodes the sequences with a single inference call and sets their pooled embeddings.
+     * Sequences are right-padded to {@code batchLength}; padded positions are masked out.
      *
-     * @param tokens a list of strings representing the tokens to be encoded
-     * @return an OrtSession.Result object containing the encoded tensors
-     * @throws OrtException if an error occurs during the encoding process
+     * @param batch the sequences to encode, sorted by length
      */
-    private OrtSession.Result encode(List<String> tokens) throws OrtException {
-        Encoding encoding = tokenizer.encode(toText(tokens), true, false);
-        // Encode the tokens
+    private void encodeBatch(List<Sequence> batch) {
+        try {
+            encodeBatch(batch, batch.get(batch.size() - 1).length());
+        } catch (OrtException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        long[] inputIds = encoding.getIds();
-        // Get the input IDs, attention mask, and token type IDs
-        long[] attentionMask = encoding.getAttentionMask();
-        long[] tokenTypeIds = encoding.getTypeIds();
+    private void encodeBatch(List<Sequence> batch, int batchLength) throws OrtException {
+        int batchSize = batch.size();
+        long[] inputIds = new long[batchSize * batchLength];
+        long[] attentionMask = new long[batchSize * batchLength];
+        long[] tokenTypeIds = new long[batchSize * batchLength];
+        for (int i = 0; i < batchSize; i++) {
+            Sequence sequence = batch.get(i);
+            int offset = i * batchLength;
+            System.arraycopy(sequence.inputIds, 0, inputIds, offset, sequence.length());
+            System.arraycopy(sequence.attentionMask, 0, attentionMask, offset, sequence.length());
+            System.arraycopy(sequence.tokenTypeIds, 0, tokenTypeIds, offset, sequence.length());
+        }
 
         // Create the shape for the tensors
-        long[] shape = {1, inputIds.length};
+        long[] shape = {batchSize, batchLength};
 
         try (
             // Create the tensors
@@ -201,55 +407,24 @@ public class OnnxBertEncoder {
                 inputs.put("token_type_ids", tokenTypeIdsTensor);
             }
 
-            return session.run(inputs);
-        }
-    }
-
-    /**
-     * Converts a list of tokens back to text.
-     * If the tokens match the original text after tokenization and special tokens are removed, the original text is returned.
-     * Otherwise, the tokens are joined into a string.
-     *
-     * @param tokens a list of tokens to be converted to text
-     * @return the original text if the tokens match the original text after tokenization and special tokens are removed, otherwise the tokens joined into a string
-     */
-    private String toText(List<String> tokens) {
-    // Method to convert the tokens to text
-
-        String text = tokenizer.buildSentence(tokens);
-        // Build the sentence from the tokens
-
-        List<String> tokenized = tokenizer.tokenize(text);
-        // Tokenize the text
-        List<String> tokenizedWithoutSpecialTokens = new LinkedList<>(tokenized);
-        // Remove the special tokens
-        tokenizedWithoutSpecialTokens.remove(0);
-        tokenizedWithoutSpecialTokens.remove(tokenizedWithoutSpecialTokens.size() - 1);
-
-        if (tokenizedWithoutSpecialTokens.equals(tokens)) {
-        // Check if the tokenized text matches the original tokens
-            return text;
-        } else {
-            return String.join("", tokens);
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][][] vectors = (float[][][]) result.get(0).getValue();
+                for (int i = 0; i < batchSize; i++) {
+                    Sequence sequence = batch.get(i);
+                    sequence.embedding = pool(vectors[i], sequence.length());
+                }
+            }
         }
     }
 
-    private float[] toEmbedding(OrtSession.Result result) throws OrtException {
-    // Method to convert the result to an embedding
-        float[][] vectors = ((float[][][]) result.get(0).getValue())[0];
-        // Get the vectors from the result
-        return pool(vectors);
-        // Pool the vectors
-    }
-
-    private float[] pool(float[][] vectors) {
-    // Method to pool the vectors
+    private float[] pool(float[][] vectors, int length) {
+    // Method to pool the vectors of the first length (non-padded) positions
         switch (poolingMode) {
         // Check the pooling mode
             case CLS:
                 return clsPool(vectors);
             case MEAN:
-                return meanPool(vectors);
+                return meanPool(vectors, length);
             default:
                 throw illegalArgument("Unknown pooling mode: " + poolingMode);
         }
@@ -266,29 +441,10 @@ public class OnnxBertEncoder {
     /**
      * pool the vectors using the mean token
      * @param vectors the vectors to pool
+     * @param numVectors the number of non-padded vectors
      */
-    private static float[] meanPool(float[][] vectors) {
-        int numVectors = vectors.length;
-        // Get the number of vectors and the length of each vector
-        int vectorLength = vectors[0].length;
-
-        float[] averagedVector = new float[vectorLength];
-        // Create the averaged vector
-
-        for (float[] vector : vectors) {
-        // Loop through each vector
-            // Loop through each element in the vector
-            for (int j = 0; j < vectorLength; j++) {
-                averagedVector[j] += vector[j];
-            }
-        }
-
-        // Normalize the averaged vector
-        for (int j = 0; j < vectorLength; j++) {
-            averagedVector[j] /= numVectors;
-        }
-
-        return averagedVector;
+    private static float[] meanPool(float[][] vectors, int numVectors) {
+        return VectorMath.meanPool(vectors, numVectors);
     }
 
     // Method to calculate the weighted average of the embeddings
@@ -298,51 +454,16 @@ public class OnnxBertEncoder {
             return embeddings.get(0);
         }
 
-        // Get the dimensions of the embeddings
-        int dimensions = embeddings.get(0).length;
-
-        // Create the averaged embedding
-        float[] averagedEmbedding = new float[dimensions];
-        int totalWeight = 0;
-
-        // Loop through each embedding
-        for (int i = 0; i < embeddings.size(); i++) {
-            // Get the weight for the embedding
-            int weight = weights.get(i);
-            totalWeight += weight;
-
-            // Loop through each element in the embedding
-            for (int j = 0; j < dimensions; j++) {
-                averagedEmbedding[j] += embeddings.get(i)[j] * weight;
-            }
-        }
-
-        // Normalize the averaged embedding
-        for (int j = 0; j < dimensions; j++) {
-            averagedEmbedding[j] /= totalWeight;
+        float[] weightArray = new float[weights.size()];
+        for (int i = 0; i < weightArray.length; i++) {
+            weightArray[i] = weights.get(i);
         }
-
-        return averagedEmbedding;
+        return VectorMath.weightedMean(embeddings.toArray(new float[0][]), weightArray);
     }
 
     // Method to normalize the vector
     private static float[] normalize(float[] vector) {
-
-        // Calculate the sum of the squares of the elements in the vector
-        float sumSquare = 0;
-        for (float v : vector) {
-            sumSquare += v * v;
-        }
-        // Calculate the norm of the vector
-        float norm = (float) Math.sqrt(sumSquare);
-
-        // Create the normalized vector
-        float[] normalizedVector = new float[vector.length];
-        for (int i = 0; i < vector.length; i++) {
-            normalizedVector[i] = vector[i] / norm;
-        }
-
-        return normalizedVector;
+        return VectorMath.normalize(vector.clone());
     }
 
     // Method to count the number of tokens in the text
@@ -356,19 +477,8 @@ public class OnnxBertEncoder {
      * @return the model
      */
     private byte[] loadModel(InputStream modelInputStream) {
-        try (
-                InputStream inputStream = modelInputStream;
-                ByteArrayOutputStream buffer = new ByteArrayOutputStream()
-        ) {
-            int nRead;
-            byte[] data = new byte[1024];
-
-            while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
-            }
-
-            buffer.flush();
-            return buffer.toByteArray();
+        try (InputStream inputStream = modelInputStream) {
+            return inputStream.readAllBytes();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -47,6 +47,21 @@ public class OnnxEmbeddingModel extends ProcessEmbeddingModel {
         this.onnxBertEncoder = loadFromFileSystem(pathToModel, pathToTokenizer, poolingMode);
     }
 
+    /**
+     * @param pathToModel     The path to the modelPath file (e.g., "/path/to/model.onnx")
+     * @param pathToTokenizer The path to the tokenizer file (e.g., "/path/to/tokenizer.json")
+     * @param poolingMode     The pooling model to use. Can be found in the ".../1_Pooling/config.json" file on HuggingFace.
+     *                        {@code "pooling_mode_mean_tokens": true} means that {@link PoolingMode#MEAN} should be used.
+     * @param executor        The executor to use to parallelize the embedding process, or {@code null} for the default one.
+     * @param maxBatchSize    The maximum number of sequences encoded in one inference call.
+     * @param maxBatchTokens  The maximum number of tokens, padding included, encoded in one inference call.
+     */
+    public OnnxEmbeddingModel(Path pathToModel, Path pathToTokenizer, PoolingMode poolingMode, Executor executor,
+                              int maxBatchSize, int maxBatchTokens) {
+        super(executor, maxBatchSize, maxBatchTokens);
+        this.onnxBertEncoder = loadFromFileSystem(pathToModel, pathToTokenizer, poolingMode);
+    }
+
     /**
      * @param pathToModel     The path to the model file (e.g., "/home/me/model.onnx")
      * @param pathToTokenizer The path to the tokenizer file (e.g., "/path/to/tokenizer.json")
@@ -70,8 +85,104 @@ public class OnnxEmbeddingModel extends ProcessEmbeddingModel {
         this(Paths.get(pathToModel), Paths.get(pathToTokenizer), poolingMode, executor);
     }
 
+    private OnnxEmbeddingModel(Builder builder) {
+        super(builder.executor, builder.maxBatchSize, builder.maxBatchTokens, builder.windowOverlap);
+        this.onnxBertEncoder = loadFromFileSystem(
+                ensureNotNull(builder.pathToModel, "pathToModel"),
+                ensureNotNull(builder.pathToTokenizer, "pathToTokenizer"),
+                builder.poolingMode,
+                builder.sessionOptions);
+    }
+
     @Override
     protected OnnxBertEncoder model() {
         return onnxBertEncoder;
     }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Path pathToModel;
+        private Path pathToTokenizer;
+        private PoolingMode poolingMode;
+        private Executor executor;
+        private Integer maxBatchSize;
+        private Integer maxBatchTokens;
+        private Integer windowOverlap;
+        private OnnxSessionOptions sessionOptions;
+
+        /**
+         * The path to the model file (e.g., "/path/to/model.onnx"). It is loaded by ONNX runtime, not on the heap.
+         */
+        public Builder pathToModel(Path pathToModel) {
+            this.pathToModel = pathToModel;
+            return this;
+        }
+
+        /**
+         * The path to the tokenizer file (e.g., "/path/to/tokenizer.json").
+         */
+        public Builder pathToTokenizer(Path pathToTokenizer) {
+            this.pathToTokenizer = pathToTokenizer;
+            return this;
+        }
+
+        /**
+         * The pooling model to use. Can be found in the ".../1_Pooling/config.json" file on HuggingFace.
+         */
+        public Builder poolingMode(PoolingMode poolingMode) {
+            this.poolingMode = poolingMode;
+            return this;
+        }
+
+        /**
+         * The executor to use to parallelize the embedding process. By default, one thread per available processor.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * The maximum number of sequences encoded in one inference call. Default: {@link OnnxBertEncoder#DEFAULT_MAX_BATCH_SIZE}.
+         */
+        public Builder maxBatchSize(Integer maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * The maximum number of tokens, padding included, encoded in one inference call.
+         * Default: {@link OnnxBertEncoder#DEFAULT_MAX_BATCH_TOKENS}.
+         */
+        public Builder maxBatchTokens(Integer maxBatchTokens) {
+            this.maxBatchTokens = maxBatchTokens;
+            return this;
+        }
+
+        /**
+         * The number of tokens shared by consecutive windows, when a segment longer than 510 tokens is split into
+         * windows. From 0 to 255. Default: 0.
+         */
+        public Builder windowOverlap(Integer windowOverlap) {
+            this.windowOverlap = windowOverlap;
+            return this;
+        }
+
+        /**
+         * The tuning of the ONNX runtime session (threads, optimization level, memory arena, memory-mapped loading...).
+         * Default: the ONNX runtime defaults.
+         */
+        public Builder sessionOptions(OnnxSessionOptions sessionOptions) {
+            this.sessionOptions = sessionOptions;
+            return this;
+        }
+
+        public OnnxEmbeddingModel build() {
+            return new OnnxEmbeddingModel(this);
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package com.llmagent.embedding.onnx;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.llmagent.data.segment.TextSegment;
+import com.llmagent.llm.output.LlmResponse;
+import com.llmagent.llm.output.TokenUsage;
+import com.llmagent.llm.scoring.ScoringModel;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static ai.onnxruntime.OnnxTensor.createTensor;
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+import static java.nio.LongBuffer.wrap;
+
+/**
+ * A {@link ScoringModel} running a cross-encoder (e.g. {@code cross-encoder/ms-marco-MiniLM-L-6-v2}
+ * or {@code BAAI/bge-reranker-base}, exported to ONNX) within the Java process.
+ * <p>
+ * All (query, passage) pairs of a {@link #scoreAll(List, String)} call are tokenized together, padded to the longest
+ * pair and scored in a single inference call. Pairs longer than {@code maxLength} tokens are truncated.
+ * <p>
+ * The model is expected to output one logit per pair (shape {@code [batch, 1]} or {@code [batch]}), or two logits
+ * (shape {@code [batch, 2]}), the second being the relevance one. With {@code normalize}, scores are mapped to
+ * {@code [0, 1]} with a sigmoid (one logit) or a softmax (two logits); otherwise the raw relevance logit is returned.
+ */
+public class OnnxScoringModel implements ScoringModel {
+
+    private static final int DEFAULT_MAX_LENGTH = 512;
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final Set<String> expectedInputs;
+    private final HuggingFaceTokenizer tokenizer;
+    private final boolean normalize;
+
+    /**
+     * @param pathToModel     The path to the model file (e.g., "/path/to/model.onnx")
+     * @param pathToTokenizer The path to the tokenizer file (e.g., "/path/to/tokenizer.json")
+     */
+    public OnnxScoringModel(Path pathToModel, Path pathToTokenizer) {
+        this(pathToModel, pathToTokenizer, DEFAULT_MAX_LENGTH, false);
+    }
+
+    /**
+     * @param pathToModel     The path to the model file (e.g., "/path/to/model.onnx")
+     * @param pathToTokenizer The path to the tokenizer file (e.g., "/path/to/tokenizer.json")
+     * @param maxLength       The maximum length of a (query, passage) pair, in tokens. Usually 512.
+     * @param normalize       Whether to map the scores to [0, 1].
+     */
+    public OnnxScoringModel(Path pathToModel, Path pathToTokenizer, int maxLength, boolean normalize) {
+        this(pathToModel, pathToTokenizer, maxLength, normalize, null);
+    }
+
+    /**
+     * @param pathToModel     The path to the model file (e.g., "/path/to/model.onnx")
+     * @param pathToTokenizer The path to the tokenizer file (e.g., "/path/to/tokenizer.json")
+     * @param maxLength       The maximum length of a (query, passage) pair, in tokens. Usually 512.
+     * @param normalize       Whether to map the scores to [0, 1].
+     * @param sessionOptions  The tuning of the ONNX runtime session, or {@code null} for the defaults.
+     */
+    public OnnxScoringModel(Path pathToModel, Path pathToTokenizer, int maxLength, boolean normalize,
+                            OnnxSessionOptions sessionOptions) {
+        ensureNotNull(pathToModel, "pathToModel");
+        ensureNotNull(pathToTokenizer, "pathToTokenizer");
+        Map<String, String> options = new HashMap<>();
+        options.put("padding", "true");
+        options.put("truncation", "true");
+        options.put("maxLength", String.valueOf(ensureGreaterThanZero(maxLength, "maxLength")));
+        try {
+            this.environment = OrtEnvironment.getEnvironment();
+            // loading from the path lets ONNX runtime read the file directly, including external data files,
+            // unless the session options memory-map it
+            this.session = OnnxSessionOptions.createSession(environment, pathToModel, sessionOptions);
+            this.expectedInputs = session.getInputNames();
+            this.tokenizer = new HuggingFaceTokenizer(pathToTokenizer, options);
+        } catch (OrtException e) {
+            throw new RuntimeException(e);
+        }
+        this.normalize = normalize;
+    }
+
+    @Override
+    public LlmResponse<List<Double>> scoreAll(List<TextSegment> segments, String query) {
+        ensureNotNull(query, "query");
+        if (segments == null || segments.isEmpty()) {
+            return LlmResponse.from(Collections.<Double>emptyList(), new TokenUsage(0));
+        }
+
+        int batchSize = segments.size();
+        List<String> passages = new ArrayList<>(batchSize);
+        for (TextSegment segment : segments) {
+            passages.add(segment.text());
+        }
+        Encoding[] encodings = tokenizer.batchEncode(Collections.nCopies(batchSize, query), passages);
+
+        int sequenceLength = encodings[0].getIds().length;
+        long[] inputIds = new long[batchSize * sequenceLength];
+        long[] attentionMask = new long[batchSize * sequenceLength];
+        long[] tokenTypeIds = new long[batchSize * sequenceLength];
+        int tokenCount = 0;
+        for (int i = 0; i < batchSize; i++) {
+            Encoding encoding = encodings[i];
+            if (encoding.getIds().length != sequenceLength) {
+                throw illegalArgument("The tokenizer did not pad the pairs to the same length");
+            }
+            int offset = i * sequenceLength;
+            System.arraycopy(encoding.getIds(), 0, inputIds, offset, sequenceLength);
+            System.arraycopy(encoding.getAttentionMask(), 0, attentionMask, offset, sequenceLength);
+            System.arraycopy(encoding.getTypeIds(), 0, tokenTypeIds, offset, sequenceLength);
+            for (long mask : encoding.getAttentionMask()) {
+                tokenCount += (int) mask;
+            }
+        }
+
+        long[] shape = {batchSize, sequenceLength};
+        try (
+                OnnxTensor inputIdsTensor = createTensor(environment, wrap(inputIds), shape);
+                OnnxTensor attentionMaskTensor = createTensor(environment, wrap(attentionMask), shape);
+                OnnxTensor tokenTypeIdsTensor = createTensor(environment, wrap(tokenTypeIds), shape)
+        ) {
+            Map<String, OnnxTensor> inputs = new HashMap<>();
+            inputs.put("input_ids", inputIdsTensor);
+            inputs.put("attention_mask", attentionMaskTensor);
+            if (expectedInputs.contains("token_type_ids")) {
+                inputs.put("token_type_ids", tokenTypeIdsTensor);
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                return LlmResponse.from(toScores(result.get(0), batchSize), new TokenUsage(tokenCount));
+            }
+        } catch (OrtException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<Double> toScores(OnnxValue output, int batchSize) throws OrtException {
+        Object value = output.getValue();
+        List<Double> scores = new ArrayList<>(batchSize);
+        if (value instanceof float[] logits) {
+            for (float logit : logits) {
+                scores.add(normalize ? sigmoid(logit) : logit);
+            }
+        } else if (value instanceof float[][] logits) {
+            for (float[] row : logits) {
+                if (row.length == 1) {
+                    scores.add(normalize ? sigmoid(row[0]) : row[0]);
+                } else if (row.length == 2) {
+                    scores.add(normalize ? sigmoid(row[1] - row[0]) : row[1]);
+                } else {
+                    throw illegalArgument("Unsupported cross-encoder output with %s logits per pair", row.length);
+                }
+            }
+        } else {
+            throw illegalArgument("Unsupported cross-encoder output: %s", output.getInfo());
+        }
+        return scores;
+    }
+
+    private static double sigmoid(float logit) {
+        return 1.0 / (1.0 + Math.exp(-logit));
+    }
+}
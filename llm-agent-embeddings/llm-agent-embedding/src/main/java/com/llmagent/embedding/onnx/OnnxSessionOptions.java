@@ -0,0 +1,212 @@
+package com.llmagent.embedding.onnx;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
+import static com.llmagent.util.ValidationUtil.ensureNotNull;
+
+/**
+ * Tuning of the ONNX runtime sessions created by the in-process models ({@link OnnxBertEncoder},
+ * {@link OnnxEmbeddingModel}, {@link OnnxScoringModel}, ...).
+ * <p>
+ * Unset options keep the ONNX runtime defaults. See the
+ * <a href="https://onnxruntime.ai/docs/performance/tune-performance/threading.html">ONNX runtime documentation</a>
+ * for their meaning.
+ * <p>
+ * Models stored in files are loaded by path, so that ONNX runtime reads them (and their external data files)
+ * directly, without copying them to the Java heap. With {@link Builder#memoryMapModel(Boolean)}, the model file is
+ * instead memory-mapped and handed to ONNX runtime as a buffer. This does not work with models having external data
+ * files, which ONNX runtime only resolves relative to the model path.
+ */
+public class OnnxSessionOptions {
+
+    private final Integer intraOpNumThreads;
+    private final Integer interOpNumThreads;
+    private final OrtSession.SessionOptions.OptLevel optimizationLevel;
+    private final OrtSession.SessionOptions.ExecutionMode executionMode;
+    private final Boolean cpuArenaAllocator;
+    private final Boolean memoryPatternOptimization;
+    private final Map<String, String> configEntries;
+    private final boolean memoryMapModel;
+
+    private OnnxSessionOptions(Builder builder) {
+        this.intraOpNumThreads = builder.intraOpNumThreads == null
+                ? null : ensureGreaterThanZero(builder.intraOpNumThreads, "intraOpNumThreads");
+        this.interOpNumThreads = builder.interOpNumThreads == null
+                ? null : ensureGreaterThanZero(builder.interOpNumThreads, "interOpNumThreads");
+        this.optimizationLevel = builder.optimizationLevel;
+        this.executionMode = builder.executionMode;
+        this.cpuArenaAllocator = builder.cpuArenaAllocator;
+        this.memoryPatternOptimization = builder.memoryPatternOptimization;
+        this.configEntries = Map.copyOf(builder.configEntries);
+        this.memoryMapModel = Boolean.TRUE.equals(builder.memoryMapModel);
+    }
+
+    /**
+     * Creates a session from a model file, by path or memory-mapped.
+     *
+     * @param environment the ONNX runtime environment
+     * @param model       the path to the model file
+     * @param options     the session options, or {@code null} for the defaults
+     * @return the session
+     */
+    public static OrtSession createSession(OrtEnvironment environment, Path model, OnnxSessionOptions options) throws OrtException {
+        ensureNotNull(model, "model");
+        try (OrtSession.SessionOptions sessionOptions = toSessionOptions(options)) {
+            if (options == null || !options.memoryMapModel) {
+                return environment.createSession(model.toString(), sessionOptions);
+            }
+            try (FileChannel channel = FileChannel.open(model, StandardOpenOption.READ)) {
+                // the mapping stays valid after the channel is closed
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return environment.createSession(buffer, sessionOptions);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map model " + model, e);
+            }
+        }
+    }
+
+    /**
+     * Creates a session from a model loaded in memory.
+     *
+     * @param environment the ONNX runtime environment
+     * @param model       the model
+     * @param options     the session options, or {@code null} for the defaults
+     * @return the session
+     */
+    public static OrtSession createSession(OrtEnvironment environment, byte[] model, OnnxSessionOptions options) throws OrtException {
+        try (OrtSession.SessionOptions sessionOptions = toSessionOptions(options)) {
+            return environment.createSession(model, sessionOptions);
+        }
+    }
+
+    private static OrtSession.SessionOptions toSessionOptions(OnnxSessionOptions options) throws OrtException {
+        OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
+        if (options == null) {
+            return sessionOptions;
+        }
+        try {
+            if (options.intraOpNumThreads != null) {
+                sessionOptions.setIntraOpNumThreads(options.intraOpNumThreads);
+            }
+            if (options.interOpNumThreads != null) {
+                sessionOptions.setInterOpNumThreads(options.interOpNumThreads);
+            }
+            if (options.optimizationLevel != null) {
+                sessionOptions.setOptimizationLevel(options.optimizationLevel);
+            }
+            if (options.executionMode != null) {
+                sessionOptions.setExecutionMode(options.executionMode);
+            }
+            if (options.cpuArenaAllocator != null) {
+                sessionOptions.setCPUArenaAllocator(options.cpuArenaAllocator);
+            }
+            if (options.memoryPatternOptimization != null) {
+                sessionOptions.setMemoryPatternOptimization(options.memoryPatternOptimization);
+            }
+            for (Map.Entry<String, String> entry : options.configEntries.entrySet()) {
+                sessionOptions.addConfigEntry(entry.getKey(), entry.getValue());
+            }
+            return sessionOptions;
+        } catch (OrtException e) {
+            sessionOptions.close();
+            throw e;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Integer intraOpNumThreads;
+        private Integer interOpNumThreads;
+        private OrtSession.SessionOptions.OptLevel optimizationLevel;
+        private OrtSession.SessionOptions.ExecutionMode executionMode;
+        private Boolean cpuArenaAllocator;
+        private Boolean memoryPatternOptimization;
+        private final Map<String, String> configEntries = new LinkedHashMap<>();
+        private Boolean memoryMapModel;
+
+        /**
+         * The number of threads used to parallelize the execution within operators.
+         */
+        public Builder intraOpNumThreads(Integer intraOpNumThreads) {
+            this.intraOpNumThreads = intraOpNumThreads;
+            return this;
+        }
+
+        /**
+         * The number of threads used to run operators in parallel, with {@code ExecutionMode.PARALLEL}.
+         */
+        public Builder interOpNumThreads(Integer interOpNumThreads) {
+            this.interOpNumThreads = interOpNumThreads;
+            return this;
+        }
+
+        /**
+         * The graph optimization level.
+         */
+        public Builder optimizationLevel(OrtSession.SessionOptions.OptLevel optimizationLevel) {
+            this.optimizationLevel = optimizationLevel;
+            return this;
+        }
+
+        /**
+         * Whether operators are run sequentially or in parallel.
+         */
+        public Builder executionMode(OrtSession.SessionOptions.ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Whether the CPU memory arena is used.
+         */
+        public Builder cpuArenaAllocator(Boolean cpuArenaAllocator) {
+            this.cpuArenaAllocator = cpuArenaAllocator;
+            return this;
+        }
+
+        /**
+         * Whether memory allocations are planned ahead from the first run. Best disabled when input shapes vary a lot.
+         */
+        public Builder memoryPatternOptimization(Boolean memoryPatternOptimization) {
+            this.memoryPatternOptimization = memoryPatternOptimization;
+            return this;
+        }
+
+        /**
+         * Any other session configuration entry, e.g. {@code session.intra_op.allow_spinning}.
+         */
+        public Builder configEntry(String key, String value) {
+            this.configEntries.put(ensureNotNull(key, "key"), ensureNotNull(value, "value"));
+            return this;
+        }
+
+        /**
+         * Whether model files are memory-mapped instead of loaded by path. Not supported by models with
+         * external data files. Default: false.
+         */
+        public Builder memoryMapModel(Boolean memoryMapModel) {
+            this.memoryMapModel = memoryMapModel;
+            return this;
+        }
+
+        public OnnxSessionOptions build() {
+            return new OnnxSessionOptions(this);
+        }
+    }
+}
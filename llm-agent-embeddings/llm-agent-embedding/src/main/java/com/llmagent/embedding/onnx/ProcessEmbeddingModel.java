@@ -1,39 +1,75 @@
 package com.llmagent.embedding.onnx;
 
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
 import com.llmagent.data.segment.TextSegment;
 import com.llmagent.llm.embedding.DimensionAwareEmbeddingModel;
 import com.llmagent.llm.output.LlmResponse;
 import com.llmagent.llm.output.TokenUsage;
 import com.llmagent.vector.store.VectorData;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 
+import static com.llmagent.exception.Exceptions.illegalArgument;
 import static com.llmagent.util.ObjectUtil.getOrDefault;
+import static com.llmagent.util.ValidationUtil.ensureGreaterThanZero;
 import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
-import static java.nio.file.Files.newInputStream;
-import static java.util.Collections.singletonList;
-import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  *
  * It provides methods for loading a model from a jar file or the file system, embedding segments of text, and handling parallel processing.
- * The class uses an executor for parallel processing and provides methods for creating a default executor or loading a model from different sources.
+ * Segments are embedded in padded batches of similar lengths, one inference call per batch,
+ * and the class uses an executor to run the batches in parallel.
  * Used to create Encoder {@link OnnxBertEncoder}
  */
 public abstract class ProcessEmbeddingModel extends DimensionAwareEmbeddingModel {
 
     // Executor to be used for parallel processing
     private final Executor executor;
+    // Maximum number of sequences per inference call
+    private final int maxBatchSize;
+    // Maximum number of tokens, padding included, per inference call
+    private final int maxBatchTokens;
+    // Number of tokens shared by consecutive windows of a long text
+    private final int windowOverlap;
 
     // Constructor to initialize the executor
     protected ProcessEmbeddingModel(Executor executor) {
+        this(executor, null, null);
+    }
+
+    /**
+     * @param executor       the executor running the inference calls concurrently, when the segments do not fit into a single batch
+     * @param maxBatchSize   the maximum number of sequences per inference call, defaults to {@link OnnxBertEncoder#DEFAULT_MAX_BATCH_SIZE}
+     * @param maxBatchTokens the maximum number of tokens, padding included, per inference call,
+     *                       defaults to {@link OnnxBertEncoder#DEFAULT_MAX_BATCH_TOKENS}
+     */
+    protected ProcessEmbeddingModel(Executor executor, Integer maxBatchSize, Integer maxBatchTokens) {
+        this(executor, maxBatchSize, maxBatchTokens, null);
+    }
+
+    /**
+     * @param executor       the executor running the inference calls concurrently, when the segments do not fit into a single batch
+     * @param maxBatchSize   the maximum number of sequences per inference call, defaults to {@link OnnxBertEncoder#DEFAULT_MAX_BATCH_SIZE}
+     * @param maxBatchTokens the maximum number of tokens, padding included, per inference call,
+     *                       defaults to {@link OnnxBertEncoder#DEFAULT_MAX_BATCH_TOKENS}
+     * @param windowOverlap  the number of tokens shared by consecutive 510-token windows of a long segment, defaults to 0
+     */
+    protected ProcessEmbeddingModel(Executor executor, Integer maxBatchSize, Integer maxBatchTokens, Integer windowOverlap) {
+        this.windowOverlap = getOrDefault(windowOverlap, 0);
+        if (this.windowOverlap < 0 || this.windowOverlap > 255) {
+            throw illegalArgument("windowOverlap must be between 0 and 255, but is: %s", windowOverlap);
+        }
         this.executor = getOrDefault(executor, this::createDefaultExecutor);
+        this.maxBatchSize = ensureGreaterThanZero(getOrDefault(maxBatchSize, OnnxBertEncoder.DEFAULT_MAX_BATCH_SIZE), "maxBatchSize");
+        this.maxBatchTokens = ensureGreaterThanZero(getOrDefault(maxBatchTokens, OnnxBertEncoder.DEFAULT_MAX_BATCH_TOKENS), "maxBatchTokens");
     }
 
     // Method to create a default executor
@@ -62,28 +98,38 @@ public abstract class ProcessEmbeddingModel extends DimensionAwareEmbeddingModel
 
     // Method to load the model from the file system
     protected static OnnxBertEncoder loadFromFileSystem(Path pathToModel, Path pathToTokenizer, PoolingMode poolingMode) {
-        try {
-            // Create a new OnnxBertEncoder with the input streams and pooling mode
-            return new OnnxBertEncoder(newInputStream(pathToModel), newInputStream(pathToTokenizer), poolingMode);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return loadFromFileSystem(pathToModel, pathToTokenizer, poolingMode, null);
+    }
+
+    // Method to load the model from the file system, by path, with tuned session options
+    protected static OnnxBertEncoder loadFromFileSystem(Path pathToModel, Path pathToTokenizer, PoolingMode poolingMode,
+                                                        OnnxSessionOptions sessionOptions) {
+        // ONNX runtime reads the model file itself, the model is not copied to the heap
+        return new OnnxBertEncoder(pathToModel, pathToTokenizer, poolingMode, sessionOptions);
     }
 
     // Method to load the model from the file system with a tokenizer input stream
     protected static OnnxBertEncoder loadFromFileSystem(Path pathToModel, InputStream tokenizer, PoolingMode poolingMode) {
         try {
-            // Create a new OnnxBertEncoder with the input streams and pooling mode
-            return new OnnxBertEncoder(newInputStream(pathToModel), tokenizer, poolingMode);
-        } catch (IOException e) {
+            // Create a session from the model path and a new OnnxBertEncoder with the tokenizer input stream and pooling mode
+            OrtEnvironment environment = OrtEnvironment.getEnvironment();
+            OrtSession session = OnnxSessionOptions.createSession(environment, pathToModel, null);
+            return new OnnxBertEncoder(environment, session, tokenizer, poolingMode);
+        } catch (OrtException e) {
             throw new RuntimeException(e);
         }
     }
 
     // Method to load the model from the file system with a path to the model and tokenizer
     protected static OnnxBertEncoder loadFromFileSystemPath(String modelPath, String modelFileName, String tokenizerFileName,  PoolingMode poolingMode) {
+        return loadFromFileSystemPath(modelPath, modelFileName, tokenizerFileName, poolingMode, null);
+    }
+
+    // Method to load the model from the file system with a path to the model and tokenizer, with tuned session options
+    protected static OnnxBertEncoder loadFromFileSystemPath(String modelPath, String modelFileName, String tokenizerFileName,
+                                                            PoolingMode poolingMode, OnnxSessionOptions sessionOptions) {
         // Create a new OnnxBertEncoder with the path to the model and tokenizer and pooling mode
-        return new OnnxBertEncoder(modelPath, modelFileName, tokenizerFileName, poolingMode);
+        return new OnnxBertEncoder(Paths.get(modelPath + modelFileName), Paths.get(modelPath + tokenizerFileName), poolingMode, sessionOptions);
     }
 
     // Abstract method to load the model
@@ -94,47 +140,26 @@ public abstract class ProcessEmbeddingModel extends DimensionAwareEmbeddingModel
     public LlmResponse<List<VectorData>> embedAll(List<TextSegment> segments) {
         // Ensure that the segments are not empty
         ensureNotEmpty(segments, "segments");
-        // If there is only one segment, embed it in the same thread
-        if (segments.size() == 1) {
-            return embedInTheSameThread(segments.get(0));
-        } else {
-            // Otherwise, parallelize the embedding
-            return parallelizeEmbedding(segments);
+        List<String> texts = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            texts.add(segment.text());
         }
-    }
 
-    // Method to embed a single segment in the same thread
-    private LlmResponse<List<VectorData>> embedInTheSameThread(TextSegment segment) {
-        // Embed the segment and get the embedding and token count
-        OnnxBertEncoder.EmbeddingAndTokenCount embeddingAndTokenCount = model().embed(segment.text());
-        // Return the embedding and token count
-        return LlmResponse.from(
-                singletonList(VectorData.from(embeddingAndTokenCount.embedding)),
-                new TokenUsage(embeddingAndTokenCount.tokenCount - 2) // do not count special tokens [CLS] and [SEP])
-        );
-    }
-
-    // Method to parallelize the embedding of multiple segments
-    private LlmResponse<List<VectorData>> parallelizeEmbedding(List<TextSegment> segments) {
-        // Create a list of futures for each segment
-        List<CompletableFuture<OnnxBertEncoder.EmbeddingAndTokenCount>> futures = segments.stream()
-                .map(segment -> supplyAsync(() -> model().embed(segment.text()), executor)).toList();
+        List<OnnxBertEncoder.EmbeddingAndTokenCount> embeddingAndTokenCounts = encode(texts);
 
         int inputTokenCount = 0;
-        List<VectorData> embeddings = new ArrayList<>();
-
-        // Get the embedding and token count for each future
-        for (CompletableFuture<OnnxBertEncoder.EmbeddingAndTokenCount> future : futures) {
-            try {
-                OnnxBertEncoder.EmbeddingAndTokenCount embeddingAndTokenCount = future.get();
-                embeddings.add(VectorData.from(embeddingAndTokenCount.embedding));
-                inputTokenCount += embeddingAndTokenCount.tokenCount - 2; // do not count special tokens [CLS] and [SEP]
-            } catch (InterruptedException | ExecutionException e) {
-                throw new RuntimeException(e);
-            }
+        List<VectorData> embeddings = new ArrayList<>(embeddingAndTokenCounts.size());
+        for (OnnxBertEncoder.EmbeddingAndTokenCount embeddingAndTokenCount : embeddingAndTokenCounts) {
+            embeddings.add(VectorData.from(embeddingAndTokenCount.embedding));
+            inputTokenCount += embeddingAndTokenCount.tokenCount - 2; // do not count special tokens [CLS] and [SEP]
         }
 
         // Return the embeddings and token count
         return LlmResponse.from(embeddings, new TokenUsage(inputTokenCount));
     }
+
+    // Method to embed the texts in padded batches, a single text is embedded in the same thread
+    List<OnnxBertEncoder.EmbeddingAndTokenCount> encode(List<String> texts) {
+        return model().embedAll(texts, maxBatchSize, maxBatchTokens, windowOverlap, texts.size() == 1 ? null : executor);
+    }
 }
@@ -16,6 +16,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
@@ -92,6 +93,11 @@ public class DefaultMcpClient implements McpClient {
      */
     private final ConcurrentHashMap<String, McpSchema.Root> roots;
 
+    /**
+     * Consumers of the new tool list, notified whenever the server reports that its tools changed.
+     */
+    private final List<Function<List<McpSchema.Tool>, Mono<Void>>> toolsChangeConsumers = new CopyOnWriteArrayList<>();
+
     protected final Sinks.One<McpSchema.InitializeResult> initializedSink = Sinks.one();
     private AtomicBoolean initialized = new AtomicBoolean(false);
 
@@ -122,10 +128,9 @@ public class DefaultMcpClient implements McpClient {
         Map<String, NotificationHandler> notificationHandlers = new HashMap<>();
 
         // Tools Change Notification
-        List<Function<List<McpSchema.Tool>, Mono<Void>>> toolsChangeConsumers = new ArrayList<>();
         toolsChangeConsumers
                 .add((notification) -> Mono.fromRunnable(() -> logger.debug("Tools changed: {}", notification)));
-        // TODO add tool change consumers from builder
+        toolsChangeConsumers.addAll(builder.toolsChangeConsumers);
         notificationHandlers.put(McpSchema.METHOD_NOTIFICATION_TOOLS_LIST_CHANGED,
                 asyncToolsChangeNotificationHandler(toolsChangeConsumers));
 
@@ -217,6 +222,16 @@ public class DefaultMcpClient implements McpClient {
         };
     }
 
+    @Override
+    public boolean isInitialized() {
+        return this.initialized.get();
+    }
+
+    @Override
+    public void addToolsChangeConsumer(Function<List<McpSchema.Tool>, Mono<Void>> toolsChangeConsumer) {
+        this.toolsChangeConsumers.add(ensureNotNull(toolsChangeConsumer, "toolsChangeConsumer"));
+    }
+
     @Override
     public Mono<Void> closeGracefully() {
         return this.mcpSession.closeGracefully();
@@ -408,6 +423,7 @@ public class DefaultMcpClient implements McpClient {
         private McpLogMessageHandler logHandler;
         private Duration reconnectInterval;
         private McpSchema.ClientCapabilities clientCapabilities;
+        private final List<Function<List<McpSchema.Tool>, Mono<Void>>> toolsChangeConsumers = new ArrayList<>();
 
         public Builder transport(McpClientTransport transport) {
             this.transport = transport;
@@ -526,6 +542,15 @@ public class DefaultMcpClient implements McpClient {
             return this;
         }
 
+        /**
+         * Adds a consumer of the new tool list, invoked whenever the server sends
+         * a {@code notifications/tools/list_changed} notification.
+         */
+        public Builder toolsChangeConsumer(Function<List<McpSchema.Tool>, Mono<Void>> toolsChangeConsumer) {
+            this.toolsChangeConsumers.add(toolsChangeConsumer);
+            return this;
+        }
+
         public DefaultMcpClient build() {
             return new DefaultMcpClient(this);
         }
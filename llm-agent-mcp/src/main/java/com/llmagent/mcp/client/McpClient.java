@@ -3,6 +3,9 @@ package com.llmagent.mcp.client;
 import com.llmagent.mcp.spec.McpSchema;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.function.Function;
+
 
 public interface McpClient extends AutoCloseable {
 
@@ -14,6 +17,26 @@ public interface McpClient extends AutoCloseable {
      */
     Mono<McpSchema.InitializeResult> initialize();
 
+    /**
+     * The default implementation always returns {@code false}, so that callers initialize the client
+     * before every interaction, as they did before this method existed.
+     *
+     * @return {@code true} once the initialization phase with the server has completed.
+     */
+    default boolean isInitialized() {
+        return false;
+    }
+
+    /**
+     * Registers a consumer of the new tool list, invoked whenever the server sends
+     * a {@code notifications/tools/list_changed} notification.
+     * <p>
+     * The default implementation ignores the consumer: clients that do not support change notifications
+     * should be combined with a cache TTL when their tool listing is cached.
+     */
+    default void addToolsChangeConsumer(Function<List<McpSchema.Tool>, Mono<Void>> toolsChangeConsumer) {
+    }
+
     /**
      * Gracefully closes the client connection.
      * @return a {@link Mono <Void>} that completes when the connection has been closed.
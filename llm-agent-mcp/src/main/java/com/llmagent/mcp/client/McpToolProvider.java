@@ -1,6 +1,7 @@
 package com.llmagent.mcp.client;
 
 import com.llmagent.exception.McpRetrieveToolException;
+import com.llmagent.llm.tool.ToolExecutor;
 import com.llmagent.llm.tool.ToolProvider;
 import com.llmagent.llm.tool.ToolProviderRequest;
 import com.llmagent.llm.tool.ToolProviderResult;
@@ -8,50 +9,198 @@ import com.llmagent.llm.tool.ToolSpecification;
 import com.llmagent.mcp.spec.McpSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.llmagent.mcp.client.McpHelper.*;
 import static com.llmagent.util.ObjectUtil.getOrDefault;
 import static com.llmagent.util.ValidationUtil.ensureNotNull;
 
+/**
+ * A {@link ToolProvider} exposing the tools of one or more MCP servers.
+ * <p>
+ * By default, the tool listing of every server is cached: servers are initialized and queried (in parallel)
+ * only when the cache is empty, when a server sends a {@code notifications/tools/list_changed} notification,
+ * or, if configured, when the cache TTL has elapsed. Servers that failed to list their tools are queried again
+ * on the next request.
+ */
 public class McpToolProvider implements ToolProvider {
     private static final Logger log = LoggerFactory.getLogger(McpToolProvider.class);
     private final List<McpClient> mcpClients;
     private final boolean failAll;
+    private final boolean cacheTools;
+    private final Duration cacheTtl;
+
+    /**
+     * The tools of each client whose listing is cached, in the order of {@link #mcpClients}.
+     */
+    private final Map<McpClient, Map<ToolSpecification, ToolExecutor>> toolsByClient = new ConcurrentHashMap<>();
+    /**
+     * Incremented whenever a server reports that its tools changed,
+     * so that a refresh racing with the notification does not cache a stale result.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private volatile ToolProviderResult cachedResult;
+    private volatile long cachedAtNanos;
 
     private McpToolProvider(Builder builder) {
         this.mcpClients = new ArrayList<>(builder.mcpClients);
         this.failAll = getOrDefault(builder.failAll, false);
+        this.cacheTools = getOrDefault(builder.cacheTools, true);
+        this.cacheTtl = builder.cacheTtl;
+        if (cacheTools) {
+            for (McpClient mcpClient : mcpClients) {
+                mcpClient.addToolsChangeConsumer(tools -> Mono.fromRunnable(() -> toolsChanged(mcpClient, tools)));
+            }
+        }
     }
 
     @Override
     public ToolProviderResult provideTools(ToolProviderRequest request) {
+        if (!cacheTools) {
+            Map<McpClient, Map<ToolSpecification, ToolExecutor>> tools = new LinkedHashMap<>();
+            for (Tuple2<McpClient, McpSchema.ListToolsResult> listing : listTools(mcpClients)) {
+                tools.put(listing.getT1(), toTools(listing.getT1(), listing.getT2().tools()));
+            }
+            return toResult(tools);
+        }
+
+        ToolProviderResult result = cachedResult;
+        if (result != null && !expired()) {
+            return result;
+        }
+        synchronized (this) {
+            result = cachedResult;
+            if (result != null && !expired()) {
+                return result;
+            }
+            if (expired()) {
+                toolsByClient.clear();
+            }
+            long generationBeforeRefresh = generation.get();
+            refresh(generationBeforeRefresh);
+            result = toResult(toolsByClient);
+            // a partial result is not cached, so that the failed servers are queried again on the next request
+            if (toolsByClient.keySet().containsAll(mcpClients) && generation.get() == generationBeforeRefresh) {
+                cachedAtNanos = System.nanoTime();
+                cachedResult = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Drops all cached tool listings, so that every MCP server is queried again on the next request.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        toolsByClient.clear();
+        cachedResult = null;
+    }
+
+    private boolean expired() {
+        return cacheTtl != null && System.nanoTime() - cachedAtNanos > cacheTtl.toNanos();
+    }
+
+    /**
+     * Lists the tools of all clients missing from {@link #toolsByClient} in parallel and caches them.
+     * A listing is only published while no change notification or invalidation happened since
+     * {@code generationBeforeRefresh}: the compare and the put are atomic for the client's entry,
+     * so a newer listing delivered by a notification is never overwritten by a stale one.
+     * Clients whose listing was discarded are queried again on the next request.
+     */
+    private void refresh(long generationBeforeRefresh) {
+        List<McpClient> staleClients = new ArrayList<>();
+        for (McpClient mcpClient : mcpClients) {
+            if (!toolsByClient.containsKey(mcpClient)) {
+                staleClients.add(mcpClient);
+            }
+        }
+        if (staleClients.isEmpty()) {
+            return;
+        }
+
+        for (Tuple2<McpClient, McpSchema.ListToolsResult> listing : listTools(staleClients)) {
+            Map<ToolSpecification, ToolExecutor> tools = toTools(listing.getT1(), listing.getT2().tools());
+            toolsByClient.compute(listing.getT1(),
+                    (mcpClient, current) -> generation.get() == generationBeforeRefresh ? tools : current);
+        }
+    }
+
+    private ToolProviderResult toResult(Map<McpClient, Map<ToolSpecification, ToolExecutor>> toolsByClient) {
         ToolProviderResult.Builder builder = ToolProviderResult.builder();
         for (McpClient mcpClient : mcpClients) {
-            try {
-                McpSchema.ListToolsResult listToolsResult = mcpClient.initialize().then(mcpClient.listTools()).block();
-                ensureNotNull(listToolsResult, "Failed to retrieve tools from MCP server");
-                List<ToolSpecification> toolSpecifications = toToolSpecifications(listToolsResult);
-                for (ToolSpecification toolSpecification : toolSpecifications) {
-                    builder.add(
-                        toolSpecification, (toolRequest, memoryId) -> {
-                            McpSchema.CallToolResult callResult = mcpClient.executeTool(toMcpTooRequest(toolRequest)).block();
-                            return mapClientResultToString(callResult);
-                        });
-                }
-            } catch (Exception e) {
-                if (failAll) {
-                    throw new McpRetrieveToolException("Failed to retrieve tools from MCP server", e);
-                } else {
-                    log.warn("Failed to retrieve tools from MCP server", e);
-                }
+            Map<ToolSpecification, ToolExecutor> tools = toolsByClient.get(mcpClient);
+            if (tools != null) {
+                builder.addAll(tools);
             }
         }
         return builder.build();
     }
 
+    /**
+     * Lists the tools of the given clients in parallel, omitting the clients that failed unless {@link #failAll}.
+     */
+    private List<Tuple2<McpClient, McpSchema.ListToolsResult>> listTools(List<McpClient> mcpClients) {
+        return Flux.fromIterable(mcpClients)
+                .flatMap(mcpClient -> listTools(mcpClient).map(result -> Tuples.of(mcpClient, result)))
+                .collectList()
+                .block();
+    }
+
+    private Mono<McpSchema.ListToolsResult> listTools(McpClient mcpClient) {
+        Mono<McpSchema.ListToolsResult> listTools = mcpClient.isInitialized()
+                ? mcpClient.listTools()
+                : mcpClient.initialize().then(mcpClient.listTools());
+        return listTools
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Failed to retrieve tools from MCP server")))
+                .onErrorResume(e -> {
+                    if (failAll) {
+                        return Mono.error(new McpRetrieveToolException("Failed to retrieve tools from MCP server", e));
+                    }
+                    log.warn("Failed to retrieve tools from MCP server", e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Invoked on the transport's thread, hence must not wait for {@link #provideTools}, which may itself be
+     * waiting for a response delivered by that thread.
+     */
+    private void toolsChanged(McpClient mcpClient, List<McpSchema.Tool> tools) {
+        generation.incrementAndGet();
+        try {
+            toolsByClient.put(mcpClient, toTools(mcpClient, tools));
+        } catch (Exception e) {
+            log.warn("Failed to convert the changed tools of MCP server", e);
+            toolsByClient.remove(mcpClient);
+        }
+        cachedResult = null;
+    }
+
+    private static Map<ToolSpecification, ToolExecutor> toTools(McpClient mcpClient, List<McpSchema.Tool> tools) {
+        List<ToolSpecification> toolSpecifications = toToolSpecifications(new McpSchema.ListToolsResult(tools, null));
+        Map<ToolSpecification, ToolExecutor> result = new LinkedHashMap<>();
+        for (ToolSpecification toolSpecification : toolSpecifications) {
+            result.put(
+                toolSpecification, (toolRequest, memoryId) -> {
+                    McpSchema.CallToolResult callResult = mcpClient.executeTool(toMcpTooRequest(toolRequest)).block();
+                    return mapClientResultToString(callResult);
+                });
+        }
+        return result;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -60,6 +209,8 @@ public class McpToolProvider implements ToolProvider {
 
         private List<McpClient> mcpClients;
         private Boolean failAll;
+        private Boolean cacheTools;
+        private Duration cacheTtl;
 
         /**
          * The list of MCP clients to use for tools.
@@ -78,7 +229,27 @@ public class McpToolProvider implements ToolProvider {
             return this;
         }
 
+        /**
+         * If this is true (default), the tool listing of every server is cached until the server reports
+         * that its tools changed or until the {@link #cacheTtl(Duration)} elapses.
+         * If this is false, all servers are queried on every request.
+         */
+        public McpToolProvider.Builder cacheTools(boolean cacheTools) {
+            this.cacheTools = cacheTools;
+            return this;
+        }
+
+        /**
+         * The maximum time the cached tool listings are used before all servers are queried again.
+         * By default, the cache only expires when a server reports that its tools changed.
+         */
+        public McpToolProvider.Builder cacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+            return this;
+        }
+
         public McpToolProvider build() {
+            ensureNotNull(mcpClients, "mcpClients");
             return new McpToolProvider(this);
         }
     }
@@ -40,7 +40,7 @@ public class Mapper {
 
     static List<List<Float>> toVectors(List<VectorData> embeddings) {
         return embeddings.stream()
-                .map(VectorData::vectorAsList)
+                .map(VectorData::asList)
                 .collect(toList());
     }
 
@@ -3,6 +3,7 @@ package com.llmagent;
 import com.llmagent.data.Metadata;
 import com.llmagent.data.segment.TextSegment;
 import com.llmagent.util.UUIDUtil;
+import com.llmagent.vector.quantization.VectorQuantization;
 import com.llmagent.vector.store.*;
 import com.llmagent.vector.store.filter.Filter;
 import io.milvus.client.MilvusServiceClient;
@@ -24,6 +25,7 @@ import static com.llmagent.Generator.generateRandomIds;
 import static com.llmagent.Mapper.*;
 import static com.llmagent.MilvusMetadataFilterMapper.formatValues;
 import static com.llmagent.MilvusMetadataFilterMapper.map;
+import static com.llmagent.exception.Exceptions.illegalArgument;
 import static com.llmagent.util.ObjectUtil.getOrDefault;
 import static com.llmagent.util.ObjectUtil.isNullOrEmpty;
 import static com.llmagent.util.ValidationUtil.ensureNotEmpty;
@@ -179,7 +181,7 @@ public class MilvusStore implements EmbeddingStore<TextSegment> {
         SearchParam searchParam = buildSearchRequest(
                 collectionName,
                 fieldDefinition,
-                embeddingSearchRequest.queryEmbedding().vectorAsList(),
+                embeddingSearchRequest.queryEmbedding().asList(),
                 embeddingSearchRequest.filter(),
                 embeddingSearchRequest.maxResults(),
                 metricType,
@@ -305,6 +307,7 @@ public class MilvusStore implements EmbeddingStore<TextSegment> {
         private Integer dimension;
         private IndexType indexType;
         private MetricType metricType;
+        private VectorQuantization quantization;
         private String uri;
         private String token;
         private String username;
@@ -385,6 +388,20 @@ public class MilvusStore implements EmbeddingStore<TextSegment> {
             return this;
         }
 
+        /**
+         * @param quantization The quantization of the vectors in the index, which selects the index type: it cannot
+         *                     be combined with {@link #indexType(IndexType)}.
+         *                     {@link VectorQuantization#INT8} maps to IVF_SQ8, which scans 8-bit scalar-quantized
+         *                     codes. {@link VectorQuantization#BINARY} is not supported: the binary index types of
+         *                     Milvus require a binary vector field, while this store writes float vectors.
+         *                     Default value: NONE.
+         * @return builder
+         */
+        public Builder quantization(VectorQuantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
         /**
          * @param uri The URI of the managed Milvus instance.
          * @return builder
@@ -510,6 +527,11 @@ public class MilvusStore implements EmbeddingStore<TextSegment> {
         }
 
         public MilvusStore build() {
+            if (this.indexType != null && quantization != null && quantization != VectorQuantization.NONE) {
+                throw illegalArgument("The quantization %s selects the index type, it cannot be combined with the "
+                        + "index type %s", quantization, this.indexType);
+            }
+            IndexType indexType = this.indexType != null ? this.indexType : quantizedIndexType(quantization);
             if (milvusClient == null) {
                 return new MilvusStore(
                         host,
@@ -547,5 +569,17 @@ public class MilvusStore implements EmbeddingStore<TextSegment> {
                     vectorFieldName
             );
         }
+
+        private static IndexType quantizedIndexType(VectorQuantization quantization) {
+            if (quantization == null) {
+                return null;
+            }
+            return switch (quantization) {
+                case INT8 -> IndexType.IVF_SQ8;
+                case BINARY -> throw illegalArgument("Binary quantization requires a binary vector field, " +
+                        "but the vector field of the Milvus collection holds float vectors");
+                case NONE -> null;
+            };
+        }
     }
 }
@@ -0,0 +1,242 @@
+package com.llmagent;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A minimal bounded pool of connections, used by {@link PgVectorStore} when no pooled {@link DataSource} is provided.
+ * <p>
+ * At most {@code maxSize} connections are open; {@link #getConnection()} waits up to {@code timeoutMillis} for one
+ * to be returned. Borrowed connections are proxies: closing them returns the physical connection to the pool,
+ * rolled back if a transaction was left open. Idle connections are reused last in, first out, so that the pool
+ * shrinks back to the connections actually needed: connections idle for more than 10 minutes are closed.
+ * <p>
+ * A connection idle for more than a second is checked with {@link Connection#isValid(int)} before it is reused, so
+ * that connections dropped by the server or a firewall meanwhile are replaced rather than failing the caller's
+ * statement. Connections are closed after 30 minutes, when returned, so that they do not outlive server-side
+ * limits. Connections closed by the driver, e.g. after an I/O error, are dropped.
+ */
+@Slf4j
+class PgConnectionPool implements DataSource, AutoCloseable {
+
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long MAX_LIFETIME_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+    private final DataSource source;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    // the most recently returned connection first
+    private final BlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+    private volatile boolean closed;
+
+    /**
+     * @param source        the source of the physical connections, e.g. a {@code PGSimpleDataSource}.
+     * @param maxSize       the maximum number of open connections.
+     * @param timeoutMillis how long to wait for a connection when {@code maxSize} are borrowed.
+     */
+    PgConnectionPool(DataSource source, int maxSize, long timeoutMillis) {
+        this.source = source;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + timeoutMillis + " ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            closeExpiredIdle();
+            Idle candidate;
+            while ((candidate = idle.pollFirst()) != null) {
+                if (isReusable(candidate)) {
+                    return borrow(candidate.connection, candidate.createdNanos);
+                }
+                closeQuietly(candidate.connection);
+            }
+            return borrow(source.getConnection(), System.nanoTime());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private static boolean isReusable(Idle candidate) {
+        long now = System.nanoTime();
+        if (now - candidate.createdNanos > MAX_LIFETIME_NANOS) {
+            return false;
+        }
+        try {
+            if (now - candidate.idleSinceNanos < VALIDATE_AFTER_IDLE_NANOS) {
+                return !candidate.connection.isClosed();
+            }
+            return candidate.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            log.debug("Dropping a connection that could not be validated", e);
+            return false;
+        }
+    }
+
+    private Connection borrow(Connection physical, long createdNanos) {
+        boolean[] returned = {false};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!returned[0]) {
+                                returned[0] = true;
+                                release(physical, createdNanos);
+                            }
+                            return null;
+                        case "isClosed":
+                            return returned[0] || physical.isClosed();
+                        case "unwrap":
+                        case "isWrapperFor":
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled " + physical;
+                        default:
+                            if (returned[0]) {
+                                throw new SQLException("The connection is closed");
+                            }
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void release(Connection physical, long createdNanos) {
+        try {
+            long now = System.nanoTime();
+            if (closed || now - createdNanos > MAX_LIFETIME_NANOS || physical.isClosed()) {
+                physical.close();
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idle.offerFirst(new Idle(physical, createdNanos, now));
+        } catch (SQLException e) {
+            log.debug("Dropping a connection that could not be reset", e);
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+        if (closed) {
+            // closed while the connection was being returned
+            closeIdle();
+        }
+    }
+
+    /**
+     * Closes the idle connections. Borrowed connections are closed once returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        Idle connection;
+        while ((connection = idle.pollFirst()) != null) {
+            closeQuietly(connection.connection);
+        }
+    }
+
+    /**
+     * Closes the connections idle for more than {@link #IDLE_TIMEOUT_NANOS}, which are the last ones of the deque.
+     */
+    private void closeExpiredIdle() {
+        Idle oldest;
+        while ((oldest = idle.peekLast()) != null && System.nanoTime() - oldest.idleSinceNanos > IDLE_TIMEOUT_NANOS) {
+            if (idle.removeLastOccurrence(oldest)) {
+                closeQuietly(oldest.connection);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close a connection", e);
+        }
+    }
+
+    private record Idle(Connection connection, long createdNanos, long idleSinceNanos) {
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The credentials are set on the pooled data source");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        source.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        source.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return source.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        }
+        return source.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || source.isWrapperFor(type);
+    }
+}
@@ -2,28 +2,47 @@ package com.llmagent;
 
 public enum PgDistanceType {
 
-    EUCLIDEAN_DISTANCE("<->", "vector_l2_ops",
+    EUCLIDEAN_DISTANCE("<->", "vector_l2_ops", "halfvec_l2_ops",
             "SELECT *, embedding <-> ? AS distance FROM %s WHERE embedding <-> ? < ? %s ORDER BY distance LIMIT ? "),
 
     // NOTE: works only if If vectors are normalized to length 1 (like OpenAI
     // embeddings), use inner product for best performance.
     // The Sentence transformers are NOT normalized:
     // https://github.com/UKPLab/sentence-transformers/issues/233
-    NEGATIVE_INNER_PRODUCT("<#>", "vector_ip_ops",
+    NEGATIVE_INNER_PRODUCT("<#>", "vector_ip_ops", "halfvec_ip_ops",
             "SELECT *, (1 + (embedding <#> ?)) AS distance FROM %s WHERE (1 + (embedding <#> ?)) < ? %s ORDER BY distance LIMIT ? "),
 
-    COSINE_DISTANCE("<=>", "vector_cosine_ops",
+    COSINE_DISTANCE("<=>", "vector_cosine_ops", "halfvec_cosine_ops",
             "SELECT *, embedding <=> ? AS distance FROM %s WHERE embedding <=> ? < ? %s ORDER BY distance LIMIT ? ");
 
     public final String operator;
 
     public final String index;
 
+    /**
+     * The operator class of an index on {@code halfvec} (half precision) embeddings.
+     */
+    public final String halfvecIndex;
+
     public final String similaritySearchSqlTemplate;
 
-    PgDistanceType(String operator, String index, String sqlTemplate) {
+    PgDistanceType(String operator, String index, String halfvecIndex, String sqlTemplate) {
         this.operator = operator;
         this.index = index;
+        this.halfvecIndex = halfvecIndex;
         this.similaritySearchSqlTemplate = sqlTemplate;
     }
+
+    /**
+     * The distance between an embedding and a query, lower being closer, as in {@link #similaritySearchSqlTemplate}:
+     * the negative inner product is shifted to {@code 1 - inner product}, like the cosine distance.
+     *
+     * @param embedding the SQL expression of the stored embedding.
+     * @param query     the SQL expression of the query embedding.
+     * @return the SQL expression of the distance.
+     */
+    public String distance(String embedding, String query) {
+        String distance = embedding + " " + operator + " " + query;
+        return this == NEGATIVE_INNER_PRODUCT ? "(1 + (" + distance + "))" : "(" + distance + ")";
+    }
 }
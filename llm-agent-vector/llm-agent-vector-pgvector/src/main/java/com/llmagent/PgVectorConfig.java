@@ -32,6 +32,10 @@ public class PgVectorConfig implements Serializable {
 
     private Integer dimension = 1536;
 
+    private Integer maxPoolSize = 10;
+
+    private Long poolTimeoutMillis = 30_000L;
+
     public PgVectorConfig() {
     }
 
@@ -49,6 +53,15 @@ public class PgVectorConfig implements Serializable {
         this.dimension = dimension;
     }
 
+    public PgVectorConfig(String host, Integer port, String databaseName, String username, String password,
+                          boolean dropTableIfExist, boolean needCreateTable, Integer indexListSize, String schemaName, Integer dimension,
+                          Integer maxPoolSize, Long poolTimeoutMillis) {
+        this(host, port, databaseName, username, password, dropTableIfExist, needCreateTable, indexListSize, schemaName,
+                dimension);
+        this.maxPoolSize = maxPoolSize;
+        this.poolTimeoutMillis = poolTimeoutMillis;
+    }
+
     public String getHost() {
         return host;
     }
@@ -129,6 +142,22 @@ public class PgVectorConfig implements Serializable {
         this.dimension = dimension;
     }
 
+    public Integer getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(Integer maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public Long getPoolTimeoutMillis() {
+        return poolTimeoutMillis;
+    }
+
+    public void setPoolTimeoutMillis(Long poolTimeoutMillis) {
+        this.poolTimeoutMillis = poolTimeoutMillis;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -148,6 +177,10 @@ public class PgVectorConfig implements Serializable {
 
         private Integer dimension = 1536;
 
+        private Integer maxPoolSize = 10;
+
+        private Long poolTimeoutMillis = 30_000L;
+
         public Builder host(String host) {
             this.host = host;
             return this;
@@ -190,9 +223,25 @@ public class PgVectorConfig implements Serializable {
             return this;
         }
 
+        /**
+         * The maximum number of connections of the built-in pool, unused when the store is given a data source.
+         */
+        public Builder maxPoolSize(Integer maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+            return this;
+        }
+
+        /**
+         * How long to wait for a connection of the built-in pool when all are in use, in milliseconds. Must be positive.
+         */
+        public Builder poolTimeoutMillis(Long poolTimeoutMillis) {
+            this.poolTimeoutMillis = poolTimeoutMillis;
+            return this;
+        }
+
         public PgVectorConfig build() {
             return new PgVectorConfig(host, port, databaseName, username, password, dropTableIfExist, needCreateTable,
-                    indexListSize, schemaName, dimension);
+                    indexListSize, schemaName, dimension, maxPoolSize, poolTimeoutMillis);
         }
     }
 }
@@ -20,10 +20,12 @@ import com.llmagent.data.document.Document;
 import com.llmagent.data.segment.TextSegment;
 import com.llmagent.util.StringUtil;
 import com.llmagent.util.VectorUtil;
+import com.llmagent.vector.quantization.VectorQuantization;
 import com.llmagent.vector.store.*;
 import com.llmagent.vector.store.filter.Filter;
 import com.pgvector.PGvector;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
 import org.postgresql.ds.PGSimpleDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +36,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static com.llmagent.exception.Exceptions.illegalArgument;
+import static com.llmagent.util.ObjectUtil.getOrDefault;
 import static com.llmagent.util.ObjectUtil.isNullOrEmpty;
 import static com.llmagent.util.StringUtil.isNotNullOrBlank;
 import static com.llmagent.util.UUIDUtil.randomUUID;
@@ -43,12 +47,27 @@ import static java.util.Collections.nCopies;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 
+/**
+ * An {@link EmbeddingStore} backed by PostgreSQL with the pgvector extension.
+ * <p>
+ * Connections come from a pooled {@link DataSource} given to the {@link Builder#dataSource(DataSource) builder},
+ * or from a built-in pool sized by {@link PgVectorConfig#getMaxPoolSize()}, closed with {@link #close()}. The vector
+ * extension is created once, when the store is initialized, and the vector type is registered once per physical
+ * connection.
+ */
 @Slf4j
-public class PgVectorStore implements EmbeddingStore<TextSegment> {
+public class PgVectorStore implements EmbeddingStore<TextSegment>, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(PgVectorStore.class);
 
+    private static final int DEFAULT_RESCORE_FACTOR = 4;
+
     private final DataSource datasource;
+    // the built-in pool, null if the data source is managed by the caller
+    private final PgConnectionPool pool;
+    // the physical connections the vector type is registered on, weakly referenced to forget the closed ones
+    private final Set<PGConnection> registeredConnections = Collections.newSetFromMap(
+            Collections.synchronizedMap(new WeakHashMap<>()));
 
     private final String table;
 
@@ -60,15 +79,50 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
     private final BizDataHandler bizDataHandler;
     private final String schema;
 
+    private final int dimension;
+    private final VectorQuantization quantization;
+    private final int rescoreFactor;
+
     public PgVectorStore(PgVectorConfig config, String table, PgIndexType createIndexMethod,
                          PgDistanceType distanceType,
                          MetadataStorageConfig metadataStorageConfig,
                          BizDataHandler bizDataHandler) {
+        this(config, table, createIndexMethod, distanceType, metadataStorageConfig, bizDataHandler,
+                VectorQuantization.NONE, null, null);
+    }
 
-        this.datasource = createDataSource(config.getHost(), config.getPort(), config.getUsername(),
-                config.getPassword(), config.getDatabaseName());
+    /**
+     * @param quantization  the quantization of the embeddings in the index, see {@link Builder#quantization}.
+     * @param rescoreFactor the number of candidates read from the quantized index per requested result,
+     *                      4 if {@code null}.
+     * @param dataSource    a pooled data source managed by the caller, or {@code null} to connect with the
+     *                      settings of {@code config} through a built-in pool.
+     */
+    public PgVectorStore(PgVectorConfig config, String table, PgIndexType createIndexMethod,
+                         PgDistanceType distanceType,
+                         MetadataStorageConfig metadataStorageConfig,
+                         BizDataHandler bizDataHandler,
+                         VectorQuantization quantization,
+                         Integer rescoreFactor,
+                         DataSource dataSource) {
+
+        if (dataSource != null) {
+            this.datasource = dataSource;
+            this.pool = null;
+        } else {
+            Long poolTimeoutMillis = config.getPoolTimeoutMillis();
+            if (poolTimeoutMillis == null || poolTimeoutMillis <= 0) {
+                throw illegalArgument("config#poolTimeoutMillis must be greater than zero, but is: %s", poolTimeoutMillis);
+            }
+            this.pool = new PgConnectionPool(
+                    createDataSource(config.getHost(), config.getPort(), config.getUsername(),
+                            config.getPassword(), config.getDatabaseName()),
+                    ensureGreaterThanZero(config.getMaxPoolSize(), "config#maxPoolSize"),
+                    poolTimeoutMillis);
+            this.datasource = pool;
+        }
         this.table = table;
-        this.distanceType = distanceType;
+        this.distanceType = getOrDefault(distanceType, PgDistanceType.COSINE_DISTANCE);
         this.createIndexMethod = createIndexMethod;
         this.needCreateTable = config.isNeedCreateTable();
         this.schema = config.getSchemaName();
@@ -78,8 +132,10 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
 
         this.bizDataHandler = bizDataHandler;
 
-        int dimension = ensureGreaterThanZero(config.getDimension(), "config#dimension");
+        this.dimension = ensureGreaterThanZero(config.getDimension(), "config#dimension");
         int indexListSize = ensureGreaterThanZero(config.getIndexListSize(), "config#indexListSize");
+        this.quantization = getOrDefault(quantization, VectorQuantization.NONE);
+        this.rescoreFactor = ensureGreaterThanZero(getOrDefault(rescoreFactor, DEFAULT_RESCORE_FACTOR), "rescoreFactor");
 
         initTable(config.isDropTableIfExist(), indexListSize, dimension);
     }
@@ -112,6 +168,8 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
         String query = "init";
         String tableName = this.schema + "." + this.table;
         try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
+            query = "CREATE EXTENSION IF NOT EXISTS vector";
+            statement.executeUpdate(query);
             if (dropTableIfExist) {
                 statement.executeUpdate(String.format("DROP TABLE IF EXISTS %s", tableName));
             }
@@ -137,12 +195,14 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
                 }
             }
             if (createIndexMethod != PgIndexType.NONE) {
-                final String indexName = this.table + "_" + createIndexMethod.name() + "_index";
+                final String indexName = quantization == VectorQuantization.NONE
+                        ? this.table + "_" + createIndexMethod.name() + "_index"
+                        : this.table + "_" + createIndexMethod.name() + "_" + quantization.name() + "_index";
                 query = String.format(
                         "CREATE INDEX IF NOT EXISTS %s ON %s " +
-                                "USING %s (embedding %s) " +
+                                "USING %s (%s) " +
                                 "WITH (lists = %s)",
-                        indexName, tableName, createIndexMethod.name(), distanceType.index, indexListSize);
+                        indexName, tableName, createIndexMethod.name(), indexedExpression(), indexListSize);
                 statement.executeUpdate(query);
             }
         } catch (SQLException e) {
@@ -150,6 +210,36 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
         }
     }
 
+    /**
+     * The indexed expression and its operator class: the embedding itself, or an expression index on its
+     * quantized form. pgvector has no int8 type, {@link VectorQuantization#INT8} maps to half precision.
+     */
+    private String indexedExpression() {
+        return switch (quantization) {
+            case INT8 -> String.format("(embedding::halfvec(%s)) %s", dimension, distanceType.halfvecIndex);
+            case BINARY -> String.format("(binary_quantize(embedding)::bit(%s)) bit_hamming_ops", dimension);
+            case NONE -> "embedding " + distanceType.index;
+        };
+    }
+
+    /**
+     * The rows to score: the table, or with a quantization, the nearest candidates by the quantized index, which
+     * are re-scored with their full precision embeddings. The second parameter is the query embedding.
+     */
+    private String candidates(String tableName, String whereClause, int maxResults) {
+        String order = switch (quantization) {
+            case INT8 -> String.format("embedding::halfvec(%1$s) %2$s ?::halfvec(%1$s)", dimension, distanceType.operator);
+            case BINARY -> String.format("binary_quantize(embedding)::bit(%1$s) <~> binary_quantize(?::vector)::bit(%1$s)",
+                    dimension);
+            case NONE -> null;
+        };
+        if (order == null) {
+            return tableName + " " + whereClause;
+        }
+        return String.format("(SELECT * FROM %s %s ORDER BY %s LIMIT %s) AS candidates",
+                tableName, whereClause, order, (long) maxResults * rescoreFactor);
+    }
+
     @Override
     public String add(VectorData embedding) {
         String id = randomUUID();
@@ -232,7 +322,6 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
 
         List<EmbeddingMatch<TextSegment>> result = new ArrayList<>();
         try (Connection connection = getConnection()) {
-            String referenceVector = Arrays.toString(referenceEmbedding.vector());
             String whereClause = (filter == null) ? "" : metadataHandler.whereClause(filter);
             whereClause = (whereClause.isEmpty()) ? "" : "WHERE " + whereClause;
 
@@ -246,17 +335,26 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
                 String bizDataClause = bizDataHandler.whereClause(bizDataFilter);
                 whereClause = (whereClause.isEmpty()) ? " WHERE " + bizDataClause : " AND " + bizDataClause;
                 query = String.format(
-                        "WITH temp AS (SELECT (embedding <=> '%s') AS score, id, embedding, doc_chunk, " +
-                                "%s, %s FROM %s %s) SELECT * FROM temp ORDER BY score asc LIMIT %s;",
-                        referenceVector, join(",", bizDataHandler.columnsNames()),
-                        join(",", metadataHandler.columnsNames()), tableName, whereClause, maxResults);
+                        "WITH temp AS (SELECT %s AS score, id, embedding, doc_chunk, " +
+                                "%s, %s FROM %s) SELECT * FROM temp ORDER BY score asc LIMIT %s;",
+                        distanceType.distance("embedding", "?"),
+                        join(",", bizDataHandler.columnsNames()),
+                        join(",", metadataHandler.columnsNames()),
+                        candidates(tableName, whereClause, maxResults), maxResults);
             } else {
                 query = String.format(
-                        "WITH temp AS (SELECT (embedding <=> '%s') AS score, id, embedding, doc_chunk, " +
-                                "%s FROM %s %s) SELECT * FROM temp ORDER BY score asc LIMIT %s;",
-                        referenceVector, join(",", metadataHandler.columnsNames()), tableName, whereClause, maxResults);
+                        "WITH temp AS (SELECT %s AS score, id, embedding, doc_chunk, " +
+                                "%s FROM %s) SELECT * FROM temp ORDER BY score asc LIMIT %s;",
+                        distanceType.distance("embedding", "?"),
+                        join(",", metadataHandler.columnsNames()),
+                        candidates(tableName, whereClause, maxResults), maxResults);
             }
             try (PreparedStatement selectStmt = connection.prepareStatement(query)) {
+                PGvector queryVector = new PGvector(referenceEmbedding.vector());
+                selectStmt.setObject(1, queryVector);
+                if (quantization != VectorQuantization.NONE) {
+                    selectStmt.setObject(2, queryVector);
+                }
                 try (ResultSet resultSet = selectStmt.executeQuery()) {
                     while (resultSet.next()) {
                         double score = resultSet.getDouble("score");
@@ -342,7 +440,7 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
             try (PreparedStatement upsertStmt = connection.prepareStatement(query)) {
                 for (int i = 0; i < ids.size(); ++i) {
                     upsertStmt.setObject(1, ids.get(i));
-                    upsertStmt.setObject(2, new PGvector(embeddings.get(i).embedding()));
+                    upsertStmt.setObject(2, new PGvector(embeddings.get(i).vector()));
 
                     if (embedded != null && embedded.get(i) != null) {
                         upsertStmt.setObject(3, embedded.get(i).text());
@@ -400,18 +498,33 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
     }
 
 
+    /**
+     * Borrows a connection, registering the vector type if the underlying physical connection is new.
+     */
     protected Connection getConnection() throws SQLException {
         Connection connection = datasource.getConnection();
-        // Find a way to do the following code in connection initialization.
-        // Here we assume the datasource could handle a connection pool
-        // and we should add the vector type on each connection
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate("CREATE EXTENSION IF NOT EXISTS vector");
+        try {
+            PGConnection physical = connection.unwrap(PGConnection.class);
+            if (registeredConnections.add(physical)) {
+                PGvector.addVectorType(connection);
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
         }
-        PGvector.addVectorType(connection);
         return connection;
     }
 
+    /**
+     * Closes the built-in connection pool. A data source given to the builder is left open.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -424,6 +537,9 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
         private MetadataStorageConfig metadataStorageConfig = DefaultMetadataStorageConfig.defaultConfig();
 
         private BizDataHandler bizDataHandler;
+        private VectorQuantization quantization = VectorQuantization.NONE;
+        private Integer rescoreFactor;
+        private DataSource dataSource;
 
         public Builder config(PgVectorConfig config) {
             this.config = config;
@@ -451,8 +567,37 @@ public class PgVectorStore implements EmbeddingStore<TextSegment> {
             return this;
         }
 
+        /**
+         * Indexes a quantized form of the embeddings, with an expression index: {@link VectorQuantization#INT8}
+         * as {@code halfvec}, {@link VectorQuantization#BINARY} as {@code bit} compared by Hamming distance.
+         * Searches read candidates from the index and re-rank them with the full precision embeddings, which
+         * stay in the table. Requires pgvector 0.7.0 or later.
+         */
+        public Builder quantization(VectorQuantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        /**
+         * The number of candidates read from the quantized index per requested result. Default: 4.
+         */
+        public Builder rescoreFactor(Integer rescoreFactor) {
+            this.rescoreFactor = rescoreFactor;
+            return this;
+        }
+
+        /**
+         * A pooled data source, e.g. HikariCP, managed by the caller: the connection settings of the config are
+         * then ignored, and the store does not close it.
+         */
+        public Builder dataSource(DataSource dataSource) {
+            this.dataSource = dataSource;
+            return this;
+        }
+
         public PgVectorStore build() {
-            return new PgVectorStore(config, table, indexType, distanceType, metadataStorageConfig, bizDataHandler);
+            return new PgVectorStore(config, table, indexType, distanceType, metadataStorageConfig, bizDataHandler,
+                    quantization, rescoreFactor, dataSource);
         }
     }
 }